@@ -22,34 +22,49 @@ import static org.apache.kafka.connect.transforms.util.Requirements.requireStruc
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.SchemaawareRecordHandler.StructPlan;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.KryoSerdeProcessor;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.SchemaDictionary;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.SerdeProcessor;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.TaggedSerdeProcessor;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.CipherDataKeysValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.CipherEncodingValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.CipherModeValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.CipherNameValidator;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.EnvelopeHeaderValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.FieldConfigValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.FieldModeValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.KeySourceValidator;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.SchemalessValueModeValidator;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.SerdeTypeValidator;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators.TimeUnitValidator;
+import com.github.hpgrahsl.kryptonite.CipherEncoding;
 import com.github.hpgrahsl.kryptonite.CipherMode;
+import com.github.hpgrahsl.kryptonite.EnvelopeHeader;
+import com.github.hpgrahsl.kryptonite.FieldMetaData;
 import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmNoPadding;
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmSegmented;
+import com.github.hpgrahsl.kryptonite.crypto.CipherProviderRegistry;
+import com.github.hpgrahsl.kryptonite.crypto.NonceGenerator;
+import com.github.hpgrahsl.kryptonite.crypto.ThreadLocalDrbgNonceGenerator;
 import com.github.hpgrahsl.kryptonite.key.ConfigDataKeyVault;
 import com.github.hpgrahsl.kryptonite.key.NoOpKeyStrategy;
 import com.github.hpgrahsl.kryptonite.key.gcp.GcpSecretManagerKeyVault;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import org.apache.kafka.common.cache.Cache;
-import org.apache.kafka.common.cache.LRUCache;
-import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Importance;
 import org.apache.kafka.common.config.ConfigDef.NonEmptyString;
 import org.apache.kafka.common.config.ConfigDef.Type;
 import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.Monitorable;
+import org.apache.kafka.common.metrics.PluginMetrics;
 import org.apache.kafka.connect.connector.ConnectRecord;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Struct;
@@ -58,7 +73,8 @@ import org.apache.kafka.connect.transforms.util.SimpleConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public abstract class CipherField<R extends ConnectRecord<R>> implements Transformation<R> {
+public abstract class CipherField<R extends ConnectRecord<R>>
+    implements Transformation<R>, Monitorable {
 
   public enum FieldMode {
     ELEMENT,
@@ -71,6 +87,17 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
     GCP_SECRET_MANAGER_WITH_KMS
   }
 
+  public enum SchemalessValueMode {
+    COPY,
+    OVERLAY,
+    IN_PLACE
+  }
+
+  public enum SerdeType {
+    KRYO,
+    TAGGED
+  }
+
   public static final String OVERVIEW_DOC =
       "Encrypt/Decrypt specified record fields with AEAD cipher."
           + "<p/>The transformation should currently only be used for the record value (<code>"
@@ -92,11 +119,26 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
       "cipher_data_key_cache_expiry_duration_unit";
   public static final String CIPHER_DATA_KEYS = "cipher_data_keys";
   public static final String CIPHER_TEXT_ENCODING = "cipher_text_encoding";
+  public static final String CIPHER_TEXT_ENVELOPE_HEADER = "cipher_text_envelope_header";
   public static final String CIPHER_MODE = "cipher_mode";
   public static final String KEY_SOURCE = "key_source";
   public static final String KMS_KEY_NAME = "kms_key_name";
   public static final String KRYO_OUTPUT_BUFFER_SIZE = "kryo_output_buffer_size";
   public static final String KRYO_OUTPUT_BUFFER_SIZE_MAX = "kryo_output_buffer_size_max";
+  public static final String CIPHER_MEMO_CACHE_MAX_BYTES = "cipher_memo_cache_max_bytes";
+  public static final String CIPHER_PARALLELISM = "cipher_parallelism";
+  public static final String CIPHER_PARALLELISM_THRESHOLD = "cipher_parallelism_threshold";
+  public static final String CIPHER_PROVIDER = "cipher_provider";
+  public static final String CIPHER_SEGMENT_THRESHOLD = "cipher_segment_threshold";
+  public static final String CIPHER_SEGMENT_SIZE = "cipher_segment_size";
+  public static final String CIPHER_NATIVE_BYTES = "cipher_native_bytes";
+  public static final String SCHEMA_CACHE_MAX_SIZE = "schema_cache_max_size";
+  public static final String SCHEMALESS_VALUE_MODE = "schemaless_value_mode";
+  public static final String CIPHER_LAZY_DECRYPTION = "cipher_lazy_decryption";
+  public static final String KRYO_REGISTRATION_TABLE = "kryo_registration_table";
+  public static final String KRYO_REGISTRATION_REQUIRED = "kryo_registration_required";
+  public static final String SERDE_TYPE = "serde_type";
+  public static final String KRYO_SCHEMA_FINGERPRINTS = "kryo_schema_fingerprints";
 
   private static final String PATH_DELIMITER_DEFAULT = ".";
   private static final String FIELD_MODE_DEFAULT = "ELEMENT";
@@ -104,11 +146,26 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
   private static final long CIPHER_DATA_KEY_CACHE_EXPIRY_DURATION_DEFAULT = 24L;
   private static final String CIPHER_DATA_KEY_CACHE_EXPIRY_DURATION_UNIT_DEFAULT = "HOURS";
   private static final String CIPHER_TEXT_ENCODING_DEFAULT = "base64";
+  private static final String CIPHER_TEXT_ENVELOPE_HEADER_DEFAULT = "key_version";
   private static final String KEY_SOURCE_DEFAULT = "CONFIG";
   private static final String CIPHER_DATA_KEYS_DEFAULT = "[]";
   private static final String KMS_KEY_NAME_DEFAULT = null;
   private static final int KRYO_OUTPUT_BUFFER_SIZE_DEFAULT = 32;
   private static final int KRYO_OUTPUT_BUFFER_SIZE_MAX_DEFAULT = -1;
+  private static final long CIPHER_MEMO_CACHE_MAX_BYTES_DEFAULT = 1024L * 1024L;
+  private static final String CIPHER_PROVIDER_DEFAULT = CipherProviderRegistry.DEFAULT;
+  private static final int CIPHER_SEGMENT_THRESHOLD_DEFAULT = 0;
+  private static final int CIPHER_SEGMENT_SIZE_DEFAULT = AesGcmSegmented.SEGMENT_SIZE_DEFAULT;
+  private static final boolean CIPHER_NATIVE_BYTES_DEFAULT = false;
+  private static final int SCHEMA_CACHE_MAX_SIZE_DEFAULT = 256;
+  private static final String SCHEMALESS_VALUE_MODE_DEFAULT = "COPY";
+  private static final boolean CIPHER_LAZY_DECRYPTION_DEFAULT = false;
+  private static final boolean KRYO_REGISTRATION_TABLE_DEFAULT = false;
+  private static final boolean KRYO_REGISTRATION_REQUIRED_DEFAULT = false;
+  private static final String SERDE_TYPE_DEFAULT = "KRYO";
+  private static final boolean KRYO_SCHEMA_FINGERPRINTS_DEFAULT = false;
+  private static final int CIPHER_PARALLELISM_DEFAULT = 0;
+  private static final int CIPHER_PARALLELISM_THRESHOLD_DEFAULT = 1024;
 
   public static final ConfigDef CONFIG_DEF =
       new ConfigDef()
@@ -143,9 +200,10 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
               CIPHER_ALGORITHM_DEFAULT,
               new CipherNameValidator(),
               Importance.LOW,
-              "cipher algorithm used for data encryption (currently supports only one AEAD cipher: "
+              "cipher algorithm used for data encryption (either the randomized AEAD ciphers "
                   + CIPHER_ALGORITHM_DEFAULT
-                  + ")")
+                  + ", ChaCha20-Poly1305 or AES/GCM-SEGMENTED/NoPadding, or the deterministic AEAD "
+                  + "cipher AES/SIV/NoPadding)")
           .define(
               CIPHER_DATA_KEYS,
               Type.PASSWORD,
@@ -189,7 +247,17 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
               CIPHER_TEXT_ENCODING_DEFAULT,
               new CipherEncodingValidator(),
               ConfigDef.Importance.LOW,
-              "defines the encoding of the resulting ciphertext bytes (currently only supports 'base64')")
+              "defines the encoding of the resulting ciphertext bytes, either 'base64' (STRING schema)"
+                  + " or 'raw' (BYTES schema holding a binary envelope)")
+          .define(
+              CIPHER_TEXT_ENVELOPE_HEADER,
+              Type.STRING,
+              CIPHER_TEXT_ENVELOPE_HEADER_DEFAULT,
+              new EnvelopeHeaderValidator(),
+              ConfigDef.Importance.LOW,
+              "defines how ciphertext envelopes refer to their data key, either by 'key_version' "
+                  + "string or by a binary 'key_id' header holding numeric key and algorithm ids. "
+                  + "Envelopes of either kind can always be decrypted.")
           .define(
               CIPHER_MODE,
               Type.STRING,
@@ -223,18 +291,146 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
               Type.INT,
               KRYO_OUTPUT_BUFFER_SIZE_MAX_DEFAULT,
               Importance.LOW,
-              "Maximum buffer size for kryo to serialize. Default -1 corresponds to no upper limit (up to Integer.MAX_VALUE - 8 technically).");
+              "Maximum buffer size for kryo to serialize. Default -1 corresponds to no upper limit (up to Integer.MAX_VALUE - 8 technically).")
+          .define(
+              CIPHER_MEMO_CACHE_MAX_BYTES,
+              Type.LONG,
+              CIPHER_MEMO_CACHE_MAX_BYTES_DEFAULT,
+              ConfigDef.Range.atLeast(0L),
+              Importance.LOW,
+              "Approximate upper bound in bytes of the per-field plaintext to ciphertext memo cache "
+                  + "used for fields encrypted with a deterministic cipher algorithm. 0 disables it.")
+          .define(
+              CIPHER_PARALLELISM,
+              Type.INT,
+              CIPHER_PARALLELISM_DEFAULT,
+              ConfigDef.Range.atLeast(0),
+              Importance.LOW,
+              "Number of threads of the fork join pool used to process large arrays, maps and "
+                  + "records with many matched fields in parallel. 0 disables it.")
+          .define(
+              CIPHER_PARALLELISM_THRESHOLD,
+              Type.INT,
+              CIPHER_PARALLELISM_THRESHOLD_DEFAULT,
+              ConfigDef.Range.atLeast(1),
+              Importance.LOW,
+              "Minimum number of elements of an array or map, or of matched fields of a record, "
+                  + "from which on they are processed in parallel if cipher_parallelism > 0.")
+          .define(
+              CIPHER_PROVIDER,
+              Type.STRING,
+              CIPHER_PROVIDER_DEFAULT,
+              new NonEmptyString(),
+              Importance.LOW,
+              "JCE provider backing AES/GCM/NoPadding, either 'default' for the JCE default, "
+                  + "'auto' for the fastest available provider passing a known-answer test as "
+                  + "measured by a short self-benchmark during configure, or a provider name such "
+                  + "as 'SunJCE', 'AmazonCorrettoCryptoProvider' or 'Conscrypt'.")
+          .define(
+              CIPHER_SEGMENT_THRESHOLD,
+              Type.INT,
+              CIPHER_SEGMENT_THRESHOLD_DEFAULT,
+              ConfigDef.Range.atLeast(0),
+              Importance.LOW,
+              "Serialized size in bytes from which on values of fields encrypted with "
+                  + "AES/GCM/NoPadding are encrypted with AES/GCM-SEGMENTED/NoPadding instead, "
+                  + "whose segments are processed in parallel if cipher_parallelism > 0. "
+                  + "0 disables it. Decryption detects segmented ciphertexts regardless.")
+          .define(
+              CIPHER_SEGMENT_SIZE,
+              Type.INT,
+              CIPHER_SEGMENT_SIZE_DEFAULT,
+              ConfigDef.Range.atLeast(AesGcmSegmented.SEGMENT_SIZE_MIN),
+              Importance.LOW,
+              "Plaintext size in bytes of the segments of AES/GCM-SEGMENTED/NoPadding ciphertexts")
+          .define(
+              CIPHER_NATIVE_BYTES,
+              Type.BOOLEAN,
+              CIPHER_NATIVE_BYTES_DEFAULT,
+              Importance.LOW,
+              "Whether byte[] and ByteBuffer field values are encrypted as they are, prefixed by a "
+                  + "tag byte, instead of being serialized with Kryo first. Decryption detects "
+                  + "such values regardless, so enable it only once all decrypting instances "
+                  + "are upgraded.")
+          .define(
+              SCHEMA_CACHE_MAX_SIZE,
+              Type.INT,
+              SCHEMA_CACHE_MAX_SIZE_DEFAULT,
+              ConfigDef.Range.atLeast(1),
+              Importance.LOW,
+              "Maximum number of distinct record schemas whose adapted schema and processing plan "
+                  + "are cached, as well as of struct schemas interned when deserializing struct "
+                  + "values. Should exceed the number of schema versions live at a time.")
+          .define(
+              SCHEMALESS_VALUE_MODE,
+              Type.STRING,
+              SCHEMALESS_VALUE_MODE_DEFAULT,
+              new SchemalessValueModeValidator(),
+              Importance.LOW,
+              "defines how the value map of schemaless records is changed, either 'COPY' into a "
+                  + "new map, as an 'OVERLAY' view which only holds the changed entries and reads "
+                  + "all others from the record's map, or 'IN_PLACE' by modifying the record's "
+                  + "map, which must be mutable and not shared with other consumers of the record")
+          .define(
+              CIPHER_LAZY_DECRYPTION,
+              Type.BOOLEAN,
+              CIPHER_LAZY_DECRYPTION_DEFAULT,
+              Importance.LOW,
+              "Whether in DECRYPT mode the matched fields of schemaless records are only decrypted "
+                  + "once they are read from the record's value map, which then must not be read "
+                  + "by several threads at the same time.")
+          .define(
+              KRYO_REGISTRATION_TABLE,
+              Type.BOOLEAN,
+              KRYO_REGISTRATION_TABLE_DEFAULT,
+              Importance.LOW,
+              "Whether field values are serialized with the fixed type ids of a versioned Kryo "
+                  + "registration table instead of writing the class names of most types. "
+                  + "Decryption detects such values regardless, so enable it only once all "
+                  + "decrypting instances are upgraded.")
+          .define(
+              KRYO_REGISTRATION_REQUIRED,
+              Type.BOOLEAN,
+              KRYO_REGISTRATION_REQUIRED_DEFAULT,
+              Importance.LOW,
+              "Whether serializing or deserializing field values of classes which aren't "
+                  + "registered with Kryo fails instead of falling back to their class names.")
+          .define(
+              SERDE_TYPE,
+              Type.STRING,
+              SERDE_TYPE_DEFAULT,
+              new SerdeTypeValidator(),
+              Importance.LOW,
+              "defines how field values are serialized before encryption, either all of them "
+                  + "with 'KRYO' or values of primitive and logical types with a compact 'TAGGED' "
+                  + "encoding and only all others with Kryo. Decryption detects tagged values "
+                  + "regardless, so switch to 'TAGGED' only once all decrypting instances are "
+                  + "upgraded.")
+          .define(
+              KRYO_SCHEMA_FINGERPRINTS,
+              Type.BOOLEAN,
+              KRYO_SCHEMA_FINGERPRINTS_DEFAULT,
+              Importance.LOW,
+              "Whether struct values are serialized with an 8 byte fingerprint of their schema "
+                  + "instead of the full schema. Decrypting instances resolve fingerprints from "
+                  + "the struct schemas given in the field config, so enable it only once all "
+                  + "decrypting instances are upgraded and configured with these schemas.");
 
   private static final String PURPOSE = "(de)cipher record fields";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CipherField.class);
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-  private RecordHandler recordHandlerWithSchema;
-  private RecordHandler recordHandlerWithoutSchema;
+  private SchemaawareRecordHandler recordHandlerWithSchema;
+  private SchemalessRecordHandler recordHandlerWithoutSchema;
   private SchemaRewriter schemaRewriter;
-  private Cache<Schema, Schema> schemaCache;
+  private StructPlanCache schemaCache;
   private Kryptonite kryptonite;
+  private FieldMemoCaches memoCaches;
+  private PluginMetrics pluginMetrics;
+  private CipherProviderRegistry.Selection cipherProvider;
+  private ForkJoinPool forkJoinPool;
+  private SchemalessValueMode schemalessValueMode;
 
   @Override
   public R apply(R record) {
@@ -248,24 +444,35 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
   public R processWithoutSchema(R record) {
     LOGGER.debug("processing schemaless data");
     Map<String, Object> valueMap = requireMap(operatingValue(record), PURPOSE);
-    Map<String, Object> updatedValueMap = new LinkedHashMap<>(valueMap);
-    recordHandlerWithoutSchema.matchFields(null, valueMap, null, updatedValueMap, "");
-    return newRecord(record, null, updatedValueMap);
+    Map<String, Object> updatedValueMap;
+    switch (schemalessValueMode) {
+      case OVERLAY:
+        updatedValueMap = new OverlayMap<>(valueMap);
+        break;
+      case IN_PLACE:
+        updatedValueMap = valueMap;
+        break;
+      default:
+        updatedValueMap = new LinkedHashMap<>(valueMap);
+    }
+    Object matchedValueMap =
+        recordHandlerWithoutSchema.matchFields(null, valueMap, null, updatedValueMap, "");
+    return newRecord(record, null, matchedValueMap);
   }
 
   public R processWithSchema(R record) {
     LOGGER.debug("processing schema-aware data");
     Struct valueStruct = requireStruct(operatingValue(record), PURPOSE);
-    Schema updatedSchema = schemaCache.get(valueStruct.schema());
-    if (updatedSchema == null) {
-      LOGGER.debug("adapting schema because record's schema not present in cache");
-      updatedSchema = schemaRewriter.adaptSchema(valueStruct.schema(), "");
-      schemaCache.put(valueStruct.schema(), updatedSchema);
-    }
-    Struct updatedValueStruct = new Struct(updatedSchema);
-    recordHandlerWithSchema.matchFields(
-        valueStruct.schema(), valueStruct, updatedSchema, updatedValueStruct, "");
-    return newRecord(record, updatedSchema, updatedValueStruct);
+    StructPlan structPlan =
+        schemaCache.get(
+            valueStruct.schema(),
+            schema -> {
+              LOGGER.debug("adapting schema because record's schema not present in cache");
+              return recordHandlerWithSchema.compile(
+                  schema, schemaRewriter.adaptSchema(schema, ""));
+            });
+    Struct updatedValueStruct = recordHandlerWithSchema.transform(valueStruct, structPlan);
+    return newRecord(record, structPlan.getSchemaNew(), updatedValueStruct);
   }
 
   @Override
@@ -273,13 +480,48 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
     return CONFIG_DEF;
   }
 
+  /** Returns the cipher provider resolved from {@value #CIPHER_PROVIDER} during configure. */
+  CipherProviderRegistry.Selection getCipherProvider() {
+    return cipherProvider;
+  }
+
+  Kryptonite getKryptonite() {
+    return kryptonite;
+  }
+
   @Override
   public void close() {
+    if (forkJoinPool != null) {
+      forkJoinPool.shutdown();
+    }
+    if (memoCaches != null) {
+      memoCaches.invalidateAll();
+    }
+    if (schemaCache != null) {
+      schemaCache.invalidateAll();
+    }
     if (kryptonite != null) {
       kryptonite.close();
     }
   }
 
+  @Override
+  public void withPluginMetrics(PluginMetrics metrics) {
+    this.pluginMetrics = metrics;
+    if (memoCaches != null) {
+      memoCaches.registerMetrics(metrics);
+    }
+    if (schemaCache != null) {
+      schemaCache.registerMetrics(metrics);
+    }
+    if (recordHandlerWithoutSchema != null) {
+      recordHandlerWithoutSchema.registerMetrics(metrics);
+    }
+    if (cipherProvider != null) {
+      registerCipherProviderMetrics(metrics);
+    }
+  }
+
   @Override
   public void configure(Map<String, ?> props) {
     try {
@@ -289,40 +531,83 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
               .readValue(config.getString(FIELD_CONFIG), new TypeReference<Set<FieldConfig>>() {})
               .stream()
               .collect(Collectors.toMap(FieldConfig::getName, Function.identity()));
-      kryptonite = configureKryptonite(config);
-      SerdeProcessor serdeProcessor =
+      if (forkJoinPool != null) {
+        forkJoinPool.shutdown();
+      }
+      forkJoinPool =
+          config.getInt(CIPHER_PARALLELISM) > 0
+              ? new ForkJoinPool(config.getInt(CIPHER_PARALLELISM))
+              : null;
+      kryptonite = configureKryptonite(config, fieldPathMap);
+      SchemaDictionary schemaDictionary =
+          new SchemaDictionary(config.getInt(SCHEMA_CACHE_MAX_SIZE));
+      SerdeProcessor kryoSerdeProcessor =
           new KryoSerdeProcessor(
-              config.getInt(KRYO_OUTPUT_BUFFER_SIZE), config.getInt(KRYO_OUTPUT_BUFFER_SIZE_MAX));
+              config.getInt(KRYO_OUTPUT_BUFFER_SIZE),
+              config.getInt(KRYO_OUTPUT_BUFFER_SIZE_MAX),
+              config.getBoolean(KRYO_REGISTRATION_TABLE),
+              config.getBoolean(KRYO_REGISTRATION_REQUIRED),
+              schemaDictionary,
+              config.getBoolean(KRYO_SCHEMA_FINGERPRINTS));
+      SerdeProcessor serdeProcessor =
+          SerdeType.TAGGED == SerdeType.valueOf(config.getString(SERDE_TYPE))
+              ? new TaggedSerdeProcessor(kryoSerdeProcessor)
+              : kryoSerdeProcessor;
+      memoCaches =
+          new FieldMemoCaches(
+              config, CipherMode.valueOf(config.getString(CIPHER_MODE)), fieldPathMap);
+      schemaCache = new StructPlanCache(config.getInt(SCHEMA_CACHE_MAX_SIZE));
+      schemalessValueMode = SchemalessValueMode.valueOf(config.getString(SCHEMALESS_VALUE_MODE));
+      FieldPlans fieldPlans = new FieldPlans(config, fieldPathMap, memoCaches);
       recordHandlerWithSchema =
           new SchemaawareRecordHandler(
               config,
               serdeProcessor,
               kryptonite,
               CipherMode.valueOf(config.getString(CIPHER_MODE)),
-              fieldPathMap);
+              fieldPlans,
+              forkJoinPool);
       recordHandlerWithoutSchema =
           new SchemalessRecordHandler(
               config,
               serdeProcessor,
               kryptonite,
               CipherMode.valueOf(config.getString(CIPHER_MODE)),
-              fieldPathMap);
+              fieldPlans,
+              forkJoinPool);
+      if (pluginMetrics != null) {
+        memoCaches.registerMetrics(pluginMetrics);
+        schemaCache.registerMetrics(pluginMetrics);
+        recordHandlerWithoutSchema.registerMetrics(pluginMetrics);
+        registerCipherProviderMetrics(pluginMetrics);
+      }
       schemaRewriter =
           new SchemaRewriter(
               fieldPathMap,
               FieldMode.valueOf(config.getString(FIELD_MODE)),
               CipherMode.valueOf(config.getString(CIPHER_MODE)),
-              config.getString(PATH_DELIMITER));
-      schemaCache = new SynchronizedCache<>(new LRUCache<>(16));
+              config.getString(PATH_DELIMITER),
+              CipherEncoding.forName(config.getString(CIPHER_TEXT_ENCODING)));
+      if (CipherMode.DECRYPT == CipherMode.valueOf(config.getString(CIPHER_MODE))) {
+        schemaRewriter.structSchemasFromConfig().forEach(schemaDictionary::register);
+      }
     } catch (JsonProcessingException e) {
       e.printStackTrace();
       throw new ConfigException(e.getMessage());
     }
   }
 
-  private Kryptonite configureKryptonite(SimpleConfig config) {
+  private Kryptonite configureKryptonite(
+      SimpleConfig config, Map<String, FieldConfig> fieldPathMap) {
     try {
       KeySource keySource = KeySource.valueOf(config.getString(KEY_SOURCE));
+      NonceGenerator nonceGenerator = new ThreadLocalDrbgNonceGenerator();
+      EnvelopeHeader envelopeHeader =
+          EnvelopeHeader.forName(config.getString(CIPHER_TEXT_ENVELOPE_HEADER));
+      cipherProvider = CipherProviderRegistry.select(config.getString(CIPHER_PROVIDER));
+      AesGcmSegmented segmentedCipher =
+          new AesGcmSegmented(
+              config.getInt(CIPHER_SEGMENT_SIZE), cipherProvider.getProvider(), forkJoinPool);
       switch (keySource) {
         case CONFIG:
           Set<DataKeyConfig> dataKeyConfig =
@@ -333,18 +618,38 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
               dataKeyConfig.stream()
                   .collect(
                       Collectors.toMap(DataKeyConfig::getIdentifier, DataKeyConfig::getKeyBytes));
-          return new Kryptonite(new ConfigDataKeyVault(configKeyMap));
+          ensureValidKeyLengths(config, fieldPathMap, configKeyMap);
+          return new Kryptonite(
+              new ConfigDataKeyVault(configKeyMap),
+              Kryptonite.VERSION_DELIMITER_DEFAULT,
+              nonceGenerator,
+              envelopeHeader,
+              cipherProvider.getProvider(),
+              segmentedCipher,
+              config.getInt(CIPHER_SEGMENT_THRESHOLD));
         case GCP_SECRET_MANAGER:
           return new Kryptonite(
               new GcpSecretManagerKeyVault(
                   config.getString(CIPHER_DATA_KEY_NAME),
                   new NoOpKeyStrategy(),
                   config.getLong(CIPHER_DATA_KEY_CACHE_EXPIRY_DURATION),
-                  config.getString(CIPHER_DATA_KEY_CACHE_EXPIRY_DURATION_UNIT)));
+                  config.getString(CIPHER_DATA_KEY_CACHE_EXPIRY_DURATION_UNIT)),
+              Kryptonite.VERSION_DELIMITER_DEFAULT,
+              nonceGenerator,
+              envelopeHeader,
+              cipherProvider.getProvider(),
+              segmentedCipher,
+              config.getInt(CIPHER_SEGMENT_THRESHOLD));
         case GCP_SECRET_MANAGER_WITH_KMS:
           return new Kryptonite(
               new GcpSecretManagerKeyVault(
-                  config.getString(CIPHER_DATA_KEY_NAME), config.getString(KMS_KEY_NAME)));
+                  config.getString(CIPHER_DATA_KEY_NAME), config.getString(KMS_KEY_NAME)),
+              Kryptonite.VERSION_DELIMITER_DEFAULT,
+              nonceGenerator,
+              envelopeHeader,
+              cipherProvider.getProvider(),
+              segmentedCipher,
+              config.getInt(CIPHER_SEGMENT_THRESHOLD));
         default:
           throw new ConfigException(
               "failed to configure kryptonite instance due to invalid key source");
@@ -355,6 +660,40 @@ public abstract class CipherField<R extends ConnectRecord<R>> implements Transfo
     }
   }
 
+  private static void ensureValidKeyLengths(
+      SimpleConfig config, Map<String, FieldConfig> fieldPathMap, Map<String, byte[]> keys) {
+    String algorithm = config.getString(CIPHER_ALGORITHM);
+    String keyName = config.getString(CIPHER_DATA_KEY_NAME);
+    String keyVersion = config.getString(CIPHER_DATA_KEY_VERSION);
+    CipherDataKeysValidator.ensureValidKeyLength(
+        algorithm,
+        String.join(FieldMetaData.IDENTIFIER_DELIMITER_DEFAULT, keyName, keyVersion),
+        keys);
+    for (FieldConfig fc : fieldPathMap.values()) {
+      CipherDataKeysValidator.ensureValidKeyLength(
+          fc.getAlgorithm().orElse(algorithm),
+          String.join(
+              FieldMetaData.IDENTIFIER_DELIMITER_DEFAULT,
+              fc.getKeyName().orElse(keyName),
+              fc.getKeyVersion().orElse(keyVersion)),
+          keys);
+    }
+  }
+
+  private void registerCipherProviderMetrics(PluginMetrics metrics) {
+    CipherProviderRegistry.Selection selection = cipherProvider;
+    LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+    tags.put("provider", selection.getName());
+    tags.put("algorithm", AesGcmNoPadding.CIPHER_ALGORITHM);
+    metrics.addMetric(
+        metrics.metricName(
+            "cipher-provider-throughput",
+            "bytes per second encrypted by the cipher provider during its selection, NaN if it "
+                + "was configured explicitly",
+            tags),
+        (Gauge<Double>) (config, now) -> selection.getThroughput());
+  }
+
   protected abstract Schema operatingSchema(R record);
 
   protected abstract Object operatingValue(R record);
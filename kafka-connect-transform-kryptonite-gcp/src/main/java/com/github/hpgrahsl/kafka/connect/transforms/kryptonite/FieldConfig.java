@@ -27,6 +27,8 @@ public class FieldConfig {
   private String keyName;
   private String keyVersion;
   private Map<String, Object> schema;
+  private Long memoCacheMaxBytes;
+  private Long decryptCacheMaxBytes;
 
   public FieldConfig() {}
 
@@ -63,6 +65,14 @@ public class FieldConfig {
     return Optional.ofNullable(schema);
   }
 
+  public Optional<Long> getMemoCacheMaxBytes() {
+    return Optional.ofNullable(memoCacheMaxBytes);
+  }
+
+  public Optional<Long> getDecryptCacheMaxBytes() {
+    return Optional.ofNullable(decryptCacheMaxBytes);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -76,12 +86,15 @@ public class FieldConfig {
         && Objects.equals(algorithm, that.algorithm)
         && Objects.equals(keyName, that.keyName)
         && Objects.equals(keyVersion, that.keyVersion)
-        && Objects.equals(schema, that.schema);
+        && Objects.equals(schema, that.schema)
+        && Objects.equals(memoCacheMaxBytes, that.memoCacheMaxBytes)
+        && Objects.equals(decryptCacheMaxBytes, that.decryptCacheMaxBytes);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(name, algorithm, keyName, keyVersion, schema);
+    return Objects.hash(
+        name, algorithm, keyName, keyVersion, schema, memoCacheMaxBytes, decryptCacheMaxBytes);
   }
 
   @Override
@@ -101,6 +114,10 @@ public class FieldConfig {
         + "'"
         + ", schema="
         + schema
+        + ", memoCacheMaxBytes="
+        + memoCacheMaxBytes
+        + ", decryptCacheMaxBytes="
+        + decryptCacheMaxBytes
         + '}';
   }
 }
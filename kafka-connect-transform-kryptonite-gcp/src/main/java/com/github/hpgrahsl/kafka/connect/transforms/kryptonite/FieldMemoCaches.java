@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import com.github.hpgrahsl.kryptonite.CipherMode;
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.cache.DecryptionMemoCache;
+import com.github.hpgrahsl.kryptonite.cache.EncryptionMemoCache;
+import com.github.hpgrahsl.kryptonite.cache.MemoCacheStats;
+import com.github.hpgrahsl.kryptonite.crypto.CryptoAlgorithm;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.PluginMetrics;
+
+/**
+ * Holds the memo caches of all field paths. In ENCRYPT mode there is one {@link
+ * EncryptionMemoCache} per configured field path whose cipher algorithm is deterministic, plus a
+ * shared one for all field paths without an explicit field config. In DECRYPT mode field paths can
+ * opt into a {@link DecryptionMemoCache} via their field config. Field paths without a cache map to
+ * null.
+ */
+public class FieldMemoCaches {
+
+  public static final String DEFAULT_FIELD_TAG = "*";
+
+  private final Map<String, EncryptionMemoCache> encryptionCaches = new HashMap<>();
+  private final Map<String, DecryptionMemoCache> decryptionCaches = new HashMap<>();
+  private final EncryptionMemoCache defaultEncryptionCache;
+
+  public FieldMemoCaches(
+      AbstractConfig config, CipherMode cipherMode, Map<String, FieldConfig> fieldConfig) {
+    String defaultAlgorithm = config.getString(CipherField.CIPHER_ALGORITHM);
+    if (CipherMode.ENCRYPT == cipherMode) {
+      long defaultMaxBytes = config.getLong(CipherField.CIPHER_MEMO_CACHE_MAX_BYTES);
+      this.defaultEncryptionCache = newEncryptionMemoCache(defaultAlgorithm, defaultMaxBytes);
+      fieldConfig.forEach(
+          (path, fc) ->
+              encryptionCaches.put(
+                  path,
+                  newEncryptionMemoCache(
+                      fc.getAlgorithm().orElse(defaultAlgorithm),
+                      fc.getMemoCacheMaxBytes().orElse(defaultMaxBytes))));
+    } else {
+      this.defaultEncryptionCache = null;
+      fieldConfig.forEach(
+          (path, fc) ->
+              fc.getDecryptCacheMaxBytes()
+                  .filter(maxBytes -> maxBytes > 0)
+                  .ifPresent(
+                      maxBytes -> decryptionCaches.put(path, new DecryptionMemoCache(maxBytes))));
+    }
+  }
+
+  /** Returns the encryption memo cache responsible for the given field path or null if none. */
+  public EncryptionMemoCache forEncryption(String fieldPath) {
+    return encryptionCaches.getOrDefault(fieldPath, defaultEncryptionCache);
+  }
+
+  /** Returns the decryption memo cache of the given field path or null if none. */
+  public DecryptionMemoCache forDecryption(String fieldPath) {
+    return decryptionCaches.get(fieldPath);
+  }
+
+  public void registerMetrics(PluginMetrics metrics) {
+    if (defaultEncryptionCache != null) {
+      registerMetrics(metrics, "memo-cache", DEFAULT_FIELD_TAG, defaultEncryptionCache);
+    }
+    encryptionCaches.forEach(
+        (path, cache) -> {
+          if (cache != null) {
+            registerMetrics(metrics, "memo-cache", path, cache);
+          }
+        });
+    decryptionCaches.forEach(
+        (path, cache) -> registerMetrics(metrics, "decrypt-cache", path, cache));
+  }
+
+  public void invalidateAll() {
+    if (defaultEncryptionCache != null) {
+      defaultEncryptionCache.invalidateAll();
+    }
+    encryptionCaches.values().stream()
+        .filter(Objects::nonNull)
+        .forEach(EncryptionMemoCache::invalidateAll);
+    decryptionCaches.values().forEach(DecryptionMemoCache::invalidateAll);
+  }
+
+  private static void registerMetrics(
+      PluginMetrics metrics, String prefix, String fieldPath, MemoCacheStats stats) {
+    LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+    tags.put("field", fieldPath);
+    metrics.addMetric(
+        metrics.metricName(prefix + "-hit-rate", "ratio of lookups served from the cache", tags),
+        (Gauge<Double>) (config, now) -> stats.hitRate());
+    metrics.addMetric(
+        metrics.metricName(prefix + "-hit-count", "number of cache hits", tags),
+        (Gauge<Long>) (config, now) -> stats.hitCount());
+    metrics.addMetric(
+        metrics.metricName(prefix + "-miss-count", "number of cache misses", tags),
+        (Gauge<Long>) (config, now) -> stats.missCount());
+    metrics.addMetric(
+        metrics.metricName(
+            prefix + "-eviction-count", "number of entries evicted from the cache", tags),
+        (Gauge<Long>) (config, now) -> stats.evictionCount());
+    metrics.addMetric(
+        metrics.metricName(prefix + "-size", "approximate number of cached entries", tags),
+        (Gauge<Long>) (config, now) -> stats.estimatedSize());
+  }
+
+  private static EncryptionMemoCache newEncryptionMemoCache(String algorithm, long maxBytes) {
+    CryptoAlgorithm cryptoAlgorithm =
+        Kryptonite.ID_CRYPTOALGORITHM_LUT.get(Kryptonite.CIPHERNAME_ID_LUT.get(algorithm));
+    if (maxBytes <= 0 || cryptoAlgorithm == null || !cryptoAlgorithm.isDeterministic()) {
+      return null;
+    }
+    return new EncryptionMemoCache(maxBytes);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField.FieldMode;
+import com.github.hpgrahsl.kryptonite.FieldMetaData;
+import com.github.hpgrahsl.kryptonite.cache.DecryptionMemoCache;
+import com.github.hpgrahsl.kryptonite.cache.EncryptionMemoCache;
+
+/**
+ * How the values of one field path are processed, resolved from its field config and the connector
+ * config once at configure time: the meta data handed to {@link
+ * com.github.hpgrahsl.kryptonite.Kryptonite}, the field mode, whether {@code byte[]} and {@code
+ * ByteBuffer} values bypass the serde, and the memo caches of the path. Plans are immutable and
+ * shared by all threads.
+ */
+public final class FieldPlan {
+
+  private final String path;
+  private final FieldMetaData metaData;
+  private final FieldMode fieldMode;
+  private final boolean nativeBytes;
+  private final EncryptionMemoCache encryptionCache;
+  private final DecryptionMemoCache decryptionCache;
+
+  FieldPlan(
+      String path,
+      FieldMetaData metaData,
+      FieldMode fieldMode,
+      boolean nativeBytes,
+      EncryptionMemoCache encryptionCache,
+      DecryptionMemoCache decryptionCache) {
+    this.path = path;
+    this.metaData = metaData;
+    this.fieldMode = fieldMode;
+    this.nativeBytes = nativeBytes;
+    this.encryptionCache = encryptionCache;
+    this.decryptionCache = decryptionCache;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public FieldMetaData getMetaData() {
+    return metaData;
+  }
+
+  public FieldMode getFieldMode() {
+    return fieldMode;
+  }
+
+  public boolean isNativeBytes() {
+    return nativeBytes;
+  }
+
+  /** Returns the encryption memo cache of the field path or null if none. */
+  public EncryptionMemoCache getEncryptionCache() {
+    return encryptionCache;
+  }
+
+  /** Returns the decryption memo cache of the field path or null if none. */
+  public DecryptionMemoCache getDecryptionCache() {
+    return decryptionCache;
+  }
+
+  @Override
+  public String toString() {
+    return "FieldPlan{"
+        + "path='"
+        + path
+        + "'"
+        + ", metaData="
+        + metaData
+        + ", fieldMode="
+        + fieldMode
+        + ", nativeBytes="
+        + nativeBytes
+        + "}";
+  }
+}
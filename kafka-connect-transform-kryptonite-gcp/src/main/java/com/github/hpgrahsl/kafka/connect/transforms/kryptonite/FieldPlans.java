@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField.FieldMode;
+import com.github.hpgrahsl.kryptonite.FieldMetaData;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.apache.kafka.common.config.AbstractConfig;
+
+/**
+ * The {@link FieldPlan}s of all configured field paths compiled at configure time, plus a default
+ * plan for paths without a field config of their own, e.g. the entries of a matched map field which
+ * is processed element-wise. Looking up the plan of a path is the only per field work left.
+ *
+ * <p>The configured paths are also compiled into a trie of their segments between path delimiters.
+ * Every {@link Node} knows the plans of all configured paths below it by their path relative to the
+ * node, so that record handlers walking a record look up each field by its name alone instead of
+ * concatenating and hashing its full path, and can iterate the configured fields of a level rather
+ * than all of its fields.
+ */
+public class FieldPlans {
+
+  private final Map<String, FieldPlan> plans;
+  private final FieldPlan defaultPlan;
+  private final String pathDelimiter;
+  private final Pattern pathDelimiterPattern;
+  private final Node root = new Node();
+
+  public FieldPlans(
+      AbstractConfig config, Map<String, FieldConfig> fieldConfig, FieldMemoCaches memoCaches) {
+    String algorithm = config.getString(CipherField.CIPHER_ALGORITHM);
+    String keyName = config.getString(CipherField.CIPHER_DATA_KEY_NAME);
+    String keyVersion = config.getString(CipherField.CIPHER_DATA_KEY_VERSION);
+    FieldMode fieldMode = FieldMode.valueOf(config.getString(CipherField.FIELD_MODE));
+    boolean nativeBytes = config.getBoolean(CipherField.CIPHER_NATIVE_BYTES);
+    Map<String, FieldPlan> plans = new HashMap<>();
+    fieldConfig.forEach(
+        (path, fc) ->
+            plans.put(
+                path,
+                new FieldPlan(
+                    path,
+                    new FieldMetaData(
+                        fc.getAlgorithm().orElse(algorithm),
+                        "",
+                        fc.getKeyName().orElse(keyName),
+                        fc.getKeyVersion().orElse(keyVersion)),
+                    fieldMode,
+                    nativeBytes,
+                    memoCaches.forEncryption(path),
+                    memoCaches.forDecryption(path))));
+    this.plans = Collections.unmodifiableMap(plans);
+    this.pathDelimiter = config.getString(CipherField.PATH_DELIMITER);
+    this.pathDelimiterPattern = Pattern.compile(Pattern.quote(pathDelimiter));
+    plans.forEach(
+        (path, plan) -> {
+          Node node = root;
+          int start = 0;
+          for (String segment : pathDelimiterPattern.split(path, -1)) {
+            node.plans.put(path.substring(start), plan);
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+            start += segment.length() + pathDelimiter.length();
+          }
+          node.plan = plan;
+        });
+    this.defaultPlan =
+        new FieldPlan(
+            FieldMemoCaches.DEFAULT_FIELD_TAG,
+            new FieldMetaData(algorithm, "", keyName, keyVersion),
+            fieldMode,
+            nativeBytes,
+            memoCaches.forEncryption(null),
+            null);
+  }
+
+  /** Returns the plan of the given configured field path or null if it isn't configured. */
+  public FieldPlan get(String fieldPath) {
+    return plans.get(fieldPath);
+  }
+
+  /** Returns the plan of the given field path, falling back to the default plan. */
+  public FieldPlan getOrDefault(String fieldPath) {
+    return plans.getOrDefault(fieldPath, defaultPlan);
+  }
+
+  public boolean contains(String fieldPath) {
+    return plans.containsKey(fieldPath);
+  }
+
+  /** Returns the plan of the given node's path, falling back to the default plan. */
+  public FieldPlan planOf(Node node) {
+    return node != null && node.plan != null ? node.plan : defaultPlan;
+  }
+
+  /** Returns the node of the empty path, whose children are the top-level fields. */
+  public Node root() {
+    return root;
+  }
+
+  /**
+   * Returns the node of the given field path or null if no configured path starts with it, which
+   * implies that no field below the path is matched.
+   */
+  public Node node(String fieldPath) {
+    return fieldPath.isEmpty() ? root : child(root, fieldPath);
+  }
+
+  /**
+   * Returns the child of the given node for the field of the given name or null if no configured
+   * path continues with it. Names containing the path delimiter span several levels of the trie,
+   * just like they would when appended to a path string.
+   */
+  public Node child(Node node, String name) {
+    if (!name.contains(pathDelimiter)) {
+      return node.children.get(name);
+    }
+    for (String segment : pathDelimiterPattern.split(name, -1)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  /** The end of a prefix of one or more configured field paths. */
+  public static final class Node {
+
+    private final Map<String, Node> children = new HashMap<>();
+    private final Map<String, FieldPlan> plans = new HashMap<>();
+    private final Set<Map.Entry<String, FieldPlan>> planEntries =
+        Collections.unmodifiableMap(plans).entrySet();
+    private FieldPlan plan;
+
+    private Node() {}
+
+    /** Returns the plan of this node's path or null if it is only a prefix of configured paths. */
+    public FieldPlan getPlan() {
+      return plan;
+    }
+
+    /**
+     * Returns the plan of the configured path consisting of this node's path and the given name or
+     * null if that path isn't configured.
+     */
+    public FieldPlan plan(String name) {
+      return plans.get(name);
+    }
+
+    /** Returns the plans of all configured paths below this node by their relative paths. */
+    public Set<Map.Entry<String, FieldPlan>> plans() {
+      return planEntries;
+    }
+
+    public int planCount() {
+      return plans.size();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Map view of a schemaless record value whose matched fields are only decrypted once they are read,
+ * be it by key or while iterating, and are then replaced by their decrypted value in the underlying
+ * map. Until then the underlying map holds their ciphertext. A field failing to decrypt throws the
+ * {@link org.apache.kafka.connect.errors.DataException} naming its path on every access.
+ * Overwriting or removing a field which hasn't been decrypted yet drops its decryption and returns
+ * its ciphertext as previous value. Just like the maps it wraps, the view must not be used by
+ * several threads at the same time.
+ */
+public class LazyDecryptingMap extends AbstractMap<String, Object> {
+
+  private final Map<String, Object> delegate;
+  private final Map<String, Supplier<Object>> pending = new HashMap<>();
+
+  public LazyDecryptingMap(Map<String, Object> delegate) {
+    this.delegate = delegate;
+  }
+
+  /** Defers computing the value of the given key to the given decryption until it's read. */
+  public void defer(String key, Supplier<Object> decryption) {
+    pending.put(key, decryption);
+  }
+
+  /** Returns the number of fields which haven't been decrypted yet. */
+  public int pendingCount() {
+    return pending.size();
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return delegate.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!pending.isEmpty() && pending.containsKey(key)) {
+      return resolve((String) key);
+    }
+    return delegate.get(key);
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    if (!pending.isEmpty()) {
+      pending.remove(key);
+    }
+    return delegate.put(key, value);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (!pending.isEmpty()) {
+      pending.remove(key);
+    }
+    return delegate.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    pending.clear();
+    delegate.clear();
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        Iterator<Map.Entry<String, Object>> entries = delegate.entrySet().iterator();
+        return new Iterator<Map.Entry<String, Object>>() {
+          private String current;
+
+          @Override
+          public boolean hasNext() {
+            return entries.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, Object> next() {
+            current = entries.next().getKey();
+            return new LazyEntry(current);
+          }
+
+          @Override
+          public void remove() {
+            pending.remove(current);
+            entries.remove();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return delegate.size();
+      }
+    };
+  }
+
+  private Object resolve(String key) {
+    // the decryption stays pending if it fails, so that every further access fails as well
+    Object value = pending.get(key).get();
+    pending.remove(key);
+    delegate.put(key, value);
+    return value;
+  }
+
+  private final class LazyEntry implements Map.Entry<String, Object> {
+
+    private final String key;
+
+    private LazyEntry(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      return get(key);
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      return put(key, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+      return key.equals(that.getKey()) && Objects.equals(getValue(), that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode() ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Copy-on-write view of a map which only holds the entries written to it and reads all others from
+ * the underlying map, which is never modified. Entries keep the iteration order of the underlying
+ * map, entries of new keys follow in insertion order, just like they would in a {@link
+ * LinkedHashMap} copy. The underlying map must not change while the view is in use.
+ */
+public class OverlayMap<K, V> extends AbstractMap<K, V> {
+
+  private static final Object REMOVED = new Object();
+
+  private final Map<K, V> base;
+  // values of keys of the underlying map written to or removed from the view, removed keys which
+  // are written again count as new keys
+  private final Map<K, Object> replaced = new HashMap<>();
+  private final Map<K, V> added = new LinkedHashMap<>();
+  private int removedCount;
+
+  public OverlayMap(Map<K, V> base) {
+    this.base = base;
+  }
+
+  @Override
+  public int size() {
+    return base.size() - removedCount + added.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (!replaced.isEmpty() && replaced.containsKey(key)) {
+      return replaced.get(key) != REMOVED || added.containsKey(key);
+    }
+    return base.containsKey(key) || (!added.isEmpty() && added.containsKey(key));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(Object key) {
+    if (!replaced.isEmpty()) {
+      Object value = replaced.get(key);
+      if (value != null || replaced.containsKey(key)) {
+        return value != REMOVED ? (V) value : added.get(key);
+      }
+    }
+    V value = base.get(key);
+    if (value != null || added.isEmpty()) {
+      return value;
+    }
+    return added.get(key);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V put(K key, V value) {
+    Object previous = replaced.get(key);
+    if (previous == REMOVED) {
+      return added.put(key, value);
+    }
+    if (previous != null || replaced.containsKey(key)) {
+      return (V) replaced.put(key, value);
+    }
+    if (base.containsKey(key)) {
+      replaced.put(key, value);
+      return base.get(key);
+    }
+    return added.put(key, value);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V remove(Object key) {
+    Object previous = replaced.get(key);
+    if (previous == REMOVED) {
+      return added.remove(key);
+    }
+    if (previous != null || replaced.containsKey(key)) {
+      replaced.put((K) key, REMOVED);
+      removedCount++;
+      return (V) previous;
+    }
+    if (base.containsKey(key)) {
+      replaced.put((K) key, REMOVED);
+      removedCount++;
+      return base.get(key);
+    }
+    return added.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    for (K key : base.keySet()) {
+      replaced.put(key, REMOVED);
+    }
+    removedCount = base.size();
+    added.clear();
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return OverlayMap.this.size();
+      }
+    };
+  }
+
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+    private final Iterator<Map.Entry<K, V>> baseEntries = base.entrySet().iterator();
+    private final Iterator<Map.Entry<K, V>> addedEntries = added.entrySet().iterator();
+    private Map.Entry<K, V> next;
+    private Map.Entry<K, V> current;
+    private boolean inAdded;
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && baseEntries.hasNext()) {
+        Map.Entry<K, V> entry = baseEntries.next();
+        if (replaced.isEmpty() || !replaced.containsKey(entry.getKey())) {
+          next = new OverlayEntry(entry.getKey(), entry.getValue());
+        } else if (replaced.get(entry.getKey()) != REMOVED) {
+          next = new OverlayEntry(entry.getKey(), get(entry.getKey()));
+        }
+      }
+      return next != null || addedEntries.hasNext();
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (next != null) {
+        current = next;
+        next = null;
+        inAdded = false;
+      } else {
+        current = addedEntries.next();
+        inAdded = true;
+      }
+      return current;
+    }
+
+    @Override
+    public void remove() {
+      if (current == null) {
+        throw new IllegalStateException();
+      }
+      if (inAdded) {
+        addedEntries.remove();
+      } else {
+        OverlayMap.this.remove(current.getKey());
+      }
+      current = null;
+    }
+  }
+
+  private final class OverlayEntry extends AbstractMap.SimpleEntry<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private OverlayEntry(K key, V value) {
+      super(key, value);
+    }
+
+    @Override
+    public V setValue(V value) {
+      put(getKey(), value);
+      return super.setValue(value);
+    }
+  }
+}
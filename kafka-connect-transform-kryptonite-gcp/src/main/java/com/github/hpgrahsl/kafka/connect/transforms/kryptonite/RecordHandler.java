@@ -16,16 +16,26 @@
 
 package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
 
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.RawBytes;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.SerdeProcessor;
+import com.github.hpgrahsl.kryptonite.CipherEncoding;
 import com.github.hpgrahsl.kryptonite.CipherMode;
 import com.github.hpgrahsl.kryptonite.FieldMetaData;
 import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.cache.DecryptionMemoCache;
+import com.github.hpgrahsl.kryptonite.cache.EncryptionMemoCache;
+import java.nio.ByteBuffer;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.connect.errors.DataException;
@@ -35,27 +45,36 @@ import org.slf4j.LoggerFactory;
 public abstract class RecordHandler implements FieldPathMatcher {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RecordHandler.class);
+  private static final int RANGES_PER_THREAD = 4;
 
   private final AbstractConfig config;
   private final SerdeProcessor serdeProcessor;
   private final Kryptonite kryptonite;
+  private final ForkJoinPool forkJoinPool;
+  private final int parallelismThreshold;
 
   protected final String pathDelimiter;
   protected final CipherMode cipherMode;
-  protected final Map<String, FieldConfig> fieldConfig;
+  protected final CipherEncoding cipherEncoding;
+  protected final FieldPlans fieldPlans;
 
   public RecordHandler(
       AbstractConfig config,
       SerdeProcessor serdeProcessor,
       Kryptonite kryptonite,
       CipherMode cipherMode,
-      Map<String, FieldConfig> fieldConfig) {
+      FieldPlans fieldPlans,
+      ForkJoinPool forkJoinPool) {
     this.config = config;
     this.serdeProcessor = serdeProcessor;
     this.kryptonite = kryptonite;
+    this.forkJoinPool = forkJoinPool;
+    this.parallelismThreshold = config.getInt(CipherField.CIPHER_PARALLELISM_THRESHOLD);
     this.pathDelimiter = config.getString(CipherField.PATH_DELIMITER);
     this.cipherMode = cipherMode;
-    this.fieldConfig = fieldConfig;
+    this.cipherEncoding =
+        CipherEncoding.forName(config.getString(CipherField.CIPHER_TEXT_ENCODING));
+    this.fieldPlans = fieldPlans;
   }
 
   public AbstractConfig getConfig() {
@@ -67,17 +86,37 @@ public abstract class RecordHandler implements FieldPathMatcher {
   }
 
   public Object processField(Object object, String matchedPath) {
+    return processField(object, fieldPlans.getOrDefault(matchedPath), matchedPath);
+  }
+
+  protected Object processField(Object object, FieldPlan plan, String matchedPath) {
     try {
       LOGGER.debug("{} field {}", cipherMode, matchedPath);
-      FieldMetaData fieldMetaData = determineFieldMetaData(object, matchedPath);
-      LOGGER.trace("field meta-data for path '{}' {}", matchedPath, fieldMetaData);
+      FieldMetaData fieldMetaData = plan.getMetaData();
       if (CipherMode.ENCRYPT == cipherMode) {
+        EncryptionMemoCache memoCache = plan.getEncryptionCache();
+        if (isNativeBytes(plan, object)) {
+          return kryptonite.cipher(
+              RawBytes.frame(object), fieldMetaData, memoCache, cipherEncoding);
+        }
         byte[] valueBytes = serdeProcessor.objectToBytes(object);
-        String cipherText = kryptonite.cipher(valueBytes, fieldMetaData);
-        return cipherText;
+        return CipherEncoding.RAW == cipherEncoding
+            ? kryptonite.cipherRaw(valueBytes, fieldMetaData, memoCache)
+            : kryptonite.cipher(valueBytes, fieldMetaData, memoCache);
       } else {
-        byte[] plainText = kryptonite.decipher((String) object, fieldMetaData);
+        Object cipherText =
+            object instanceof ByteBuffer ? toByteArray((ByteBuffer) object) : object;
+        DecryptionMemoCache decryptionCache = plan.getDecryptionCache();
+        Object memoized = lookupDecrypted(decryptionCache, cipherText, fieldMetaData);
+        if (memoized != null) {
+          return memoized;
+        }
+        byte[] plainText =
+            cipherText instanceof byte[]
+                ? kryptonite.decipher((byte[]) cipherText, fieldMetaData)
+                : kryptonite.decipher((String) cipherText, fieldMetaData);
         Object restoredField = serdeProcessor.bytesToObject(plainText);
+        memoizeDecrypted(decryptionCache, cipherText, fieldMetaData, plainText, restoredField);
         return restoredField;
       }
     } catch (Exception e) {
@@ -86,53 +125,347 @@ public abstract class RecordHandler implements FieldPathMatcher {
     }
   }
 
+  /**
+   * Encrypts or decrypts all fields collected in the given batch by means of the batch API of
+   * {@link Kryptonite} and then hands the results to the batch's callbacks in the order in which
+   * they were added. Batches reaching the parallelism threshold are split into ranges which are
+   * processed on the fork join pool.
+   */
+  public void processFields(FieldBatch batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    Object[] results = new Object[batch.size()];
+    if (isParallel(batch.size())) {
+      processInParallel(batch.size(), (from, to) -> processFields(batch, from, to, results));
+    } else {
+      processFields(batch, 0, batch.size(), results);
+    }
+    batch.complete(results);
+  }
+
+  private void processFields(FieldBatch batch, int from, int to, Object[] results) {
+    List<FieldPlan> plans = batch.plans.subList(from, to);
+    try {
+      LOGGER.debug("{} fields {}", cipherMode, plans);
+      int size = to - from;
+      if (CipherMode.ENCRYPT == cipherMode) {
+        List<Integer> pending = new ArrayList<>(size);
+        List<byte[]> plainTexts = new ArrayList<>(size);
+        List<FieldMetaData> pendingMetaData = new ArrayList<>(size);
+        List<EncryptionMemoCache> encryptionCaches = new ArrayList<>(size);
+        for (int i = from; i < to; i++) {
+          Object value = batch.values.get(i);
+          FieldPlan plan = batch.plans.get(i);
+          FieldMetaData fieldMetaData = plan.getMetaData();
+          EncryptionMemoCache memoCache = plan.getEncryptionCache();
+          if (isNativeBytes(plan, value)) {
+            results[i] =
+                kryptonite.cipher(RawBytes.frame(value), fieldMetaData, memoCache, cipherEncoding);
+            continue;
+          }
+          pending.add(i);
+          plainTexts.add(serdeProcessor.objectToBytes(value));
+          pendingMetaData.add(fieldMetaData);
+          encryptionCaches.add(memoCache);
+        }
+        List<Object> cipherTexts =
+            kryptonite.cipherAll(plainTexts, pendingMetaData, encryptionCaches, cipherEncoding);
+        for (int p = 0; p < pending.size(); p++) {
+          results[pending.get(p)] = cipherTexts.get(p);
+        }
+      } else {
+        List<Integer> pending = new ArrayList<>(size);
+        List<Object> cipherTexts = new ArrayList<>(size);
+        List<FieldMetaData> pendingMetaData = new ArrayList<>(size);
+        DecryptionMemoCache[] decryptionCaches = new DecryptionMemoCache[size];
+        for (int i = from; i < to; i++) {
+          Object value = batch.values.get(i);
+          Object cipherText = value instanceof ByteBuffer ? toByteArray((ByteBuffer) value) : value;
+          FieldMetaData fieldMetaData = batch.plans.get(i).getMetaData();
+          decryptionCaches[i - from] = batch.plans.get(i).getDecryptionCache();
+          results[i] = lookupDecrypted(decryptionCaches[i - from], cipherText, fieldMetaData);
+          if (results[i] == null) {
+            pending.add(i);
+            cipherTexts.add(cipherText);
+            pendingMetaData.add(fieldMetaData);
+          }
+        }
+        List<byte[]> plainTexts = kryptonite.decipherAll(cipherTexts, pendingMetaData);
+        for (int p = 0; p < pending.size(); p++) {
+          int i = pending.get(p);
+          byte[] plainText = plainTexts.get(p);
+          results[i] = serdeProcessor.bytesToObject(plainText);
+          memoizeDecrypted(
+              decryptionCaches[i - from],
+              cipherTexts.get(p),
+              pendingMetaData.get(p),
+              plainText,
+              results[i]);
+        }
+      }
+    } catch (Exception e) {
+      throw fieldFailure(batch, from, to, e);
+    }
+  }
+
+  /**
+   * Pinpoints the field which made the given range of a batch fail by processing its fields one by
+   * one, so that the failure names the path of that field only. Should every field succeed on its
+   * own, the failure of the range is reported with all of its paths.
+   */
+  private DataException fieldFailure(FieldBatch batch, int from, int to, Exception cause) {
+    for (int i = from; i < to; i++) {
+      FieldPlan plan = batch.plans.get(i);
+      try {
+        processField(batch.values.get(i), plan, plan.getPath());
+      } catch (DataException e) {
+        return e;
+      }
+    }
+    return new DataException(
+        "error: "
+            + cipherMode
+            + " of field paths "
+            + batch.plans.subList(from, to).stream()
+                .map(FieldPlan::getPath)
+                .collect(Collectors.toList())
+            + " failed unexpectedly",
+        cause);
+  }
+
+  private static boolean isNativeBytes(FieldPlan plan, Object object) {
+    return plan.isNativeBytes() && RawBytes.isRawBytes(object);
+  }
+
+  private Object lookupDecrypted(
+      DecryptionMemoCache decryptionCache, Object cipherText, FieldMetaData fieldMetaData) {
+    if (decryptionCache == null) {
+      return null;
+    }
+    return cipherText instanceof byte[]
+        ? decryptionCache.get(
+            (byte[]) cipherText, fieldMetaData.getIdentifier(), serdeProcessor::bytesToObject)
+        : decryptionCache.get(
+            (String) cipherText, fieldMetaData.getIdentifier(), serdeProcessor::bytesToObject);
+  }
+
+  private void memoizeDecrypted(
+      DecryptionMemoCache decryptionCache,
+      Object cipherText,
+      FieldMetaData fieldMetaData,
+      byte[] plainText,
+      Object restoredField) {
+    if (decryptionCache == null) {
+      return;
+    }
+    if (cipherText instanceof byte[]) {
+      decryptionCache.put(
+          (byte[]) cipherText, fieldMetaData.getIdentifier(), plainText, restoredField);
+    } else {
+      decryptionCache.put(
+          (String) cipherText, fieldMetaData.getIdentifier(), plainText, restoredField);
+    }
+  }
+
+  private static byte[] toByteArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
   public List<?> processListField(List<?> list, String matchedPath) {
+    return processListField(list, fieldPlans.node(matchedPath), matchedPath);
+  }
+
+  /**
+   * Processes the elements of a list field given the trie node of its path, which is null if no
+   * configured path starts with it.
+   */
+  protected List<?> processListField(List<?> list, FieldPlans.Node node, String matchedPath) {
+    FieldPlan plan = fieldPlans.planOf(node);
+    if (isParallel(list.size())) {
+      Object[] elements = list.toArray();
+      Object[] results = new Object[elements.length];
+      processInParallel(
+          elements.length,
+          (from, to) -> {
+            for (int i = from; i < to; i++) {
+              results[i] = processListElement(elements[i], node, plan, matchedPath);
+            }
+          });
+      return new ArrayList<>(Arrays.asList(results));
+    }
     return list.stream()
-        .map(
-            e -> {
-              if (e instanceof List) return processListField((List<?>) e, matchedPath);
-              if (e instanceof Map) return processMapField((Map<?, ?>) e, matchedPath);
-              return processField(e, matchedPath);
-            })
+        .map(e -> processListElement(e, node, plan, matchedPath))
         .collect(Collectors.toList());
   }
 
+  private Object processListElement(
+      Object element, FieldPlans.Node node, FieldPlan plan, String matchedPath) {
+    if (element instanceof List) return processListField((List<?>) element, node, matchedPath);
+    if (element instanceof Map) return processMapField((Map<?, ?>) element, node, matchedPath);
+    return processField(element, plan, matchedPath);
+  }
+
   public Map<?, ?> processMapField(Map<?, ?> map, String matchedPath) {
+    return processMapField(map, fieldPlans.node(matchedPath), matchedPath);
+  }
+
+  /**
+   * Processes the values of a map field given the trie node of its path, which is null if no
+   * configured path starts with it.
+   */
+  protected Map<?, ?> processMapField(Map<?, ?> map, FieldPlans.Node node, String matchedPath) {
+    if (isParallel(map.size())) {
+      Map.Entry<?, ?>[] entries = map.entrySet().toArray(new Map.Entry<?, ?>[0]);
+      Object[] results = new Object[entries.length];
+      processInParallel(
+          entries.length,
+          (from, to) -> {
+            for (int i = from; i < to; i++) {
+              results[i] = processMapValue(entries[i], node, matchedPath);
+            }
+          });
+      Map<Object, Object> processed = new LinkedHashMap<>();
+      for (int i = 0; i < entries.length; i++) {
+        processed.put(entries[i].getKey(), results[i]);
+      }
+      return processed;
+    }
     return map.entrySet().stream()
-        .map(
-            e -> {
-              String pathUpdate = matchedPath + pathDelimiter + e.getKey();
-              if (e.getValue() instanceof List)
-                return new AbstractMap.SimpleEntry<>(
-                    e.getKey(), processListField((List<?>) e.getValue(), pathUpdate));
-              if (e.getValue() instanceof Map)
-                return new AbstractMap.SimpleEntry<>(
-                    e.getKey(), processMapField((Map<?, ?>) e.getValue(), pathUpdate));
-              return new AbstractMap.SimpleEntry<>(
-                  e.getKey(), processField(e.getValue(), pathUpdate));
-            })
+        .map(e -> new AbstractMap.SimpleEntry<>(e.getKey(), processMapValue(e, node, matchedPath)))
         .collect(
             LinkedHashMap::new, (lhm, e) -> lhm.put(e.getKey(), e.getValue()), HashMap::putAll);
   }
 
-  private FieldMetaData determineFieldMetaData(Object object, String fieldPath) {
-    return Optional.ofNullable(fieldConfig.get(fieldPath))
-        .map(
-            fc ->
-                new FieldMetaData(
-                    fc.getAlgorithm()
-                        .orElseGet(() -> config.getString(CipherField.CIPHER_ALGORITHM)),
-                    Optional.ofNullable(object).map(o -> o.getClass().getName()).orElse(""),
-                    fc.getKeyName()
-                        .orElseGet(() -> config.getString(CipherField.CIPHER_DATA_KEY_NAME)),
-                    fc.getKeyVersion()
-                        .orElseGet(() -> config.getString(CipherField.CIPHER_DATA_KEY_VERSION))))
-        .orElseGet(
-            () ->
-                new FieldMetaData(
-                    config.getString(CipherField.CIPHER_ALGORITHM),
-                    Optional.ofNullable(object).map(o -> o.getClass().getName()).orElse(""),
-                    config.getString(CipherField.CIPHER_DATA_KEY_NAME),
-                    config.getString(CipherField.CIPHER_DATA_KEY_VERSION)));
+  private Object processMapValue(Map.Entry<?, ?> entry, FieldPlans.Node node, String matchedPath) {
+    String key = String.valueOf(entry.getKey());
+    String pathUpdate = matchedPath + pathDelimiter + key;
+    FieldPlans.Node child = node != null ? fieldPlans.child(node, key) : null;
+    if (entry.getValue() instanceof List)
+      return processListField((List<?>) entry.getValue(), child, pathUpdate);
+    if (entry.getValue() instanceof Map)
+      return processMapField((Map<?, ?>) entry.getValue(), child, pathUpdate);
+    return processField(entry.getValue(), fieldPlans.planOf(child), pathUpdate);
+  }
+
+  private boolean isParallel(int size) {
+    return forkJoinPool != null && size >= parallelismThreshold;
+  }
+
+  /**
+   * Splits the indexes {@code [0, size)} into ranges processed on the fork join pool. The first
+   * failure is rethrown as is on the calling thread so that it still carries the field path of the
+   * element or field which failed.
+   */
+  private void processInParallel(int size, IndexRangeProcessor processor) {
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    int rangeSize = Math.max(1, size / (forkJoinPool.getParallelism() * RANGES_PER_THREAD));
+    forkJoinPool.invoke(new IndexRangeTask(0, size, rangeSize, processor, failure));
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /**
+   * Matched fields of one record which are processed together. Every field is added together with a
+   * callback receiving its processed value. Further actions, e.g. putting a nested struct into its
+   * parent once all of its own fields have been set, can be queued in between and run in order with
+   * those callbacks.
+   */
+  public static final class FieldBatch {
+
+    private final List<Object> values = new ArrayList<>();
+    private final List<FieldPlan> plans = new ArrayList<>();
+    private final List<Object> completions = new ArrayList<>();
+
+    public void add(Object value, FieldPlan plan, Consumer<Object> callback) {
+      completions.add(new IndexedCallback(values.size(), callback));
+      values.add(value);
+      plans.add(plan);
+    }
+
+    public void then(Runnable action) {
+      completions.add(action);
+    }
+
+    public boolean isEmpty() {
+      return values.isEmpty();
+    }
+
+    public int size() {
+      return values.size();
+    }
+
+    public void complete(Object[] results) {
+      for (Object completion : completions) {
+        if (completion instanceof IndexedCallback) {
+          IndexedCallback indexed = (IndexedCallback) completion;
+          indexed.callback.accept(results[indexed.index]);
+        } else {
+          ((Runnable) completion).run();
+        }
+      }
+    }
+
+    private static final class IndexedCallback {
+
+      private final int index;
+      private final Consumer<Object> callback;
+
+      private IndexedCallback(int index, Consumer<Object> callback) {
+        this.index = index;
+        this.callback = callback;
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface IndexRangeProcessor {
+
+    void process(int from, int to);
+  }
+
+  @SuppressWarnings("serial")
+  private static final class IndexRangeTask extends RecursiveAction {
+
+    private final int from;
+    private final int to;
+    private final int rangeSize;
+    private final IndexRangeProcessor processor;
+    private final AtomicReference<RuntimeException> failure;
+
+    private IndexRangeTask(
+        int from,
+        int to,
+        int rangeSize,
+        IndexRangeProcessor processor,
+        AtomicReference<RuntimeException> failure) {
+      this.from = from;
+      this.to = to;
+      this.rangeSize = rangeSize;
+      this.processor = processor;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      if (failure.get() != null) {
+        return;
+      }
+      if (to - from <= rangeSize) {
+        try {
+          processor.process(from, to);
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(
+          new IndexRangeTask(from, middle, rangeSize, processor, failure),
+          new IndexRangeTask(middle, to, rangeSize, processor, failure));
+    }
   }
 }
@@ -17,7 +17,9 @@
 package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
 
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField.FieldMode;
+import com.github.hpgrahsl.kryptonite.CipherEncoding;
 import com.github.hpgrahsl.kryptonite.CipherMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -42,17 +44,29 @@ public class SchemaRewriter {
   private final CipherMode cipherMode;
   private final String pathDelimiter;
   private final TypeSchemaMapper typeSchemaMapper;
+  private final CipherEncoding cipherEncoding;
 
   public SchemaRewriter(
       Map<String, FieldConfig> fieldConfig,
       FieldMode fieldMode,
       CipherMode cipherMode,
       String pathDelimiter) {
-    this.fieldConfig = fieldConfig;
-    this.fieldMode = fieldMode;
-    this.cipherMode = cipherMode;
-    this.pathDelimiter = pathDelimiter;
-    this.typeSchemaMapper = new DefaultTypeSchemaMapper();
+    this(fieldConfig, fieldMode, cipherMode, pathDelimiter, new DefaultTypeSchemaMapper());
+  }
+
+  public SchemaRewriter(
+      Map<String, FieldConfig> fieldConfig,
+      FieldMode fieldMode,
+      CipherMode cipherMode,
+      String pathDelimiter,
+      CipherEncoding cipherEncoding) {
+    this(
+        fieldConfig,
+        fieldMode,
+        cipherMode,
+        pathDelimiter,
+        new DefaultTypeSchemaMapper(),
+        cipherEncoding);
   }
 
   public SchemaRewriter(
@@ -61,11 +75,23 @@ public class SchemaRewriter {
       CipherMode cipherMode,
       String pathDelimiter,
       TypeSchemaMapper typeSchemaMapper) {
+    this(
+        fieldConfig, fieldMode, cipherMode, pathDelimiter, typeSchemaMapper, CipherEncoding.BASE64);
+  }
+
+  public SchemaRewriter(
+      Map<String, FieldConfig> fieldConfig,
+      FieldMode fieldMode,
+      CipherMode cipherMode,
+      String pathDelimiter,
+      TypeSchemaMapper typeSchemaMapper,
+      CipherEncoding cipherEncoding) {
     this.fieldConfig = fieldConfig;
     this.fieldMode = fieldMode;
     this.cipherMode = cipherMode;
     this.pathDelimiter = pathDelimiter;
     this.typeSchemaMapper = typeSchemaMapper;
+    this.cipherEncoding = cipherEncoding;
   }
 
   public Schema adaptSchema(Schema original, String matchedPath) {
@@ -85,6 +111,28 @@ public class SchemaRewriter {
     return original.isOptional() ? builder.optional().build() : builder.build();
   }
 
+  /**
+   * Returns the {@link CipherMode#DECRYPT} schemas of all field paths whose configured schema is a
+   * struct, i.e. the schemas decrypted struct values of these paths have. Field configs with an
+   * invalid schema spec are skipped, they fail once a record is processed.
+   */
+  public List<Schema> structSchemasFromConfig() {
+    List<Schema> schemas = new ArrayList<>();
+    fieldConfig.forEach(
+        (fieldPath, fc) ->
+            fc.getSchema()
+                .filter(fs -> Type.STRUCT.name().equals(fs.get("type")))
+                .ifPresent(
+                    fs -> {
+                      try {
+                        schemas.add(extractAndAdaptStructSchemaFromConfig(fs, fieldPath));
+                      } catch (DataException | IllegalArgumentException | ClassCastException exc) {
+                        LOGGER.debug("skipping invalid struct schema spec of '{}'", fieldPath);
+                      }
+                    }));
+    return schemas;
+  }
+
   private void adaptField(
       Type decisiveType, SchemaBuilder builder, Field field, String updatedPath) {
     LOGGER.trace("adapting to {} field type {}", cipherMode, decisiveType);
@@ -102,7 +150,7 @@ public class SchemaRewriter {
         builder.field(
             field.name(),
             typeSchemaMapper.getSchemaForPrimitiveType(
-                decisiveType, field.schema().isOptional(), cipherMode));
+                decisiveType, field.schema().isOptional(), cipherMode, cipherEncoding));
     }
   }
 
@@ -117,11 +165,10 @@ public class SchemaRewriter {
                         typeSchemaMapper.getSchemaForPrimitiveType(
                             field.schema().valueSchema().type(),
                             field.schema().valueSchema().isOptional(),
-                            cipherMode))
+                            cipherMode,
+                            cipherEncoding))
                     .build()
-                : (field.schema().isOptional()
-                    ? Schema.OPTIONAL_STRING_SCHEMA
-                    : Schema.STRING_SCHEMA));
+                : encryptedObjectSchema(field.schema().isOptional()));
       } else {
         // NOTE: whether or not the array itself is optional is specified
         // in the config instead of taken from field.schema().isOptional()
@@ -145,15 +192,15 @@ public class SchemaRewriter {
                         typeSchemaMapper.getSchemaForPrimitiveType(
                             field.schema().keySchema().type(),
                             field.schema().keySchema().isOptional(),
-                            cipherMode),
+                            cipherMode,
+                            cipherEncoding),
                         typeSchemaMapper.getSchemaForPrimitiveType(
                             field.schema().valueSchema().type(),
                             field.schema().valueSchema().isOptional(),
-                            cipherMode))
+                            cipherMode,
+                            cipherEncoding))
                     .build()
-                : (field.schema().isOptional()
-                    ? Schema.OPTIONAL_STRING_SCHEMA
-                    : Schema.STRING_SCHEMA));
+                : encryptedObjectSchema(field.schema().isOptional()));
       } else {
         // NOTE: whether or not the map itself is optional is specified
         // in the config instead of taken from field.schema().isOptional()
@@ -173,7 +220,7 @@ public class SchemaRewriter {
           field.name(),
           FieldMode.ELEMENT == fieldMode
               ? adaptSchema(field.schema(), fieldPath)
-              : field.schema().isOptional() ? Schema.OPTIONAL_STRING_SCHEMA : Schema.STRING_SCHEMA);
+              : encryptedObjectSchema(field.schema().isOptional()));
     } else {
       // NOTE: whether or not the map itself is optional is specified
       // in the config instead of taken from field.schema().isOptional()
@@ -183,6 +230,13 @@ public class SchemaRewriter {
     }
   }
 
+  private Schema encryptedObjectSchema(boolean isOptional) {
+    if (CipherEncoding.RAW == cipherEncoding) {
+      return isOptional ? Schema.OPTIONAL_BYTES_SCHEMA : Schema.BYTES_SCHEMA;
+    }
+    return isOptional ? Schema.OPTIONAL_STRING_SCHEMA : Schema.STRING_SCHEMA;
+  }
+
   private Type derivePrimaryType(Field field, String fieldPath) {
     try {
       if (CipherMode.ENCRYPT == cipherMode) return field.schema().type();
@@ -221,7 +275,8 @@ public class SchemaRewriter {
     boolean isValueOptional = extractSubTypeOptionalFlagFromConfig(fieldSpec, "valueSchema");
     SchemaBuilder sb =
         SchemaBuilder.array(
-            typeSchemaMapper.getSchemaForPrimitiveType(valueType, isValueOptional, cipherMode));
+            typeSchemaMapper.getSchemaForPrimitiveType(
+                valueType, isValueOptional, cipherMode, cipherEncoding));
     return isArrayOptional ? sb.optional().build() : sb.build();
   }
 
@@ -246,8 +301,10 @@ public class SchemaRewriter {
     }
     SchemaBuilder sb =
         SchemaBuilder.map(
-            typeSchemaMapper.getSchemaForPrimitiveType(keyType, isKeyOptional, cipherMode),
-            typeSchemaMapper.getSchemaForPrimitiveType(valueType, isValueOptional, cipherMode));
+            typeSchemaMapper.getSchemaForPrimitiveType(
+                keyType, isKeyOptional, cipherMode, cipherEncoding),
+            typeSchemaMapper.getSchemaForPrimitiveType(
+                valueType, isValueOptional, cipherMode, cipherEncoding));
     return isMapOptional ? sb.optional().build() : sb.build();
   }
 
@@ -293,7 +350,7 @@ public class SchemaRewriter {
             structBuilder.field(
                 nestedFieldName,
                 typeSchemaMapper.getSchemaForPrimitiveType(
-                    nestedFieldType, isNestedFieldOptional, cipherMode));
+                    nestedFieldType, isNestedFieldOptional, cipherMode, cipherEncoding));
           }
         });
     return isStructOptional ? structBuilder.optional().build() : structBuilder.build();
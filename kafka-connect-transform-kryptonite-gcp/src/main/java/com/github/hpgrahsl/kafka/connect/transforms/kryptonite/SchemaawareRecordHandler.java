@@ -20,15 +20,24 @@ import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField.Field
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.SerdeProcessor;
 import com.github.hpgrahsl.kryptonite.CipherMode;
 import com.github.hpgrahsl.kryptonite.Kryptonite;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Schema.Type;
 import org.apache.kafka.connect.data.Struct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Processes the matched fields of structs. Since the outcome of matching only depends on a struct's
+ * schema, it is compiled into a {@link StructPlan} per schema, which records the indexes of the
+ * fields to copy and the processing steps of the matched fields, and is then applied to every
+ * struct of that schema.
+ */
 public class SchemaawareRecordHandler extends RecordHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SchemaawareRecordHandler.class);
@@ -38,8 +47,9 @@ public class SchemaawareRecordHandler extends RecordHandler {
       SerdeProcessor serdeProcessor,
       Kryptonite kryptonite,
       CipherMode cipherMode,
-      Map<String, FieldConfig> fieldConfig) {
-    super(config, serdeProcessor, kryptonite, cipherMode, fieldConfig);
+      FieldPlans fieldPlans,
+      ForkJoinPool forkJoinPool) {
+    super(config, serdeProcessor, kryptonite, cipherMode, fieldPlans, forkJoinPool);
   }
 
   @Override
@@ -49,61 +59,142 @@ public class SchemaawareRecordHandler extends RecordHandler {
       Schema schemaNew,
       Object objectNew,
       String matchedPath) {
-    Struct dataOriginal = (Struct) objectOriginal;
-    Struct dataNew = (Struct) objectNew;
-    schemaOriginal
-        .fields()
-        .forEach(
-            f -> {
-              String updatedPath =
-                  matchedPath.isEmpty() ? f.name() : matchedPath + pathDelimiter + f.name();
-              if (fieldConfig.containsKey(updatedPath)) {
-                LOGGER.trace("matched field '{}'", updatedPath);
-                if (FieldMode.ELEMENT
-                    == FieldMode.valueOf(getConfig().getString(CipherField.FIELD_MODE))) {
-                  if (f.schema().type() == Type.ARRAY) {
-                    LOGGER.trace("processing {} field element-wise", Type.ARRAY);
-                    dataNew.put(
-                        schemaNew.field(f.name()),
-                        processListField((List<?>) dataOriginal.get(f.name()), updatedPath));
-                  } else if (f.schema().type() == Type.MAP) {
-                    LOGGER.trace("processing {} field element-wise", Type.MAP);
-                    dataNew.put(
-                        schemaNew.field(f.name()),
-                        processMapField((Map<?, ?>) dataOriginal.get(f.name()), updatedPath));
-                  } else if (f.schema().type() == Type.STRUCT) {
-                    if (dataOriginal.get(f.name()) != null) {
-                      LOGGER.trace("processing {} field element-wise", Type.STRUCT);
-                      dataNew.put(
-                          schemaNew.field(f.name()),
-                          matchFields(
-                              f.schema(),
-                              dataOriginal.get(f.name()),
-                              schemaNew.field(f.name()).schema(),
-                              new Struct(schemaNew.field(f.name()).schema()),
-                              updatedPath));
-                    } else {
-                      LOGGER.trace(
-                          "value of {} field was null -> skip element-wise sub-field matching",
-                          Type.STRUCT);
-                    }
-                  } else {
-                    LOGGER.trace("processing primitive field of type {}", f.schema().type());
-                    dataNew.put(
-                        schemaNew.field(f.name()),
-                        processField(dataOriginal.get(f.name()), updatedPath));
-                  }
-                } else {
-                  LOGGER.trace("processing field of type {}", f.schema().type());
-                  dataNew.put(
-                      schemaNew.field(f.name()),
-                      processField(dataOriginal.get(f.name()), updatedPath));
-                }
-              } else {
-                LOGGER.trace("copying non-matched field '{}'", updatedPath);
-                dataNew.put(schemaNew.field(f.name()), dataOriginal.get(f.name()));
-              }
-            });
-    return dataNew;
+    StructPlan plan = compile(schemaOriginal, schemaNew, fieldPlans.node(matchedPath));
+    FieldBatch batch = new FieldBatch();
+    transform((Struct) objectOriginal, (Struct) objectNew, plan, batch);
+    processFields(batch);
+    return objectNew;
+  }
+
+  /**
+   * Compiles the plan for transforming structs of the given original schema into structs of the
+   * given new schema, as derived from it by {@link SchemaRewriter}.
+   */
+  public StructPlan compile(Schema schemaOriginal, Schema schemaNew) {
+    return compile(schemaOriginal, schemaNew, fieldPlans.root());
+  }
+
+  /** Transforms the given struct according to the given plan compiled for its schema. */
+  public Struct transform(Struct original, StructPlan plan) {
+    Struct transformed = new Struct(plan.schemaNew);
+    FieldBatch batch = new FieldBatch();
+    transform(original, transformed, plan, batch);
+    processFields(batch);
+    return transformed;
+  }
+
+  private StructPlan compile(Schema schemaOriginal, Schema schemaNew, FieldPlans.Node node) {
+    List<Field> copiedOriginal = new ArrayList<>();
+    List<Field> copiedNew = new ArrayList<>();
+    List<Step> steps = new ArrayList<>();
+    for (Field f : schemaOriginal.fields()) {
+      Field fieldNew = schemaNew.field(f.name());
+      FieldPlan plan = node != null ? node.plan(f.name()) : null;
+      if (plan == null) {
+        LOGGER.trace("copying non-matched field '{}'", f.name());
+        copiedOriginal.add(f);
+        copiedNew.add(fieldNew);
+        continue;
+      }
+      LOGGER.trace("matched field '{}'", plan.getPath());
+      Type type = f.schema().type();
+      if (FieldMode.ELEMENT == plan.getFieldMode()
+          && (type == Type.ARRAY || type == Type.MAP || type == Type.STRUCT)) {
+        LOGGER.trace("processing {} field element-wise", type);
+        FieldPlans.Node child = fieldPlans.child(node, f.name());
+        StructPlan nested =
+            type == Type.STRUCT ? compile(f.schema(), fieldNew.schema(), child) : null;
+        steps.add(new Step(f, fieldNew, plan, type, child, nested));
+      } else {
+        LOGGER.trace("collecting field of type {}", type);
+        steps.add(new Step(f, fieldNew, plan, null, null, null));
+      }
+    }
+    return new StructPlan(
+        schemaNew,
+        copiedOriginal.toArray(new Field[0]),
+        copiedNew.toArray(new Field[0]),
+        steps.toArray(new Step[0]));
+  }
+
+  private void transform(Struct dataOriginal, Struct dataNew, StructPlan plan, FieldBatch batch) {
+    for (int i = 0; i < plan.copiedOriginal.length; i++) {
+      dataNew.put(plan.copiedNew[i], dataOriginal.get(plan.copiedOriginal[i]));
+    }
+    for (Step step : plan.steps) {
+      Object value = dataOriginal.get(step.fieldOriginal);
+      if (step.elementType == Type.ARRAY) {
+        dataNew.put(
+            step.fieldNew, processListField((List<?>) value, step.node, step.plan.getPath()));
+      } else if (step.elementType == Type.MAP) {
+        dataNew.put(
+            step.fieldNew, processMapField((Map<?, ?>) value, step.node, step.plan.getPath()));
+      } else if (step.elementType == Type.STRUCT) {
+        if (value != null) {
+          Struct nestedNew = new Struct(step.fieldNew.schema());
+          transform((Struct) value, nestedNew, step.nested, batch);
+          // the nested struct only validates once its collected fields are set
+          batch.then(() -> dataNew.put(step.fieldNew, nestedNew));
+        } else {
+          LOGGER.trace(
+              "value of {} field was null -> skip element-wise sub-field matching", Type.STRUCT);
+        }
+      } else {
+        batch.add(value, step.plan, processed -> dataNew.put(step.fieldNew, processed));
+      }
+    }
+  }
+
+  /**
+   * Plan for transforming structs of one schema: the fields copied as they are and the steps
+   * processing the matched fields, all resolved to field indexes. Plans are immutable and can be
+   * cached per schema and shared by all threads.
+   */
+  public static final class StructPlan {
+
+    private final Schema schemaNew;
+    private final Field[] copiedOriginal;
+    private final Field[] copiedNew;
+    private final Step[] steps;
+
+    private StructPlan(Schema schemaNew, Field[] copiedOriginal, Field[] copiedNew, Step[] steps) {
+      this.schemaNew = schemaNew;
+      this.copiedOriginal = copiedOriginal;
+      this.copiedNew = copiedNew;
+      this.steps = steps;
+    }
+
+    public Schema getSchemaNew() {
+      return schemaNew;
+    }
+  }
+
+  /**
+   * Processing of one matched field, element-wise for the given container type or as a whole if it
+   * is null.
+   */
+  private static final class Step {
+
+    private final Field fieldOriginal;
+    private final Field fieldNew;
+    private final FieldPlan plan;
+    private final Type elementType;
+    private final FieldPlans.Node node;
+    private final StructPlan nested;
+
+    private Step(
+        Field fieldOriginal,
+        Field fieldNew,
+        FieldPlan plan,
+        Type elementType,
+        FieldPlans.Node node,
+        StructPlan nested) {
+      this.fieldOriginal = fieldOriginal;
+      this.fieldNew = fieldNew;
+      this.plan = plan;
+      this.elementType = elementType;
+      this.node = node;
+      this.nested = nested;
+    }
   }
 }
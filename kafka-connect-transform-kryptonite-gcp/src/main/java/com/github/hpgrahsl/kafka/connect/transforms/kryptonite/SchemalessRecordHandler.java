@@ -20,9 +20,14 @@ import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField.Field
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.SerdeProcessor;
 import com.github.hpgrahsl.kryptonite.CipherMode;
 import com.github.hpgrahsl.kryptonite.Kryptonite;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.PluginMetrics;
 import org.apache.kafka.connect.data.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,15 +36,32 @@ public class SchemalessRecordHandler extends RecordHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SchemalessRecordHandler.class);
 
+  private final boolean lazyDecryption;
+  private final LongAdder deferredCount = new LongAdder();
+  private final LongAdder decryptedCount = new LongAdder();
+
   public SchemalessRecordHandler(
       AbstractConfig config,
       SerdeProcessor serdeProcessor,
       Kryptonite kryptonite,
       CipherMode cipherMode,
-      Map<String, FieldConfig> fieldConfig) {
-    super(config, serdeProcessor, kryptonite, cipherMode, fieldConfig);
+      FieldPlans fieldPlans,
+      ForkJoinPool forkJoinPool) {
+    super(config, serdeProcessor, kryptonite, cipherMode, fieldPlans, forkJoinPool);
+    this.lazyDecryption =
+        CipherMode.DECRYPT == cipherMode && config.getBoolean(CipherField.CIPHER_LAZY_DECRYPTION);
   }
 
+  /**
+   * Processes the matched fields of a map. Unmatched fields are left alone in {@code objectNew},
+   * which therefore has to start out as a copy of {@code objectOriginal}, an {@link OverlayMap} of
+   * it or, for in-place processing, {@code objectOriginal} itself. Maps with more fields than there
+   * are configured paths below {@code matchedPath} are searched for those paths instead of looking
+   * up every field of the map.
+   *
+   * <p>With lazy decryption the matched fields aren't decrypted here, but a {@link
+   * LazyDecryptingMap} view of {@code objectNew} is returned which decrypts them once read.
+   */
   @SuppressWarnings("unchecked")
   @Override
   public Object matchFields(
@@ -50,32 +72,109 @@ public class SchemalessRecordHandler extends RecordHandler {
       String matchedPath) {
     Map<String, Object> dataOriginal = (Map<String, Object>) objectOriginal;
     Map<String, Object> dataNew = (Map<String, Object>) objectNew;
-    dataOriginal.forEach(
-        (f, v) -> {
-          String updatedPath = matchedPath.isEmpty() ? f : matchedPath + pathDelimiter + f;
-          if (fieldConfig.containsKey(updatedPath)) {
-            LOGGER.trace("matched field '{}'", updatedPath);
-            if (FieldMode.ELEMENT
-                == FieldMode.valueOf(getConfig().getString(CipherField.FIELD_MODE))) {
-              if (v instanceof List) {
-                LOGGER.trace("processing {} field element-wise", List.class.getSimpleName());
-                dataNew.put(f, processListField((List<?>) dataOriginal.get(f), updatedPath));
-              } else if (v instanceof Map) {
-                LOGGER.trace("processing {} field element-wise", Map.class.getSimpleName());
-                dataNew.put(f, processMapField((Map<?, ?>) dataOriginal.get(f), updatedPath));
-              } else {
-                LOGGER.trace("processing primitive field");
-                dataNew.put(f, processField(dataOriginal.get(f), updatedPath));
-              }
-            } else {
-              LOGGER.trace("processing field");
-              dataNew.put(f, processField(dataOriginal.get(f), updatedPath));
-            }
-          } else {
-            LOGGER.trace("copying non-matched field '{}'", updatedPath);
-            dataNew.put(f, dataOriginal.get(f));
-          }
-        });
-    return dataNew;
+    FieldPlans.Node node = fieldPlans.node(matchedPath);
+    if (node == null) {
+      return dataNew;
+    }
+    FieldBatch batch = new FieldBatch();
+    LazyDecryptingMap lazyMap = lazyDecryption ? new LazyDecryptingMap(dataNew) : null;
+    if (node.planCount() < dataOriginal.size()) {
+      for (Map.Entry<String, FieldPlan> configured : node.plans()) {
+        String f = configured.getKey();
+        if (dataOriginal.containsKey(f)) {
+          matchField(dataOriginal, dataNew, f, configured.getValue(), node, batch, lazyMap);
+        }
+      }
+    } else {
+      for (String f : dataOriginal.keySet()) {
+        FieldPlan plan = node.plan(f);
+        if (plan != null) {
+          matchField(dataOriginal, dataNew, f, plan, node, batch, lazyMap);
+        }
+      }
+    }
+    processFields(batch);
+    return lazyMap != null ? lazyMap : dataNew;
+  }
+
+  /**
+   * Registers the numbers of fields whose decryption was deferred and of those of them which were
+   * decrypted eventually. Their difference is the number of fields which weren't decrypted at all,
+   * respectively aren't yet for records still in flight.
+   */
+  public void registerMetrics(PluginMetrics metrics) {
+    if (!lazyDecryption) {
+      return;
+    }
+    LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+    metrics.addMetric(
+        metrics.metricName(
+            "lazy-decryption-deferred-count",
+            "number of fields whose decryption was deferred",
+            tags),
+        (Gauge<Long>) (config, now) -> deferredCount.sum());
+    metrics.addMetric(
+        metrics.metricName(
+            "lazy-decryption-decrypted-count",
+            "number of deferred fields which were decrypted once they were read",
+            tags),
+        (Gauge<Long>) (config, now) -> decryptedCount.sum());
+    metrics.addMetric(
+        metrics.metricName(
+            "lazy-decryption-skipped-count",
+            "number of deferred fields which were not decrypted because they were not read",
+            tags),
+        (Gauge<Long>) (config, now) -> deferredCount.sum() - decryptedCount.sum());
+  }
+
+  private void matchField(
+      Map<String, Object> dataOriginal,
+      Map<String, Object> dataNew,
+      String f,
+      FieldPlan plan,
+      FieldPlans.Node node,
+      FieldBatch batch,
+      LazyDecryptingMap lazyMap) {
+    LOGGER.trace("matched field '{}'", plan.getPath());
+    Object v = dataOriginal.get(f);
+    if (lazyMap != null) {
+      LOGGER.trace("deferring decryption of field");
+      deferredCount.increment();
+      lazyMap.defer(
+          f,
+          () -> {
+            Object processed = processLazily(v, f, plan, node);
+            decryptedCount.increment();
+            return processed;
+          });
+      return;
+    }
+    if (FieldMode.ELEMENT == plan.getFieldMode()) {
+      if (v instanceof List) {
+        LOGGER.trace("processing {} field element-wise", List.class.getSimpleName());
+        dataNew.put(f, processListField((List<?>) v, fieldPlans.child(node, f), plan.getPath()));
+      } else if (v instanceof Map) {
+        LOGGER.trace("processing {} field element-wise", Map.class.getSimpleName());
+        dataNew.put(f, processMapField((Map<?, ?>) v, fieldPlans.child(node, f), plan.getPath()));
+      } else {
+        LOGGER.trace("collecting primitive field");
+        batch.add(v, plan, processed -> dataNew.put(f, processed));
+      }
+    } else {
+      LOGGER.trace("collecting field");
+      batch.add(v, plan, processed -> dataNew.put(f, processed));
+    }
+  }
+
+  private Object processLazily(Object v, String f, FieldPlan plan, FieldPlans.Node node) {
+    if (FieldMode.ELEMENT == plan.getFieldMode()) {
+      if (v instanceof List) {
+        return processListField((List<?>) v, fieldPlans.child(node, f), plan.getPath());
+      }
+      if (v instanceof Map) {
+        return processMapField((Map<?, ?>) v, fieldPlans.child(node, f), plan.getPath());
+      }
+    }
+    return processField(v, plan, plan.getPath());
   }
 }
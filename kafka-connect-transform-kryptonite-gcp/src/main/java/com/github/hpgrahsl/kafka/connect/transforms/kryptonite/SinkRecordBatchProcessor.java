@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a configured {@link CipherField} to a whole batch of sink records, e.g. the records
+ * handed to {@code SinkTask.put()}, by fanning them out across a bounded number of concurrent
+ * tasks. Sink connectors can use it to decrypt large batches on multiple cores instead of having
+ * Kafka Connect apply the SMT one record at a time on the task thread.
+ *
+ * <p>The tasks run on a fixed pool of {@code parallelism} platform threads created once per
+ * processor, so that the per-thread ciphers, nonce generators and encoding buffers survive from one
+ * batch to the next, and the transformed records are returned in their original order. The
+ * processor does not own the given {@link CipherField}, closing it only releases its threads.
+ */
+public class SinkRecordBatchProcessor implements AutoCloseable {
+
+  public static final int MIN_RECORDS_PER_TASK_DEFAULT = 16;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SinkRecordBatchProcessor.class);
+
+  private final CipherField<SinkRecord> cipherField;
+  private final int parallelism;
+  private final int minRecordsPerTask;
+  private final ExecutorService executor;
+
+  public SinkRecordBatchProcessor(CipherField<SinkRecord> cipherField) {
+    this(cipherField, Runtime.getRuntime().availableProcessors());
+  }
+
+  public SinkRecordBatchProcessor(CipherField<SinkRecord> cipherField, int parallelism) {
+    this(cipherField, parallelism, MIN_RECORDS_PER_TASK_DEFAULT);
+  }
+
+  public SinkRecordBatchProcessor(
+      CipherField<SinkRecord> cipherField, int parallelism, int minRecordsPerTask) {
+    if (parallelism < 1 || minRecordsPerTask < 1) {
+      throw new IllegalArgumentException(
+          "parallelism and minRecordsPerTask must be >= 1 but were "
+              + parallelism
+              + " and "
+              + minRecordsPerTask);
+    }
+    this.cipherField = cipherField;
+    this.parallelism = parallelism;
+    this.minRecordsPerTask = minRecordsPerTask;
+    this.executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory());
+    LOGGER.debug("processing sink record batches on a pool of {} threads", parallelism);
+  }
+
+  /** Returns the transformed records in the order of the given ones. */
+  public List<SinkRecord> apply(Collection<SinkRecord> records) {
+    SinkRecord[] batch = records.toArray(new SinkRecord[0]);
+    int tasks = Math.min(parallelism, batch.length / minRecordsPerTask);
+    if (tasks <= 1) {
+      processRange(batch, 0, batch.length);
+      return Arrays.asList(batch);
+    }
+    List<Future<?>> futures = new ArrayList<>(tasks);
+    for (int t = 0; t < tasks; t++) {
+      int from = (int) ((long) batch.length * t / tasks);
+      int to = (int) ((long) batch.length * (t + 1) / tasks);
+      futures.add(executor.submit(() -> processRange(batch, from, to)));
+    }
+    awaitAll(futures);
+    return Arrays.asList(batch);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  private void processRange(SinkRecord[] batch, int from, int to) {
+    for (int i = from; i < to; i++) {
+      batch[i] = cipherField.apply(batch[i]);
+    }
+  }
+
+  private static void awaitAll(List<Future<?>> futures) {
+    RuntimeException failure = null;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException
+                  ? (RuntimeException) e.getCause()
+                  : new ConnectException(e.getCause());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        futures.forEach(f -> f.cancel(true));
+        throw new ConnectException("interrupted while processing sink record batch", e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "kryptonite-batch-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
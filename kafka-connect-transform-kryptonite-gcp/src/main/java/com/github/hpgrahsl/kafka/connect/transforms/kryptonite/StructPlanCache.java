@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.SchemaawareRecordHandler.StructPlan;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.PluginMetrics;
+import org.apache.kafka.connect.data.Schema;
+
+/**
+ * Bounded concurrent cache of the {@link StructPlan}s compiled per record schema. Looking up a
+ * schema in a map means hashing and comparing it deeply, which for wide or nested schemas costs
+ * more than the lookup is worth. Consecutive records of a topic usually share the very same schema
+ * instance though, so the most recently used schema is compared by identity first and only other
+ * schemas go to the map.
+ */
+public class StructPlanCache {
+
+  private final Cache<Schema, StructPlan> cache;
+  private final LongAdder identityHits = new LongAdder();
+  private volatile Entry last;
+
+  public StructPlanCache(long maxSize) {
+    this(maxSize, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Uses the given executor for the cache's maintenance, e.g. evictions, which tests run inline.
+   */
+  StructPlanCache(long maxSize, Executor executor) {
+    this.cache =
+        Caffeine.newBuilder().maximumSize(maxSize).executor(executor).recordStats().build();
+  }
+
+  /**
+   * Returns the plan of the given schema, compiling and caching it with the given function if it
+   * isn't cached yet.
+   */
+  public StructPlan get(Schema schema, Function<Schema, StructPlan> compiler) {
+    Entry entry = last;
+    if (entry != null && entry.schema == schema) {
+      identityHits.increment();
+      return entry.plan;
+    }
+    StructPlan plan = cache.get(schema, compiler);
+    last = new Entry(schema, plan);
+    return plan;
+  }
+
+  public long hitCount() {
+    return identityHits.sum() + cache.stats().hitCount();
+  }
+
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  public double hitRate() {
+    long hits = hitCount();
+    long lookups = hits + missCount();
+    return lookups == 0 ? 1.0 : (double) hits / lookups;
+  }
+
+  public long evictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  public long estimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  public void invalidateAll() {
+    last = null;
+    cache.invalidateAll();
+  }
+
+  public void registerMetrics(PluginMetrics metrics) {
+    LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-cache-hit-rate", "ratio of schema lookups served from the cache", tags),
+        (Gauge<Double>) (config, now) -> hitRate());
+    metrics.addMetric(
+        metrics.metricName("schema-cache-hit-count", "number of schema cache hits", tags),
+        (Gauge<Long>) (config, now) -> hitCount());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-cache-miss-count",
+            "number of schema cache misses, each of which compiled a plan",
+            tags),
+        (Gauge<Long>) (config, now) -> missCount());
+    metrics.addMetric(
+        metrics.metricName(
+            "schema-cache-eviction-count", "number of schemas evicted from the cache", tags),
+        (Gauge<Long>) (config, now) -> evictionCount());
+    metrics.addMetric(
+        metrics.metricName("schema-cache-size", "approximate number of cached schemas", tags),
+        (Gauge<Long>) (config, now) -> estimatedSize());
+  }
+
+  private static final class Entry {
+
+    private final Schema schema;
+    private final StructPlan plan;
+
+    private Entry(Schema schema, StructPlan plan) {
+      this.schema = schema;
+      this.plan = plan;
+    }
+  }
+}
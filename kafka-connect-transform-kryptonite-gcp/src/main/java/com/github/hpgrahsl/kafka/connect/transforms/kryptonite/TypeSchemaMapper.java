@@ -16,6 +16,7 @@
 
 package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
 
+import com.github.hpgrahsl.kryptonite.CipherEncoding;
 import com.github.hpgrahsl.kryptonite.CipherMode;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -44,6 +45,22 @@ public interface TypeSchemaMapper {
         }
       };
 
+  @SuppressWarnings("serial")
+  Map<Type, Supplier<SchemaBuilder>> DEFAULT_MAPPINGS_ENCRYPT_RAW =
+      new LinkedHashMap<Type, Supplier<SchemaBuilder>>() {
+        {
+          put(Type.BOOLEAN, SchemaBuilder::bytes);
+          put(Type.INT8, SchemaBuilder::bytes);
+          put(Type.INT16, SchemaBuilder::bytes);
+          put(Type.INT32, SchemaBuilder::bytes);
+          put(Type.INT64, SchemaBuilder::bytes);
+          put(Type.FLOAT32, SchemaBuilder::bytes);
+          put(Type.FLOAT64, SchemaBuilder::bytes);
+          put(Type.STRING, SchemaBuilder::bytes);
+          put(Type.BYTES, SchemaBuilder::bytes);
+        }
+      };
+
   @SuppressWarnings("serial")
   Map<Type, Supplier<SchemaBuilder>> DEFAULT_MAPPINGS_DECRYPT =
       new LinkedHashMap<Type, Supplier<SchemaBuilder>>() {
@@ -78,4 +95,24 @@ public interface TypeSchemaMapper {
             .get();
     return isOptional ? builder.optional().build() : builder.build();
   }
+
+  default Schema getSchemaForPrimitiveType(
+      Type type, boolean isOptional, CipherMode cipherMode, CipherEncoding cipherEncoding) {
+    if (CipherMode.ENCRYPT != cipherMode || CipherEncoding.RAW != cipherEncoding) {
+      return getSchemaForPrimitiveType(type, isOptional, cipherMode);
+    }
+    SchemaBuilder builder =
+        Optional.ofNullable(DEFAULT_MAPPINGS_ENCRYPT_RAW.get(type))
+            .orElseThrow(
+                () ->
+                    new NoSuchElementException(
+                        "no default type mapping found for type "
+                            + type
+                            + " (optional "
+                            + isOptional
+                            + ") and cipher encoding "
+                            + cipherEncoding))
+            .get();
+    return isOptional ? builder.optional().build() : builder.build();
+  }
 }
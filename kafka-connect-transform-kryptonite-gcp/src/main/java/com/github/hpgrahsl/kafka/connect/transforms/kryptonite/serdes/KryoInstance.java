@@ -20,25 +20,76 @@ import com.esotericsoftware.kryo.Kryo;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.KryoSerdeProcessor.SchemaSerializer;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.KryoSerdeProcessor.StructSerializer;
 import com.github.hpgrahsl.kryptonite.FieldMetaData;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Struct;
 
+/**
+ * Creates the {@link Kryo} instances used by {@link KryoSerdeProcessor}, either with the implicit
+ * registrations of the original format, under which all classes but the few registered ones are
+ * written by their fully qualified name, or with a versioned table of fixed registration ids. All
+ * instances of a format register the same classes with the same ids.
+ *
+ * <p>Values serialized with a registration table are prefixed with the tag of the table's version,
+ * which tells them apart from values in the original format: those start with the varint encoded
+ * registration id of the value's class plus 2, which stays below 0x80 for the ids below 126 used
+ * here, or with 0 for null and 1 for a class name. Tags are counted down from 0xFD since 0xFF and
+ * 0xFE are taken by {@link RawBytes}. Table versions must never change once released, new classes
+ * go into a new version with a tag of its own.
+ */
 public class KryoInstance {
 
-  private static final Kryo KRYO = new Kryo();
+  /** Payload tag of values serialized with version 1 of the registration table. */
+  public static final byte REGISTRATION_TABLE_V1_TAG = (byte) 0xFD;
+
+  private KryoInstance() {}
 
-  static {
-    KRYO.setRegistrationRequired(false);
-    // TODO: register all commonly found types for more efficient serialization
-    // ...
-    KRYO.register(FieldMetaData.class);
+  /**
+   * Creates a Kryo instance for the original format, which implicitly registers classes. Structs
+   * are written with the fingerprints of their schemas from the given dictionary if enabled.
+   */
+  public static Kryo newKryo(
+      boolean registrationRequired, SchemaDictionary schemaDictionary, boolean schemaFingerprints) {
+    Kryo kryo = new Kryo();
+    kryo.setRegistrationRequired(registrationRequired);
+    kryo.register(FieldMetaData.class);
 
     // NOTE: needed in order to be able to serialize structs with their schemas
-    KRYO.register(Struct.class).setSerializer(new StructSerializer());
-    KRYO.register(Schema.class).setSerializer(new SchemaSerializer());
+    kryo.register(Struct.class)
+        .setSerializer(new StructSerializer(schemaDictionary, schemaFingerprints));
+    kryo.register(Schema.class).setSerializer(new SchemaSerializer());
+    return kryo;
   }
 
-  public static Kryo get() {
-    return KRYO;
+  /**
+   * Creates a Kryo instance registering version 1 of the registration table: the Java types of all
+   * Connect primitive and logical types, the collections Connect values are made of and structs.
+   * Kryo itself registers the primitive types and their wrappers as well as {@code String} with ids
+   * 0 to 9.
+   */
+  public static Kryo newRegistrationTableV1Kryo(
+      boolean registrationRequired, SchemaDictionary schemaDictionary, boolean schemaFingerprints) {
+    Kryo kryo = new Kryo();
+    kryo.setRegistrationRequired(registrationRequired);
+    kryo.register(byte[].class, 10);
+    // Decimal
+    kryo.register(BigDecimal.class, 11);
+    // Date, Time and Timestamp
+    kryo.register(Date.class, 12);
+    kryo.register(ArrayList.class, 13);
+    kryo.register(HashMap.class, 14);
+    kryo.register(LinkedHashMap.class, 15);
+    kryo.register(Collections.emptyList().getClass(), 16);
+    kryo.register(Collections.emptyMap().getClass(), 17);
+    kryo.register(Struct.class, new StructSerializer(schemaDictionary, schemaFingerprints), 18);
+    kryo.register(Schema.class, new SchemaSerializer(), 19);
+    kryo.register(Schema.Type.class, 20);
+    kryo.register(FieldMetaData.class, 21);
+    return kryo;
   }
 }
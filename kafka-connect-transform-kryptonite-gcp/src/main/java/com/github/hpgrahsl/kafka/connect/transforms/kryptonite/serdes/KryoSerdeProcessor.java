@@ -20,25 +20,88 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.kafka.connect.data.ConnectSchema;
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Schema.Type;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Serializes field values with Kryo. Since Kryo instances are not thread-safe, every call borrows a
+ * Kryo instance together with an {@link Output} and an {@link Input} from a pool shared by all
+ * threads using the processor. Pooling rather than keeping them per thread means that short-lived
+ * threads, such as the virtual threads of {@link
+ * com.github.hpgrahsl.kafka.connect.transforms.kryptonite.SinkRecordBatchProcessor}, reuse the
+ * instances of their predecessors instead of creating their own.
+ *
+ * <p>Values are written either in the original format or, if enabled, with the fixed ids of the
+ * current {@link KryoInstance registration table}, whose payloads start with the table's tag.
+ * Reading detects the format of every value, so that switching formats keeps previously written
+ * ciphertexts readable. Plaintexts written by {@link TaggedSerdeProcessor} are detected as well. If
+ * registration is required, reading or writing classes which aren't registered fails rather than
+ * instantiating whatever class a payload names.
+ */
 public class KryoSerdeProcessor implements SerdeProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(KryoSerdeProcessor.class);
+  private static final int POOL_CAPACITY = 4 * Runtime.getRuntime().availableProcessors();
+  // output buffers which grew beyond this size for large values are not kept for reuse
+  private static final int RETAINED_BUFFER_SIZE_MAX = 64 * 1024;
+  private static final byte[] EMPTY = new byte[0];
+
   private final int outputBufSize;
   private final int outputBufMaxSize;
+  private final boolean registrationTable;
+  private final boolean registrationRequired;
+  private final SchemaDictionary schemaDictionary;
+  private final boolean schemaFingerprints;
+  private final Pool<KryoContext> contexts;
 
   public KryoSerdeProcessor(int outputBufSize, int outputBufMaxSize) {
+    this(outputBufSize, outputBufMaxSize, false, false);
+  }
+
+  public KryoSerdeProcessor(
+      int outputBufSize,
+      int outputBufMaxSize,
+      boolean registrationTable,
+      boolean registrationRequired) {
+    this(
+        outputBufSize,
+        outputBufMaxSize,
+        registrationTable,
+        registrationRequired,
+        new SchemaDictionary(SchemaDictionary.MAX_SIZE_DEFAULT),
+        false);
+  }
+
+  public KryoSerdeProcessor(
+      int outputBufSize,
+      int outputBufMaxSize,
+      boolean registrationTable,
+      boolean registrationRequired,
+      SchemaDictionary schemaDictionary,
+      boolean schemaFingerprints) {
     this.outputBufSize = outputBufSize;
     this.outputBufMaxSize = outputBufMaxSize;
+    this.registrationTable = registrationTable;
+    this.registrationRequired = registrationRequired;
+    this.schemaDictionary = schemaDictionary;
+    this.schemaFingerprints = schemaFingerprints;
+    this.contexts =
+        new Pool<KryoContext>(true, false, POOL_CAPACITY) {
+          @Override
+          protected KryoContext create() {
+            return new KryoContext();
+          }
+        };
   }
 
   public byte[] objectToBytes(Object object, Class<?> clazz) {
@@ -46,9 +109,19 @@ public class KryoSerdeProcessor implements SerdeProcessor {
   }
 
   public byte[] objectToBytes(Object object) {
-    Output output = new Output(outputBufSize, outputBufMaxSize);
-    KryoInstance.get().writeClassAndObject(output, object);
-    return output.toBytes();
+    KryoContext context = contexts.obtain();
+    try {
+      if (registrationTable) {
+        context.output.writeByte(KryoInstance.REGISTRATION_TABLE_V1_TAG);
+        context.tableKryo().writeClassAndObject(context.output, object);
+      } else {
+        context.legacyKryo().writeClassAndObject(context.output, object);
+      }
+      return context.output.toBytes();
+    } finally {
+      context.resetOutput();
+      contexts.free(context);
+    }
   }
 
   public Object bytesToObject(byte[] bytes, Class<?> clazz) {
@@ -56,28 +129,116 @@ public class KryoSerdeProcessor implements SerdeProcessor {
   }
 
   public Object bytesToObject(byte[] bytes) {
-    Input input = new Input(bytes);
-    return KryoInstance.get().readClassAndObject(input);
+    if (RawBytes.isFramed(bytes)) {
+      return RawBytes.unframe(bytes);
+    }
+    if (TaggedValues.isTagged(bytes)) {
+      return TaggedValues.decode(bytes);
+    }
+    KryoContext context = contexts.obtain();
+    try {
+      if (bytes.length > 0 && bytes[0] == KryoInstance.REGISTRATION_TABLE_V1_TAG) {
+        context.input.setBuffer(bytes, 1, bytes.length - 1);
+        return context.tableKryo().readClassAndObject(context.input);
+      }
+      context.input.setBuffer(bytes);
+      return context.legacyKryo().readClassAndObject(context.input);
+    } finally {
+      context.input.setBuffer(EMPTY);
+      contexts.free(context);
+    }
   }
 
+  /**
+   * The Kryo instances of both formats and the reusable buffers they read from and write to. The
+   * instance of a format is only created once a value of that format is seen.
+   */
+  private final class KryoContext {
+
+    private final Output output = new Output(outputBufSize, outputBufMaxSize);
+    private final Input input = new Input(EMPTY);
+    private Kryo legacyKryo;
+    private Kryo tableKryo;
+
+    private Kryo legacyKryo() {
+      if (legacyKryo == null) {
+        legacyKryo =
+            KryoInstance.newKryo(registrationRequired, schemaDictionary, schemaFingerprints);
+      }
+      return legacyKryo;
+    }
+
+    private Kryo tableKryo() {
+      if (tableKryo == null) {
+        tableKryo =
+            KryoInstance.newRegistrationTableV1Kryo(
+                registrationRequired, schemaDictionary, schemaFingerprints);
+      }
+      return tableKryo;
+    }
+
+    /**
+     * Zeroes the serialized plaintext held by the output buffer, or drops the buffer if it grew too
+     * large to be kept, and rewinds the output for the next call.
+     */
+    private void resetOutput() {
+      byte[] buffer = output.getBuffer();
+      if (buffer.length > Math.max(RETAINED_BUFFER_SIZE_MAX, outputBufSize)) {
+        output.setBuffer(new byte[outputBufSize], outputBufMaxSize);
+      } else {
+        Arrays.fill(buffer, 0, Math.min(output.position(), buffer.length), (byte) 0);
+      }
+      output.reset();
+    }
+  }
+
+  /**
+   * Writes a struct's schema followed by its field values. With schema fingerprints enabled only a
+   * marker and the schema's fingerprint are written instead of the schema, to be resolved from the
+   * {@link SchemaDictionary} when reading. The marker is the byte Kryo writes for null, which a
+   * schema's type never is, so full schemas written by previous versions are still read.
+   */
   public static class StructSerializer extends Serializer<Struct> {
 
+    static final byte SCHEMA_FINGERPRINT_MARKER = Kryo.NULL;
+
     private final SchemaSerializer schemaSerializer = new SchemaSerializer();
+    private final SchemaDictionary schemaDictionary;
+    private final boolean schemaFingerprints;
+
+    public StructSerializer() {
+      this(null, false);
+    }
+
+    public StructSerializer(SchemaDictionary schemaDictionary, boolean schemaFingerprints) {
+      this.schemaDictionary = schemaDictionary;
+      this.schemaFingerprints = schemaFingerprints && schemaDictionary != null;
+    }
 
     public void write(Kryo kryo, Output output, Struct struct) {
-      LOGGER.info("writing struct's schema");
-      kryo.writeObject(output, struct.schema(), schemaSerializer);
+      if (schemaFingerprints) {
+        LOGGER.trace("writing struct's schema fingerprint");
+        long fingerprint = schemaDictionary.fingerprint(struct.schema());
+        if (schemaDictionary.resolve(fingerprint) == null) {
+          schemaDictionary.intern(struct.schema());
+        }
+        output.writeByte(SCHEMA_FINGERPRINT_MARKER);
+        output.writeLong(fingerprint);
+      } else {
+        LOGGER.trace("writing struct's schema");
+        kryo.writeObject(output, struct.schema(), schemaSerializer);
+      }
       writeStructFieldObjects(kryo, output, struct);
     }
 
     private void writeStructFieldObjects(Kryo kryo, Output output, Struct struct) {
-      LOGGER.info("writing struct objects one by one...");
+      LOGGER.trace("writing struct objects one by one...");
       struct
           .schema()
           .fields()
           .forEach(
               f -> {
-                LOGGER.info("write full field '{}' of type {}", f.name(), f.schema().type());
+                LOGGER.trace("write full field '{}' of type {}", f.name(), f.schema().type());
                 if (f.schema().type() != Type.STRUCT) {
                   kryo.writeClassAndObject(output, struct.get(f));
                 } else {
@@ -87,19 +248,36 @@ public class KryoSerdeProcessor implements SerdeProcessor {
     }
 
     public Struct read(Kryo kryo, Input input, Class<? extends Struct> type) {
-      LOGGER.info("reading struct's schema");
+      return readStructFieldObjects(kryo, input, new Struct(readSchema(kryo, input)));
+    }
+
+    private Schema readSchema(Kryo kryo, Input input) {
+      if (input.readByte() == SCHEMA_FINGERPRINT_MARKER) {
+        long fingerprint = input.readLong();
+        LOGGER.trace("resolving struct's schema by fingerprint {}", Long.toHexString(fingerprint));
+        Schema schema = schemaDictionary != null ? schemaDictionary.resolve(fingerprint) : null;
+        if (schema == null) {
+          throw new DataException(
+              "error: unknown schema fingerprint "
+                  + Long.toHexString(fingerprint)
+                  + " of struct value, its schema must be given in the field config");
+        }
+        return schema;
+      }
+      input.setPosition(input.position() - 1);
+      LOGGER.trace("reading struct's schema");
       Schema schema = kryo.readObject(input, Schema.class, schemaSerializer);
-      return readStructFieldObjects(kryo, input, new Struct(schema));
+      return schemaDictionary != null ? schemaDictionary.intern(schema) : schema;
     }
 
     private Struct readStructFieldObjects(Kryo kryo, Input input, Struct struct) {
-      LOGGER.info("reading struct objects one by one...");
+      LOGGER.trace("reading struct objects one by one...");
       struct
           .schema()
           .fields()
           .forEach(
               f -> {
-                LOGGER.info("read full field '{}' of type {}", f.name(), f.schema().type());
+                LOGGER.trace("read full field '{}' of type {}", f.name(), f.schema().type());
                 if (f.schema().type() != Type.STRUCT) {
                   struct.put(f, kryo.readClassAndObject(input));
                 } else {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Plaintext layout of BYTES field values which are encrypted as they are instead of being
+ * serialized with Kryo: one tag byte telling whether the value was a {@code byte[]} or a {@link
+ * ByteBuffer} followed by the bytes themselves. Kryo output starts with the varint encoded
+ * registration id of the value's class, whose high bit is never set for the few classes registered
+ * in {@link KryoInstance}, so neither tag is mistaken for the beginning of Kryo output.
+ */
+public final class RawBytes {
+
+  public static final byte BYTE_ARRAY_TAG = (byte) 0xFF;
+  public static final byte BYTE_BUFFER_TAG = (byte) 0xFE;
+
+  private static final ByteBuffer BYTE_ARRAY_TAG_BUFFER =
+      ByteBuffer.wrap(new byte[] {BYTE_ARRAY_TAG}).asReadOnlyBuffer();
+  private static final ByteBuffer BYTE_BUFFER_TAG_BUFFER =
+      ByteBuffer.wrap(new byte[] {BYTE_BUFFER_TAG}).asReadOnlyBuffer();
+
+  private RawBytes() {}
+
+  public static boolean isRawBytes(Object value) {
+    return value instanceof byte[] || value instanceof ByteBuffer;
+  }
+
+  /**
+   * Returns the tag and the given {@code byte[]} or {@link ByteBuffer} value as buffers to be
+   * encrypted in one go. The value's bytes are not copied and a buffer value's position is left
+   * untouched.
+   */
+  public static ByteBuffer[] frame(Object value) {
+    if (value instanceof byte[]) {
+      return new ByteBuffer[] {BYTE_ARRAY_TAG_BUFFER.duplicate(), ByteBuffer.wrap((byte[]) value)};
+    }
+    return new ByteBuffer[] {BYTE_BUFFER_TAG_BUFFER.duplicate(), ((ByteBuffer) value).duplicate()};
+  }
+
+  public static boolean isFramed(byte[] plainText) {
+    return plainText.length > 0
+        && (BYTE_ARRAY_TAG == plainText[0] || BYTE_BUFFER_TAG == plainText[0]);
+  }
+
+  /**
+   * Restores the value of a framed plaintext. The value's bytes are copied since the plaintext may
+   * be memoized and zeroed once it is evicted.
+   */
+  public static Object unframe(byte[] plainText) {
+    byte[] value = Arrays.copyOfRange(plainText, 1, plainText.length);
+    return BYTE_BUFFER_TAG == plainText[0] ? ByteBuffer.wrap(value) : value;
+  }
+}
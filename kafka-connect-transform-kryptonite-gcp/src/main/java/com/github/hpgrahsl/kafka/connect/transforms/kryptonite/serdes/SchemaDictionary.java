@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Schema.Type;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+
+/**
+ * Dictionary of struct schemas by their fingerprint, which lets {@link
+ * KryoSerdeProcessor.StructSerializer} write the 8 byte fingerprint of a struct's schema instead of
+ * the schema itself, and interns structurally identical schemas into one shared instance.
+ *
+ * <p>The fingerprint is the leading 8 bytes of the SHA-256 digest of a canonical encoding of
+ * everything {@link Schema} equality depends on, so equal schemas have equal fingerprints in every
+ * JVM. Schemas known from the configuration are registered for good, those seen while serializing
+ * or deserializing are kept up to a maximum number. Fingerprints are cached per schema instance, so
+ * that a schema is only hashed once.
+ */
+public class SchemaDictionary {
+
+  public static final long MAX_SIZE_DEFAULT = 256;
+
+  private final Map<Long, Schema> registered = new ConcurrentHashMap<>();
+  private final Cache<Long, Schema> seen;
+  private final Cache<Schema, Long> fingerprints;
+
+  public SchemaDictionary(long maxSize) {
+    this.seen = Caffeine.newBuilder().maximumSize(maxSize).build();
+    // weak keys are compared by identity rather than deeply by equals
+    this.fingerprints = Caffeine.newBuilder().weakKeys().maximumSize(maxSize).build();
+  }
+
+  /**
+   * Registers the given schema and all struct schemas nested in it, so that values written with
+   * their fingerprints by other instances can be resolved.
+   */
+  public void register(Schema schema) {
+    if (Type.STRUCT == schema.type()) {
+      registered.putIfAbsent(fingerprint(schema), schema);
+      schema.fields().forEach(f -> register(f.schema()));
+    } else if (Type.ARRAY == schema.type()) {
+      register(schema.valueSchema());
+    } else if (Type.MAP == schema.type()) {
+      register(schema.keySchema());
+      register(schema.valueSchema());
+    }
+  }
+
+  /**
+   * Returns the known schema equal to the given one, or keeps and returns the given schema if no
+   * equal one is known yet.
+   */
+  public Schema intern(Schema schema) {
+    long fingerprint = fingerprint(schema);
+    Schema known = resolve(fingerprint);
+    if (known == schema || schema.equals(known)) {
+      return known;
+    }
+    seen.put(fingerprint, schema);
+    return schema;
+  }
+
+  /** Returns the known schema with the given fingerprint or null if there is none. */
+  public Schema resolve(long fingerprint) {
+    Schema schema = registered.get(fingerprint);
+    return schema != null ? schema : seen.getIfPresent(fingerprint);
+  }
+
+  public long fingerprint(Schema schema) {
+    return fingerprints.get(schema, SchemaDictionary::computeFingerprint);
+  }
+
+  public static long computeFingerprint(Schema schema) {
+    StringBuilder canonical = new StringBuilder();
+    appendCanonical(canonical, schema);
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(digest).getLong();
+    } catch (NoSuchAlgorithmException exc) {
+      throw new IllegalStateException("SHA-256 is required to be supported by every JVM", exc);
+    }
+  }
+
+  private static void appendCanonical(StringBuilder canonical, Schema schema) {
+    if (schema == null) {
+      canonical.append('-');
+      return;
+    }
+    canonical.append('(').append(schema.type().name()).append(schema.isOptional() ? '?' : '!');
+    appendString(canonical, schema.name());
+    appendString(canonical, schema.version() != null ? schema.version().toString() : null);
+    appendString(canonical, schema.doc());
+    appendValue(canonical, schema.defaultValue());
+    if (schema.parameters() != null) {
+      new TreeMap<>(schema.parameters())
+          .forEach(
+              (key, value) -> {
+                appendString(canonical, key);
+                appendString(canonical, value);
+              });
+    }
+    if (Type.STRUCT == schema.type()) {
+      canonical.append('{');
+      for (Field field : schema.fields()) {
+        appendString(canonical, field.name());
+        canonical.append(field.index());
+        appendCanonical(canonical, field.schema());
+      }
+      canonical.append('}');
+    } else if (Type.ARRAY == schema.type() || Type.MAP == schema.type()) {
+      appendCanonical(canonical, schema.keySchema());
+      appendCanonical(canonical, schema.valueSchema());
+    }
+    canonical.append(')');
+  }
+
+  private static void appendString(StringBuilder canonical, String value) {
+    if (value == null) {
+      canonical.append('-');
+    } else {
+      canonical.append(value.length()).append(':').append(value);
+    }
+  }
+
+  /**
+   * Appends a canonical encoding of a default value which, unlike its {@code toString}, doesn't
+   * depend on the JVM's time zone or a map's iteration order: dates as epoch millis, bytes as
+   * base64, maps by their entries sorted by encoded key and structs by their fields in order.
+   */
+  private static void appendValue(StringBuilder canonical, Object value) {
+    if (value == null) {
+      canonical.append('-');
+    } else if (value instanceof Boolean) {
+      canonical.append((Boolean) value ? 'T' : 'F');
+    } else if (value instanceof Byte
+        || value instanceof Short
+        || value instanceof Integer
+        || value instanceof Long) {
+      canonical.append('i').append(((Number) value).longValue()).append(';');
+    } else if (value instanceof Float) {
+      canonical.append('f').append(Float.floatToIntBits((Float) value)).append(';');
+    } else if (value instanceof Double) {
+      canonical.append('d').append(Double.doubleToLongBits((Double) value)).append(';');
+    } else if (value instanceof BigDecimal) {
+      BigDecimal decimal = (BigDecimal) value;
+      canonical.append('n').append(decimal.unscaledValue()).append('e').append(decimal.scale());
+      canonical.append(';');
+    } else if (value instanceof Date) {
+      canonical.append('t').append(((Date) value).getTime()).append(';');
+    } else if (value instanceof String) {
+      canonical.append('s');
+      appendString(canonical, (String) value);
+    } else if (value instanceof byte[]) {
+      canonical.append('b');
+      appendString(canonical, Base64.getEncoder().encodeToString((byte[]) value));
+    } else if (value instanceof ByteBuffer) {
+      canonical.append('b');
+      appendString(
+          canonical, Base64.getEncoder().encodeToString(toBytes(((ByteBuffer) value).duplicate())));
+    } else if (value instanceof List) {
+      canonical.append('[');
+      for (Object element : (List<?>) value) {
+        appendValue(canonical, element);
+      }
+      canonical.append(']');
+    } else if (value instanceof Map) {
+      TreeMap<String, String> entries = new TreeMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        StringBuilder key = new StringBuilder();
+        appendValue(key, entry.getKey());
+        StringBuilder entryValue = new StringBuilder();
+        appendValue(entryValue, entry.getValue());
+        entries.put(key.toString(), entryValue.toString());
+      }
+      canonical.append('<');
+      entries.forEach((key, entryValue) -> canonical.append(key).append(entryValue));
+      canonical.append('>');
+    } else if (value instanceof Struct) {
+      Struct struct = (Struct) value;
+      canonical.append('{');
+      for (Field field : struct.schema().fields()) {
+        appendValue(canonical, struct.getWithoutDefault(field.name()));
+      }
+      canonical.append('}');
+    } else {
+      throw new DataException(
+          "unsupported default value of type " + value.getClass().getName() + " in schema");
+    }
+  }
+
+  private static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes;
+
+/**
+ * Serializes field values of Connect primitive and logical types in the compact {@link
+ * TaggedValues} layout without going through Kryo, and all other values, such as arrays, maps and
+ * structs, with the given fallback processor. Since {@link KryoSerdeProcessor} detects tagged
+ * plaintexts as well, values written by this processor decrypt regardless of the configured one.
+ */
+public class TaggedSerdeProcessor implements SerdeProcessor {
+
+  private final SerdeProcessor fallback;
+
+  public TaggedSerdeProcessor(SerdeProcessor fallback) {
+    this.fallback = fallback;
+  }
+
+  public byte[] objectToBytes(Object object, Class<?> clazz) {
+    return objectToBytes(object);
+  }
+
+  public byte[] objectToBytes(Object object) {
+    return TaggedValues.isTaggable(object)
+        ? TaggedValues.encode(object)
+        : fallback.objectToBytes(object);
+  }
+
+  public Object bytesToObject(byte[] bytes, Class<?> clazz) {
+    return bytesToObject(bytes);
+  }
+
+  public Object bytesToObject(byte[] bytes) {
+    return TaggedValues.isTagged(bytes)
+        ? TaggedValues.decode(bytes)
+        : fallback.bytesToObject(bytes);
+  }
+}
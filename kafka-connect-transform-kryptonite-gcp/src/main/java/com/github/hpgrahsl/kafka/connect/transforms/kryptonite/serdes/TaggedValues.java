@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Plaintext layout of field values of Connect primitive and logical types which are serialized
+ * without Kryo: one tag byte naming the value's type followed by a compact encoding of the value.
+ * Strings are UTF-8 encoded, integers zigzag varint encoded, floating point numbers written as
+ * their big-endian IEEE 754 bits, decimals as their varint scale and the two's complement bytes of
+ * their unscaled value, and dates as varint days since the epoch if they fall on midnight UTC or as
+ * varint milliseconds otherwise. Booleans are just a tag. {@code byte[]} and {@link ByteBuffer}
+ * values use the layout of {@link RawBytes}.
+ *
+ * <p>Tags are taken from 0xFC downwards, below the tags of {@link RawBytes} and {@link
+ * KryoInstance#REGISTRATION_TABLE_V1_TAG}, and all have their high bit set, which the first byte of
+ * Kryo output in the original format never has.
+ */
+public final class TaggedValues {
+
+  static final byte STRING_TAG = (byte) 0xFC;
+  static final byte INT64_TAG = (byte) 0xFB;
+  static final byte INT32_TAG = (byte) 0xFA;
+  static final byte INT16_TAG = (byte) 0xF9;
+  static final byte INT8_TAG = (byte) 0xF8;
+  static final byte FALSE_TAG = (byte) 0xF7;
+  static final byte TRUE_TAG = (byte) 0xF6;
+  static final byte FLOAT32_TAG = (byte) 0xF5;
+  static final byte FLOAT64_TAG = (byte) 0xF4;
+  static final byte DECIMAL_TAG = (byte) 0xF3;
+  static final byte DATE_DAYS_TAG = (byte) 0xF2;
+  static final byte DATE_MILLIS_TAG = (byte) 0xF1;
+
+  private static final int TAG_MIN = DATE_MILLIS_TAG & 0xFF;
+  private static final int TAG_MAX = STRING_TAG & 0xFF;
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  private TaggedValues() {}
+
+  /** Returns whether the given value is of a type having a tagged encoding. */
+  public static boolean isTaggable(Object value) {
+    return value instanceof String
+        || value instanceof Long
+        || value instanceof Integer
+        || value instanceof Short
+        || value instanceof Byte
+        || value instanceof Boolean
+        || value instanceof Float
+        || value instanceof Double
+        || value instanceof BigDecimal
+        || (value != null && value.getClass() == Date.class)
+        || RawBytes.isRawBytes(value);
+  }
+
+  /** Encodes the given value, which must be {@link #isTaggable(Object) taggable}. */
+  public static byte[] encode(Object value) {
+    if (value instanceof String) {
+      byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+      byte[] bytes = new byte[1 + utf8.length];
+      bytes[0] = STRING_TAG;
+      System.arraycopy(utf8, 0, bytes, 1, utf8.length);
+      return bytes;
+    }
+    if (value instanceof Long) {
+      return varLong(INT64_TAG, (Long) value);
+    }
+    if (value instanceof Integer) {
+      return varLong(INT32_TAG, (Integer) value);
+    }
+    if (value instanceof Short) {
+      return varLong(INT16_TAG, (Short) value);
+    }
+    if (value instanceof Byte) {
+      return new byte[] {INT8_TAG, (Byte) value};
+    }
+    if (value instanceof Boolean) {
+      return new byte[] {(Boolean) value ? TRUE_TAG : FALSE_TAG};
+    }
+    if (value instanceof Float) {
+      return fixed(FLOAT32_TAG, Float.floatToRawIntBits((Float) value), 4);
+    }
+    if (value instanceof Double) {
+      return fixed(FLOAT64_TAG, Double.doubleToRawLongBits((Double) value), 8);
+    }
+    if (value instanceof BigDecimal) {
+      BigDecimal decimal = (BigDecimal) value;
+      byte[] scale = varLong(DECIMAL_TAG, decimal.scale());
+      byte[] unscaled = decimal.unscaledValue().toByteArray();
+      byte[] bytes = Arrays.copyOf(scale, scale.length + unscaled.length);
+      System.arraycopy(unscaled, 0, bytes, scale.length, unscaled.length);
+      return bytes;
+    }
+    if (value instanceof Date) {
+      long millis = ((Date) value).getTime();
+      return millis % MILLIS_PER_DAY == 0
+          ? varLong(DATE_DAYS_TAG, millis / MILLIS_PER_DAY)
+          : varLong(DATE_MILLIS_TAG, millis);
+    }
+    if (RawBytes.isRawBytes(value)) {
+      return toArray(RawBytes.frame(value));
+    }
+    throw new IllegalArgumentException(
+        "value of type " + value.getClass().getName() + " has no tagged encoding");
+  }
+
+  public static boolean isTagged(byte[] plainText) {
+    if (plainText.length == 0) {
+      return false;
+    }
+    int tag = plainText[0] & 0xFF;
+    return tag >= TAG_MIN && tag <= TAG_MAX;
+  }
+
+  /** Decodes the value of a {@link #isTagged(byte[]) tagged} plaintext. */
+  public static Object decode(byte[] plainText) {
+    switch (plainText[0]) {
+      case STRING_TAG:
+        return new String(plainText, 1, plainText.length - 1, StandardCharsets.UTF_8);
+      case INT64_TAG:
+        return readVarLong(plainText, new int[] {1});
+      case INT32_TAG:
+        return (int) readVarLong(plainText, new int[] {1});
+      case INT16_TAG:
+        return (short) readVarLong(plainText, new int[] {1});
+      case INT8_TAG:
+        checkLength(plainText, 2);
+        return plainText[1];
+      case FALSE_TAG:
+        return Boolean.FALSE;
+      case TRUE_TAG:
+        return Boolean.TRUE;
+      case FLOAT32_TAG:
+        checkLength(plainText, 5);
+        return Float.intBitsToFloat((int) readFixed(plainText, 4));
+      case FLOAT64_TAG:
+        checkLength(plainText, 9);
+        return Double.longBitsToDouble(readFixed(plainText, 8));
+      case DECIMAL_TAG:
+        int[] position = {1};
+        int scale = (int) readVarLong(plainText, position);
+        BigInteger unscaled =
+            new BigInteger(plainText, position[0], plainText.length - position[0]);
+        return new BigDecimal(unscaled, scale);
+      case DATE_DAYS_TAG:
+        return new Date(readVarLong(plainText, new int[] {1}) * MILLIS_PER_DAY);
+      case DATE_MILLIS_TAG:
+        return new Date(readVarLong(plainText, new int[] {1}));
+      default:
+        throw new IllegalArgumentException("unknown tag " + (plainText[0] & 0xFF));
+    }
+  }
+
+  private static byte[] varLong(byte tag, long value) {
+    byte[] buffer = new byte[11];
+    buffer[0] = tag;
+    int position = 1;
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+      zigzag >>>= 7;
+    }
+    buffer[position++] = (byte) zigzag;
+    return Arrays.copyOf(buffer, position);
+  }
+
+  private static long readVarLong(byte[] bytes, int[] position) {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (position[0] >= bytes.length) {
+        break;
+      }
+      byte b = bytes[position[0]++];
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IllegalArgumentException("malformed varint in tagged value");
+  }
+
+  private static byte[] fixed(byte tag, long bits, int length) {
+    byte[] bytes = new byte[1 + length];
+    bytes[0] = tag;
+    for (int i = length; i > 0; i--) {
+      bytes[i] = (byte) bits;
+      bits >>>= 8;
+    }
+    return bytes;
+  }
+
+  private static long readFixed(byte[] bytes, int length) {
+    long bits = 0;
+    for (int i = 1; i <= length; i++) {
+      bits = (bits << 8) | (bytes[i] & 0xFF);
+    }
+    return bits;
+  }
+
+  private static void checkLength(byte[] bytes, int length) {
+    if (bytes.length != length) {
+      throw new IllegalArgumentException(
+          "tagged value of " + bytes.length + " bytes where " + length + " are expected");
+    }
+  }
+
+  private static byte[] toArray(ByteBuffer[] buffers) {
+    int length = 0;
+    for (ByteBuffer buffer : buffers) {
+      length += buffer.remaining();
+    }
+    byte[] bytes = new byte[length];
+    int position = 0;
+    for (ByteBuffer buffer : buffers) {
+      int remaining = buffer.remaining();
+      buffer.get(bytes, position, remaining);
+      position += remaining;
+    }
+    return bytes;
+  }
+}
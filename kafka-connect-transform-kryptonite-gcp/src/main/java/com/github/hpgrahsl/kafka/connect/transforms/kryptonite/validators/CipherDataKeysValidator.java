@@ -19,9 +19,13 @@ package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.validators;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField;
 import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.DataKeyConfig;
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.crypto.CryptoAlgorithm;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import org.apache.kafka.common.config.ConfigDef.Validator;
 import org.apache.kafka.common.config.ConfigException;
@@ -33,7 +37,7 @@ public class CipherDataKeysValidator implements Validator {
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
   static {
-    VALID_KEY_LENGTHS.addAll(Arrays.asList(16, 24, 32));
+    VALID_KEY_LENGTHS.addAll(Arrays.asList(16, 24, 32, 48, 64));
   }
 
   @Override
@@ -64,6 +68,33 @@ public class CipherDataKeysValidator implements Validator {
     }
   }
 
+  /**
+   * Checks the length of the data key with the given identifier against the algorithm it is
+   * configured for, which {@link #ensureValid(String, Object)} cannot do since it only sees the
+   * data keys. Keys which aren't part of the given map and unknown algorithms are left to fail
+   * elsewhere.
+   */
+  public static void ensureValidKeyLength(
+      String algorithm, String keyIdentifier, Map<String, byte[]> keys) {
+    byte[] keyBytes = keys.get(keyIdentifier);
+    String algorithmId = Kryptonite.CIPHERNAME_ID_LUT.get(algorithm);
+    CryptoAlgorithm cryptoAlgorithm =
+        algorithmId != null ? Kryptonite.ID_CRYPTOALGORITHM_LUT.get(algorithmId) : null;
+    if (keyBytes == null || keyBytes.length == 0 || cryptoAlgorithm == null) {
+      return;
+    }
+    if (!cryptoAlgorithm.isValidKeyLength(keyBytes.length)) {
+      throw new ConfigException(
+          CipherField.CIPHER_DATA_KEYS
+              + ": data key specification violation -> invalid key length of "
+              + keyBytes.length
+              + " bytes for data key '"
+              + keyIdentifier
+              + "' used with "
+              + algorithm);
+    }
+  }
+
   @Override
   public String toString() {
     return "JSON array holding at least one valid data key config object, "
@@ -28,6 +28,7 @@ public class CipherEncodingValidator implements Validator {
       new LinkedHashSet<String>() {
         {
           add("base64");
+          add("raw");
         }
       };
 
@@ -28,6 +28,9 @@ public class CipherNameValidator implements Validator {
       new LinkedHashSet<String>() {
         {
           add("AES/GCM/NoPadding");
+          add("AES/SIV/NoPadding");
+          add("ChaCha20-Poly1305");
+          add("AES/GCM-SEGMENTED/NoPadding");
         }
       };
 
@@ -40,6 +40,17 @@ public class FieldConfigValidator implements Validator {
             "field config specification violation -> "
                 + " there must be at least 1 valid field path definition entry");
       }
+      if (fieldPathConfig.stream()
+          .anyMatch(
+              fc ->
+                  fc.getMemoCacheMaxBytes().filter(max -> max < 0).isPresent()
+                      || fc.getDecryptCacheMaxBytes().filter(max -> max < 0).isPresent())) {
+        throw new ConfigException(
+            name,
+            o,
+            "field config specification violation -> "
+                + "memoCacheMaxBytes and decryptCacheMaxBytes must not be negative");
+      }
     } catch (JsonProcessingException exc) {
       throw new ConfigException(
           name,
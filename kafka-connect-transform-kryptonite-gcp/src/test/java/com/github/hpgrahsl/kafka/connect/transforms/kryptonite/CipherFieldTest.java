@@ -19,21 +19,41 @@ package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.github.hpgrahsl.kryptonite.EnvelopeCodec;
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmNoPadding;
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmSegmented;
+import com.github.hpgrahsl.kryptonite.crypto.CipherProviderRegistry;
+import java.nio.ByteBuffer;
+import java.security.Security;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 public class CipherFieldTest {
 
@@ -105,6 +125,72 @@ public class CipherFieldTest {
     OBJ_MAP_1.put("myBytes", new byte[] {75, 97, 102, 107, 97, 32, 114, 111, 99, 107, 115, 33});
   }
 
+  static final String DATA_KEYS =
+      "["
+          + "{\"name\":\"my-demo-secret-key\",\"version\":\"123\",\"material\":\"YWFhYWFhYWFhYWFhYWFhYQ==\"},"
+          + "{\"name\":\"my-demo-secret-key\",\"version\":\"987\",\"material\":\"YmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmI=\"},"
+          + "{\"name\":\"my-demo-secret-key\",\"version\":\"456\",\"material\":\"Y2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjY2NjYw==\"}"
+          + "]";
+
+  static Map<String, Object> encryptProps(String fieldConfig) {
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, "ENCRYPT");
+    props.put(CipherField.FIELD_CONFIG, fieldConfig);
+    props.put(CipherField.CIPHER_DATA_KEYS, DATA_KEYS);
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+    return props;
+  }
+
+  static Map<String, Object> decryptProps(Map<String, Object> encProps) {
+    Map<String, Object> props = new HashMap<>(encProps);
+    props.put(CipherField.CIPHER_MODE, "DECRYPT");
+    return props;
+  }
+
+  static Object encrypt(Map<String, Object> props, Schema schema, Object value) {
+    CipherField.Value<SourceRecord> transform = new CipherField.Value<SourceRecord>();
+    transform.configure(props);
+    try {
+      return transform
+          .apply(new SourceRecord(null, null, "some-kafka-topic", 0, schema, value))
+          .value();
+    } finally {
+      transform.close();
+    }
+  }
+
+  static Object decrypt(Map<String, Object> props, Schema schema, Object value) {
+    CipherField.Value<SinkRecord> transform = new CipherField.Value<SinkRecord>();
+    transform.configure(props);
+    try {
+      return transform
+          .apply(new SinkRecord("some-kafka-topic", 0, null, null, schema, value, 0))
+          .value();
+    } finally {
+      transform.close();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> encryptSchemaless(
+      Map<String, Object> props, Map<String, Object> record) {
+    return new LinkedHashMap<>((Map<String, Object>) encrypt(props, null, record));
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> decryptSchemaless(
+      Map<String, Object> props, Map<String, Object> record) {
+    return (Map<String, Object>) decrypt(props, null, record);
+  }
+
+  static String tamper(String envelope) {
+    char[] tampered = envelope.toCharArray();
+    int position = tampered.length / 2;
+    tampered[position] = tampered[position] == 'A' ? 'B' : 'A';
+    return new String(tampered);
+  }
+
   @Test
   @DisplayName(
       "apply SMT decrypt(encrypt(plaintext)) = plaintext for schemaless record with object mode")
@@ -191,6 +277,515 @@ public class CipherFieldTest {
                 (byte[]) OBJ_MAP_1.get("myBytes"), (byte[]) decryptedRecord.get("myBytes")));
   }
 
+  @ParameterizedTest(name = "{0}")
+  @CsvSource({
+    "AES/GCM/NoPadding,123,false",
+    "AES/SIV/NoPadding,456,true",
+    "ChaCha20-Poly1305,987,false"
+  })
+  @DisplayName("apply SMT decrypt(encrypt(plaintext)) = plaintext for each cipher algorithm")
+  void encryptDecryptSchemalessRecordTestWithAlgorithm(
+      String algorithm, String keyVersion, boolean deterministic) {
+    String field = "\"algorithm\":\"" + algorithm + "\",\"keyVersion\":\"" + keyVersion + "\"";
+    Map<String, Object> encProps =
+        encryptProps(
+            "[{\"name\":\"id\","
+                + field
+                + "},{\"name\":\"myString\"},{\"name\":\"mySubDoc2\","
+                + field
+                + "}]");
+    encProps.put(CipherField.FIELD_MODE, "OBJECT");
+    Map<String, Object> encryptedRecord1 = encryptSchemaless(encProps, OBJ_MAP_1);
+    Map<String, Object> encryptedRecord2 = encryptSchemaless(encProps, OBJ_MAP_1);
+
+    assertAll(
+        () ->
+            assertEquals(
+                deterministic, encryptedRecord1.get("id").equals(encryptedRecord2.get("id"))),
+        () ->
+            assertEquals(
+                deterministic,
+                encryptedRecord1.get("mySubDoc2").equals(encryptedRecord2.get("mySubDoc2"))),
+        () -> assertNotEquals(encryptedRecord1.get("myString"), encryptedRecord2.get("myString")));
+
+    // the memo cache of deterministic fields serves repeated ciphertexts
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.put(
+        CipherField.FIELD_CONFIG,
+        "[{\"name\":\"id\","
+            + field
+            + ",\"decryptCacheMaxBytes\":4096},{\"name\":\"myString\"},{\"name\":\"mySubDoc2\","
+            + field
+            + ",\"decryptCacheMaxBytes\":4096}]");
+    CipherField.Value<SinkRecord> decryptTransform = new CipherField.Value<SinkRecord>();
+    decryptTransform.configure(decProps);
+    for (Map<String, Object> encrypted :
+        Arrays.asList(encryptedRecord1, encryptedRecord1, encryptedRecord2)) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> decryptedRecord =
+          (Map<String, Object>)
+              decryptTransform
+                  .apply(new SinkRecord("some-kafka-topic", 0, null, null, null, encrypted, 0))
+                  .value();
+      assertAll(
+          () -> assertEquals(OBJ_MAP_1.get("id"), decryptedRecord.get("id")),
+          () -> assertEquals(OBJ_MAP_1.get("myString"), decryptedRecord.get("myString")),
+          () -> assertEquals(OBJ_MAP_1.get("myInt"), decryptedRecord.get("myInt")),
+          () -> assertEquals(OBJ_MAP_1.get("mySubDoc2"), decryptedRecord.get("mySubDoc2")));
+    }
+    decryptTransform.close();
+  }
+
+  @Test
+  @DisplayName(
+      "apply SMT decrypt(encrypt(plaintext)) = plaintext for large collections in parallel")
+  @SuppressWarnings("unchecked")
+  void encryptDecryptSchemalessRecordTestWithParallelism() {
+    List<String> myLargeArray = new ArrayList<>();
+    Map<String, Integer> myLargeSubDoc = new LinkedHashMap<>();
+    for (int i = 0; i < 2000; i++) {
+      myLargeArray.add("id_" + i);
+      myLargeSubDoc.put("k" + i, i);
+    }
+    Map<String, Object> record = new LinkedHashMap<>();
+    record.put("id", "1234567890");
+    record.put("myLargeArray", myLargeArray);
+    record.put("myLargeSubDoc", myLargeSubDoc);
+    Map<String, Object> encProps =
+        encryptProps(
+            "[{\"name\":\"id\"},{\"name\":\"myLargeArray\"},{\"name\":\"myLargeSubDoc\"}]");
+    encProps.put(CipherField.FIELD_MODE, "ELEMENT");
+    encProps.put(CipherField.CIPHER_PARALLELISM, 4);
+    encProps.put(CipherField.CIPHER_PARALLELISM_THRESHOLD, 16);
+
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, record);
+    Map<String, Object> decryptedRecord =
+        decryptSchemaless(decryptProps(encProps), encryptedRecord);
+
+    assertAll(
+        () -> assertEquals(2000, ((List<?>) encryptedRecord.get("myLargeArray")).size()),
+        () -> assertEquals(2000, ((Map<?, ?>) encryptedRecord.get("myLargeSubDoc")).size()),
+        () -> assertEquals(record.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(myLargeArray, decryptedRecord.get("myLargeArray")),
+        () -> assertEquals(myLargeSubDoc, decryptedRecord.get("myLargeSubDoc")),
+        () ->
+            assertEquals(
+                new ArrayList<>(myLargeSubDoc.keySet()),
+                new ArrayList<>(((Map<String, ?>) decryptedRecord.get("myLargeSubDoc")).keySet())));
+  }
+
+  @Test
+  @DisplayName("apply SMT decrypt(encrypt(plaintext)) = plaintext with selected cipher provider")
+  @SuppressWarnings("unchecked")
+  void encryptDecryptSchemalessRecordTestWithCipherProvider() throws Exception {
+    Map<String, Object> encProps =
+        encryptProps("[{\"name\":\"id\"},{\"name\":\"myString\"},{\"name\":\"mySubDoc2\"}]");
+    encProps.put(CipherField.CIPHER_PROVIDER, "auto");
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.put(CipherField.CIPHER_PROVIDER, "SunJCE");
+    Map<String, Object> defaultProps = decryptProps(encProps);
+    defaultProps.remove(CipherField.CIPHER_PROVIDER);
+
+    CipherField.Value<SourceRecord> encryptTransform = new CipherField.Value<SourceRecord>();
+    encryptTransform.configure(encProps);
+    Map<String, Object> encryptedRecord =
+        (Map<String, Object>)
+            encryptTransform
+                .apply(new SourceRecord(null, null, "some-kafka-topic", 0, null, OBJ_MAP_1))
+                .value();
+    encryptTransform.close();
+    CipherField.Value<SinkRecord> decryptTransform = new CipherField.Value<SinkRecord>();
+    decryptTransform.configure(decProps);
+    Map<String, Object> decryptedRecord =
+        (Map<String, Object>)
+            decryptTransform
+                .apply(new SinkRecord("some-kafka-topic", 0, null, null, null, encryptedRecord, 0))
+                .value();
+    decryptTransform.close();
+    CipherField.Value<SinkRecord> defaultTransform = new CipherField.Value<SinkRecord>();
+    defaultTransform.configure(defaultProps);
+    defaultTransform.close();
+
+    CipherProviderRegistry.Selection auto = encryptTransform.getCipherProvider();
+    CipherProviderRegistry.Selection named = decryptTransform.getCipherProvider();
+    assertAll(
+        () -> assertTrue(CipherProviderRegistry.names().contains(auto.getName()), auto.getName()),
+        () -> assertFalse(Double.isNaN(auto.getThroughput())),
+        () -> assertSame(auto.getProvider(), encryptTransform.getKryptonite().getCipherProvider()),
+        () -> assertEquals("SunJCE", named.getName()),
+        () -> assertTrue(Double.isNaN(named.getThroughput())),
+        () -> assertSame(Security.getProvider("SunJCE"), named.getProvider()),
+        () -> assertSame(named.getProvider(), decryptTransform.getKryptonite().getCipherProvider()),
+        () ->
+            assertEquals(
+                CipherProviderRegistry.DEFAULT, defaultTransform.getCipherProvider().getName()),
+        () ->
+            assertSame(
+                Cipher.getInstance(AesGcmNoPadding.CIPHER_ALGORITHM).getProvider(),
+                defaultTransform.getKryptonite().getCipherProvider()),
+        () -> assertEquals(OBJ_MAP_1.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(OBJ_MAP_1.get("myString"), decryptedRecord.get("myString")),
+        () -> assertEquals(OBJ_MAP_1.get("mySubDoc2"), decryptedRecord.get("mySubDoc2")));
+  }
+
+  @Test
+  @DisplayName("apply SMT decrypt(encrypt(plaintext)) = plaintext for segmented large values")
+  void encryptDecryptSchemalessRecordTestWithSegmentedLargeValues() {
+    byte[] myBlob = new byte[300_000];
+    new Random(42).nextBytes(myBlob);
+    Map<String, Object> record = new LinkedHashMap<>();
+    record.put("id", "1234567890");
+    record.put("myBlob", myBlob);
+    Map<String, Object> encProps = encryptProps("[{\"name\":\"id\"},{\"name\":\"myBlob\"}]");
+    encProps.put(CipherField.CIPHER_SEGMENT_THRESHOLD, 65536);
+    encProps.put(CipherField.CIPHER_SEGMENT_SIZE, 4096);
+    encProps.put(CipherField.CIPHER_PARALLELISM, 2);
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.remove(CipherField.CIPHER_SEGMENT_THRESHOLD);
+    decProps.remove(CipherField.CIPHER_PARALLELISM);
+
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, record);
+    Map<String, Object> decryptedRecord = decryptSchemaless(decProps, encryptedRecord);
+
+    EnvelopeCodec envelopeCodec = new EnvelopeCodec(Kryptonite.VERSION_DELIMITER_DEFAULT);
+    String blobEnvelope = (String) encryptedRecord.get("myBlob");
+    String idEnvelope = (String) encryptedRecord.get("id");
+    byte[] blobPayload =
+        envelopeCodec.decodePayload(blobEnvelope, envelopeCodec.versionEnd(blobEnvelope));
+    byte[] idPayload =
+        envelopeCodec.decodePayload(idEnvelope, envelopeCodec.versionEnd(idEnvelope));
+    assertAll(
+        () -> assertEquals(AesGcmSegmented.FORMAT_VERSION, blobPayload[0]),
+        () -> assertEquals(AesGcmNoPadding.FORMAT_VERSION_V2, idPayload[0]),
+        () -> assertEquals(record.get("id"), decryptedRecord.get("id")),
+        () -> assertArrayEquals(myBlob, (byte[]) decryptedRecord.get("myBlob")));
+  }
+
+  @Test
+  @DisplayName("apply SMT decrypt(encrypt(plaintext)) = plaintext for native bytes values")
+  void encryptDecryptSchemalessRecordTestWithNativeBytes() {
+    byte[] myBytes = new byte[1000];
+    new Random(42).nextBytes(myBytes);
+    ByteBuffer myDirectBuffer = ByteBuffer.allocateDirect(myBytes.length);
+    myDirectBuffer.put(myBytes).flip();
+    Map<String, Object> record = new LinkedHashMap<>();
+    record.put("id", "1234567890");
+    record.put("myBytes", myBytes);
+    record.put("myBuffer", ByteBuffer.wrap(myBytes, 10, 100));
+    record.put("myDirectBuffer", myDirectBuffer);
+    Map<String, Object> encProps =
+        encryptProps(
+            "["
+                + "{\"name\":\"id\"},"
+                + "{\"name\":\"myBytes\"},"
+                + "{\"name\":\"myBuffer\"},"
+                + "{\"name\":\"myDirectBuffer\",\"algorithm\":\"AES/SIV/NoPadding\",\"keyVersion\":\"456\"}"
+                + "]");
+    encProps.put(CipherField.CIPHER_NATIVE_BYTES, true);
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.remove(CipherField.CIPHER_NATIVE_BYTES);
+
+    Map<String, Object> decryptedRecord =
+        decryptSchemaless(decProps, encryptSchemaless(encProps, record));
+
+    assertAll(
+        () -> assertEquals(record.get("id"), decryptedRecord.get("id")),
+        () -> assertArrayEquals(myBytes, (byte[]) decryptedRecord.get("myBytes")),
+        () -> assertEquals(record.get("myBuffer"), decryptedRecord.get("myBuffer")),
+        () -> assertEquals(myDirectBuffer, decryptedRecord.get("myDirectBuffer")),
+        () -> assertEquals(0, myDirectBuffer.position()));
+  }
+
+  @Test
+  @DisplayName(
+      "keep decrypted native bytes values intact after their decrypt cache entries are gone")
+  @SuppressWarnings("unchecked")
+  void decryptNativeBytesWithDecryptCacheEvictionTest() {
+    Map<String, Object> encProps = encryptProps("[{\"name\":\"myBuffer\"}]");
+    encProps.put(CipherField.CIPHER_NATIVE_BYTES, true);
+    List<ByteBuffer> buffers = new ArrayList<>();
+    List<Map<String, Object>> encryptedRecords = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      byte[] myBytes = new byte[100];
+      new Random(i).nextBytes(myBytes);
+      buffers.add(ByteBuffer.wrap(myBytes));
+      encryptedRecords.add(
+          encryptSchemaless(encProps, Map.of("myBuffer", ByteBuffer.wrap(myBytes))));
+    }
+    // room for a single entry only, so every other record evicts the previous one
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.remove(CipherField.CIPHER_NATIVE_BYTES);
+    decProps.put(
+        CipherField.FIELD_CONFIG, "[{\"name\":\"myBuffer\",\"decryptCacheMaxBytes\":400}]");
+
+    CipherField.Value<SinkRecord> decryptTransform = new CipherField.Value<SinkRecord>();
+    decryptTransform.configure(decProps);
+    List<Object> decryptedBuffers = new ArrayList<>();
+    for (Map<String, Object> encrypted : encryptedRecords) {
+      for (int hit = 0; hit < 2; hit++) {
+        decryptedBuffers.add(
+            ((Map<String, Object>)
+                    decryptTransform
+                        .apply(
+                            new SinkRecord("some-kafka-topic", 0, null, null, null, encrypted, 0))
+                        .value())
+                .get("myBuffer"));
+      }
+    }
+    decryptTransform.close();
+    // evicted entries are released on the cache's executor
+    ForkJoinPool.commonPool().awaitQuiescence(10, TimeUnit.SECONDS);
+
+    for (int i = 0; i < decryptedBuffers.size(); i++) {
+      assertEquals(buffers.get(i / 2), decryptedBuffers.get(i), "decrypted buffer " + i);
+    }
+  }
+
+  @Test
+  @DisplayName("apply SMT encrypt leaving the record untouched and decrypt in place")
+  void encryptDecryptSchemalessRecordTestWithValueModes() {
+    Map<String, Object> encProps =
+        encryptProps(
+            "[{\"name\":\"id\"},{\"name\":\"mySubDoc1\"},{\"name\":\"mySubDoc1.myString\"}]");
+    encProps.put(CipherField.SCHEMALESS_VALUE_MODE, "OVERLAY");
+    Map<String, Object> record = new LinkedHashMap<>(OBJ_MAP_1);
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, record);
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.put(CipherField.SCHEMALESS_VALUE_MODE, "IN_PLACE");
+
+    Map<String, Object> decryptedRecord = decryptSchemaless(decProps, encryptedRecord);
+
+    assertAll(
+        () -> assertEquals(OBJ_MAP_1, record),
+        () -> assertTrue(encryptedRecord == decryptedRecord),
+        () -> assertEquals(record.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(record.get("mySubDoc1"), decryptedRecord.get("mySubDoc1")));
+  }
+
+  @Test
+  @DisplayName("fail reading a tampered field with lazy decryption but not overwriting it")
+  void decryptSchemalessRecordWithTamperedFieldLazilyTest() {
+    Map<String, Object> encProps =
+        encryptProps("[{\"name\":\"id\"},{\"name\":\"myString\"},{\"name\":\"myInt\"}]");
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, OBJ_MAP_1);
+    String tampered = tamper((String) encryptedRecord.get("myString"));
+    encryptedRecord.put("myString", tampered);
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.put(CipherField.CIPHER_LAZY_DECRYPTION, true);
+
+    LazyDecryptingMap decryptedRecord =
+        (LazyDecryptingMap) decryptSchemaless(decProps, encryptedRecord);
+
+    assertEquals(3, decryptedRecord.pendingCount());
+    DataException failure =
+        assertThrows(DataException.class, () -> decryptedRecord.get("myString"));
+    assertAll(
+        () -> assertTrue(failure.getMessage().contains("'myString'"), failure.getMessage()),
+        () -> assertEquals(OBJ_MAP_1.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(tampered, decryptedRecord.remove("myString")),
+        () -> assertFalse(decryptedRecord.containsKey("myString")),
+        () -> assertEquals(encryptedRecord.get("myInt"), decryptedRecord.put("myInt", 0)),
+        () -> assertEquals(0, decryptedRecord.pendingCount()));
+  }
+
+  @Test
+  @DisplayName(
+      "apply SMT decrypt(encrypt(plaintext)) = plaintext for schemaless record with empty key version")
+  void encryptDecryptSchemalessRecordTestWithEmptyKeyVersion() {
+    Map<String, Object> encProps =
+        encryptProps("[{\"name\":\"id\"},{\"name\":\"myString\",\"keyVersion\":\"\"}]");
+    encProps.put(
+        CipherField.CIPHER_DATA_KEYS,
+        "["
+            + "{\"name\":\"my-demo-secret-key\",\"version\":\"123\",\"material\":\"YWFhYWFhYWFhYWFhYWFhYQ==\"},"
+            + "{\"name\":\"my-demo-secret-key\",\"version\":\"\",\"material\":\"YmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmI=\"}"
+            + "]");
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, OBJ_MAP_1);
+    Map<String, Object> decryptedRecord =
+        decryptSchemaless(decryptProps(encProps), encryptedRecord);
+
+    // a key version envelope with an empty key version must not pass for a key id header
+    String envelope = (String) encryptedRecord.get("myString");
+    assertAll(
+        () -> assertTrue(envelope.startsWith("#")),
+        () -> assertFalse(envelope.startsWith("##")),
+        () -> assertEquals(OBJ_MAP_1.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(OBJ_MAP_1.get("myString"), decryptedRecord.get("myString")));
+  }
+
+  @Test
+  @DisplayName("apply SMT decrypt of schemaless record with a tampered field names only its path")
+  void decryptSchemalessRecordWithTamperedFieldTest() {
+    Map<String, Object> encProps =
+        encryptProps("[{\"name\":\"id\"},{\"name\":\"myString\"},{\"name\":\"myInt\"}]");
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, OBJ_MAP_1);
+    encryptedRecord.put("myString", tamper((String) encryptedRecord.get("myString")));
+
+    DataException failure =
+        assertThrows(
+            DataException.class, () -> decryptSchemaless(decryptProps(encProps), encryptedRecord));
+
+    assertAll(
+        () -> assertTrue(failure.getMessage().contains("'myString'"), failure.getMessage()),
+        () -> assertFalse(failure.getMessage().contains("id"), failure.getMessage()),
+        () -> assertFalse(failure.getMessage().contains("myInt"), failure.getMessage()));
+  }
+
+  @Test
+  @DisplayName("configure SMT with unknown cipher provider fails")
+  void configureWithUnknownCipherProviderTest() {
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, "ENCRYPT");
+    props.put(CipherField.FIELD_CONFIG, "[{\"name\":\"id\"}]");
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+    props.put(CipherField.CIPHER_PROVIDER, "NoSuchProvider");
+
+    CipherField.Value<SourceRecord> transform = new CipherField.Value<SourceRecord>();
+    assertThrows(ConfigException.class, () -> transform.configure(props));
+  }
+
+  @Test
+  @DisplayName("configure SMT with data keys of invalid length for their algorithm fails")
+  void configureWithInvalidKeyLengthForAlgorithmTest() {
+    String dataKeys =
+        "["
+            + "{\"name\":\"my-demo-secret-key\",\"version\":\"123\",\"material\":\"YWFhYWFhYWFhYWFhYWFhYQ==\"},"
+            + "{\"name\":\"my-demo-secret-key\",\"version\":\"987\",\"material\":\"YmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYmJiYg==\"}"
+            + "]";
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, "ENCRYPT");
+    props.put(CipherField.CIPHER_DATA_KEYS, dataKeys);
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+
+    props.put(CipherField.FIELD_CONFIG, "[{\"name\":\"id\",\"algorithm\":\"ChaCha20-Poly1305\"}]");
+    assertThrows(
+        ConfigException.class, () -> new CipherField.Value<SourceRecord>().configure(props));
+
+    props.put(CipherField.FIELD_CONFIG, "[{\"name\":\"id\",\"keyVersion\":\"987\"}]");
+    assertThrows(
+        ConfigException.class, () -> new CipherField.Value<SourceRecord>().configure(props));
+
+    props.put(
+        CipherField.FIELD_CONFIG,
+        "[{\"name\":\"id\",\"algorithm\":\"AES/SIV/NoPadding\",\"keyVersion\":\"987\"}]");
+    CipherField.Value<SourceRecord> transform = new CipherField.Value<SourceRecord>();
+    transform.configure(props);
+    transform.close();
+  }
+
+  @Test
+  @DisplayName(
+      "apply SMT decrypt(encrypt(plaintext)) = plaintext for schemaless record with key id header")
+  void encryptDecryptSchemalessRecordTestWithKeyIdHeader() {
+    Map<String, Object> encProps =
+        encryptProps(
+            "["
+                + "{\"name\":\"id\"},"
+                + "{\"name\":\"myString\",\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+                + "{\"name\":\"myInt\",\"algorithm\":\"AES/SIV/NoPadding\",\"keyVersion\":\"987\"},"
+                + "{\"name\":\"mySubDoc2\"}"
+                + "]");
+    encProps.put(CipherField.CIPHER_TEXT_ENVELOPE_HEADER, "key_id");
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, OBJ_MAP_1);
+
+    // key versions and algorithms of the decrypt config are irrelevant for key id headers
+    Map<String, Object> decProps =
+        decryptProps(
+            encryptProps(
+                "[{\"name\":\"id\"},{\"name\":\"myString\"},{\"name\":\"myInt\"},{\"name\":\"mySubDoc2\"}]"));
+    Map<String, Object> decryptedRecord = decryptSchemaless(decProps, encryptedRecord);
+
+    assertAll(
+        () -> assertTrue(((String) encryptedRecord.get("id")).startsWith("##")),
+        () -> assertTrue(((String) encryptedRecord.get("myString")).startsWith("##")),
+        () -> assertTrue(((String) encryptedRecord.get("myInt")).startsWith("##")),
+        () -> assertEquals(OBJ_MAP_1.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(OBJ_MAP_1.get("myString"), decryptedRecord.get("myString")),
+        () -> assertEquals(OBJ_MAP_1.get("myInt"), decryptedRecord.get("myInt")),
+        () -> assertEquals(OBJ_MAP_1.get("mySubDoc2"), decryptedRecord.get("mySubDoc2")),
+        () -> assertEquals(OBJ_MAP_1.get("myBoolean"), decryptedRecord.get("myBoolean")));
+  }
+
+  @Test
+  @DisplayName("apply SMT decrypt to legacy key version envelopes next to key id envelopes")
+  void decryptLegacyEnvelopesNextToKeyIdHeaderTest() {
+    Map<String, Object> encProps = encryptProps("[{\"name\":\"myBoolean\"}]");
+    encProps.put(CipherField.CIPHER_TEXT_ENVELOPE_HEADER, "key_id");
+    Map<String, Object> plainRecord = new LinkedHashMap<>();
+    plainRecord.put("myBoolean", true);
+    Map<String, Object> encryptedRecord = encryptSchemaless(encProps, plainRecord);
+
+    // envelopes written by the original implementation, partly with the non-configured key
+    // version 987 which is only known from the envelope itself
+    encryptedRecord.put("id", "123#WlY6lxCcXplm2147nrOY8VhWaT42Fw9XM8d4NHf5N2bSGlGjzqcx+YBt4w==");
+    encryptedRecord.put(
+        "myString", "987#WRbrPXzmkzWTBaj6+4z4nEBRHCAsktAlYMgmPKBRbqbYzau2eRnmMUnSh0Ex3UCzTas=");
+    encryptedRecord.put("myInt", "123#EOLp9glTg5C0mfJGYyK+2gB4IgaFQycKpRieUPLoo+Ge0w==");
+    encryptedRecord.put(
+        "myArray1",
+        Arrays.asList(
+            "987#hL6qSEfWgMoHXuXZ8OkDKkn8yxDuaVjj47aIvkfk/3mpamytYpU=",
+            "987#+Yhpdx4qiDBV7294J+ZmkN1Nf3iN6wQPoKcxvllvKpNhbwdCdak=",
+            "987#0hZUD3Z3E/S6lyQbQxBCt6IDDfB2FH4ESmx17L6PVOWYFe24",
+            "987#epvRVrk5ImTL14R/wAaMzn/wIk8Ml3czJCE+7AyiUhQUj40L6xE="));
+
+    Map<String, Object> decryptedRecord =
+        decryptSchemaless(
+            decryptProps(
+                encryptProps(
+                    "[{\"name\":\"id\"},{\"name\":\"myString\"},{\"name\":\"myInt\"},"
+                        + "{\"name\":\"myArray1\"},{\"name\":\"myBoolean\"}]")),
+            encryptedRecord);
+
+    assertAll(
+        () -> assertTrue(((String) encryptedRecord.get("myBoolean")).startsWith("##")),
+        () -> assertEquals(OBJ_MAP_1.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(OBJ_MAP_1.get("myString"), decryptedRecord.get("myString")),
+        () -> assertEquals(OBJ_MAP_1.get("myInt"), decryptedRecord.get("myInt")),
+        () -> assertEquals(OBJ_MAP_1.get("myArray1"), decryptedRecord.get("myArray1")),
+        () -> assertEquals(OBJ_MAP_1.get("myBoolean"), decryptedRecord.get("myBoolean")));
+  }
+
+  @Test
+  @DisplayName("apply SMT decrypt(encrypt(plaintext)) = plaintext for batch of sink records")
+  @SuppressWarnings("unchecked")
+  void encryptDecryptSinkRecordBatchTest() {
+    Map<String, Object> encProps = encryptProps("[{\"name\":\"id\"},{\"name\":\"myString\"}]");
+    CipherField.Value<SinkRecord> encryptTransform = new CipherField.Value<SinkRecord>();
+    encryptTransform.configure(encProps);
+    List<SinkRecord> encryptedRecords = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      Map<String, Object> record = new HashMap<>();
+      record.put("id", "id_" + i);
+      record.put("myString", "some foo bla text " + i);
+      encryptedRecords.add(
+          encryptTransform.apply(
+              new SinkRecord("some-kafka-topic", 0, null, null, null, record, i)));
+    }
+    encryptTransform.close();
+
+    CipherField.Value<SinkRecord> decryptTransform = new CipherField.Value<SinkRecord>();
+    decryptTransform.configure(decryptProps(encProps));
+    List<SinkRecord> decryptedRecords;
+    try (SinkRecordBatchProcessor processor = new SinkRecordBatchProcessor(decryptTransform, 4)) {
+      decryptedRecords = processor.apply(encryptedRecords);
+    }
+    decryptTransform.close();
+
+    assertEquals(encryptedRecords.size(), decryptedRecords.size());
+    for (int i = 0; i < decryptedRecords.size(); i++) {
+      int index = i;
+      SinkRecord decrypted = decryptedRecords.get(index);
+      Map<String, Object> value = (Map<String, Object>) decrypted.value();
+      assertAll(
+          () -> assertEquals(index, decrypted.kafkaOffset()),
+          () -> assertEquals("id_" + index, value.get("id")),
+          () -> assertEquals("some foo bla text " + index, value.get("myString")));
+    }
+  }
+
   @Test
   @DisplayName(
       "apply SMT decrypt(encrypt(plaintext)) = plaintext for schemaless record with element mode")
@@ -378,6 +973,60 @@ public class CipherFieldTest {
                 (byte[]) OBJ_STRUCT_1.get("myBytes"), (byte[]) decryptedRecord.get("myBytes")));
   }
 
+  @Test
+  @DisplayName(
+      "apply SMT decrypt(encrypt(plaintext)) = plaintext for schemaful record with raw encoding")
+  void encryptDecryptSchemafulRecordTestWithRawEncoding() {
+    Map<String, Object> encProps =
+        encryptProps(
+            "["
+                + "{\"name\":\"id\"},"
+                + "{\"name\":\"myString\",\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+                + "{\"name\":\"myInt\"},"
+                + "{\"name\":\"myBoolean\",\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+                + "{\"name\":\"mySubDoc1\"},"
+                + "{\"name\":\"myArray1\",\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+                + "{\"name\":\"mySubDoc2\"},"
+                + "{\"name\":\"myBytes\",\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"}"
+                + "]");
+    encProps.put(CipherField.FIELD_MODE, "OBJECT");
+    encProps.put(CipherField.CIPHER_TEXT_ENCODING, "raw");
+    Struct encryptedRecord = (Struct) encrypt(encProps, OBJ_SCHEMA_1, OBJ_STRUCT_1);
+
+    Map<String, Object> decProps = decryptProps(encProps);
+    decProps.put(
+        CipherField.FIELD_CONFIG,
+        "["
+            + "{\"name\":\"id\",\"schema\":{\"type\":\"STRING\"}},"
+            + "{\"name\":\"myString\",\"schema\":{\"type\":\"STRING\"},\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+            + "{\"name\":\"myInt\",\"schema\":{\"type\":\"INT32\"}},"
+            + "{\"name\":\"myBoolean\",\"schema\":{\"type\":\"BOOLEAN\"},\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+            + "{\"name\":\"mySubDoc1\",\"schema\":{\"type\":\"STRUCT\",\"fields\":[{\"name\":\"myString\",\"schema\":{\"type\":\"STRING\"}}]}},"
+            + "{\"name\":\"myArray1\",\"schema\":{\"type\":\"ARRAY\",\"valueSchema\":{\"type\":\"STRING\"}},\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"},"
+            + "{\"name\":\"mySubDoc2\",\"schema\":{\"type\":\"MAP\",\"keySchema\":{\"type\":\"STRING\"},\"valueSchema\":{\"type\":\"INT32\"}}},"
+            + "{\"name\":\"myBytes\",\"schema\":{\"type\":\"BYTES\"},\"keyName\":\"my-demo-secret-key\",\"keyVersion\":\"987\"}"
+            + "]");
+    Struct decryptedRecord = (Struct) decrypt(decProps, encryptedRecord.schema(), encryptedRecord);
+
+    assertAll(
+        () -> assertEquals(Schema.BYTES_SCHEMA, encryptedRecord.schema().field("myInt").schema()),
+        () ->
+            assertEquals(Schema.BYTES_SCHEMA, encryptedRecord.schema().field("myArray1").schema()),
+        () -> assertEquals(byte[].class, encryptedRecord.get("myString").getClass()),
+        () -> assertEquals(byte[].class, encryptedRecord.get("mySubDoc2").getClass()),
+        () -> assertEquals(OBJ_SCHEMA_1, decryptedRecord.schema()),
+        () -> assertEquals(OBJ_STRUCT_1.get("id"), decryptedRecord.get("id")),
+        () -> assertEquals(OBJ_STRUCT_1.get("myString"), decryptedRecord.get("myString")),
+        () -> assertEquals(OBJ_STRUCT_1.get("myInt"), decryptedRecord.get("myInt")),
+        () -> assertEquals(OBJ_STRUCT_1.get("myBoolean"), decryptedRecord.get("myBoolean")),
+        () -> assertEquals(OBJ_STRUCT_1.get("mySubDoc1"), decryptedRecord.get("mySubDoc1")),
+        () -> assertEquals(OBJ_STRUCT_1.get("myArray1"), decryptedRecord.get("myArray1")),
+        () -> assertEquals(OBJ_STRUCT_1.get("mySubDoc2"), decryptedRecord.get("mySubDoc2")),
+        () ->
+            assertArrayEquals(
+                (byte[]) OBJ_STRUCT_1.get("myBytes"), (byte[]) decryptedRecord.get("myBytes")));
+  }
+
   @Test
   @DisplayName(
       "apply SMT decrypt(encrypt(plaintext)) = plaintext for schemaful record with element mode")
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LazyDecryptingMapTest {
+
+  final Map<String, Object> delegate = new LinkedHashMap<>();
+  final LazyDecryptingMap lazy = new LazyDecryptingMap(delegate);
+  final AtomicInteger decryptions = new AtomicInteger();
+
+  LazyDecryptingMapTest() {
+    delegate.put("plain", "text");
+    delegate.put("first", "ciphertext-1");
+    delegate.put("second", "ciphertext-2");
+    lazy.defer("first", decryptingTo("plaintext-1"));
+    lazy.defer("second", decryptingTo("plaintext-2"));
+  }
+
+  Supplier<Object> decryptingTo(Object value) {
+    return () -> {
+      decryptions.incrementAndGet();
+      return value;
+    };
+  }
+
+  @Test
+  @DisplayName("decrypt a field once on its first read and keep the result in the underlying map")
+  void decryptOnFirstRead() {
+    assertAll(
+        () -> assertEquals(3, lazy.size()),
+        () -> assertEquals(2, lazy.pendingCount()),
+        () -> assertEquals("text", lazy.get("plain")),
+        () -> assertEquals(0, decryptions.get()),
+        () -> assertEquals("plaintext-1", lazy.get("first")),
+        () -> assertEquals("plaintext-1", lazy.get("first")),
+        () -> assertEquals(1, decryptions.get()),
+        () -> assertEquals(1, lazy.pendingCount()),
+        () -> assertEquals("plaintext-1", delegate.get("first")),
+        () -> assertEquals("ciphertext-2", delegate.get("second")));
+  }
+
+  @Test
+  @DisplayName("decrypt the fields read while iterating and compare like a plain map")
+  void decryptWhileIterating() {
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("plain", "text");
+    expected.put("first", "plaintext-1");
+    expected.put("second", "plaintext-2");
+
+    assertAll(
+        () -> assertEquals(expected.keySet(), lazy.keySet()),
+        () -> assertEquals(0, decryptions.get()),
+        () -> assertEquals(expected, lazy),
+        () -> assertEquals(expected.hashCode(), lazy.hashCode()),
+        () -> assertEquals(2, decryptions.get()),
+        () -> assertEquals(0, lazy.pendingCount()),
+        () -> assertEquals(expected, delegate));
+  }
+
+  @Test
+  @DisplayName("drop the decryption of fields which are overwritten or removed before being read")
+  void dropDecryptionOnWrite() {
+    assertAll(
+        () -> assertEquals("ciphertext-1", lazy.put("first", "replaced")),
+        () -> assertEquals("ciphertext-2", lazy.remove("second")),
+        () -> assertEquals(0, lazy.pendingCount()),
+        () -> assertEquals("replaced", lazy.get("first")),
+        () -> assertEquals(Map.of("plain", "text", "first", "replaced"), delegate),
+        () -> assertEquals(0, decryptions.get()));
+  }
+
+  @Test
+  @DisplayName("drop the decryption of fields removed by the iterator or by clearing the map")
+  void dropDecryptionOnIteratorRemoveAndClear() {
+    Iterator<Map.Entry<String, Object>> it = lazy.entrySet().iterator();
+    it.next();
+    assertEquals("first", it.next().getKey());
+    it.remove();
+    Map.Entry<String, Object> second = it.next();
+
+    assertAll(
+        () -> assertEquals(1, lazy.pendingCount()),
+        () -> assertEquals("ciphertext-2", second.setValue("written")),
+        () -> assertEquals(Map.of("plain", "text", "second", "written"), delegate),
+        () -> assertEquals(0, decryptions.get()));
+    lazy.defer("plain", decryptingTo("never"));
+    lazy.clear();
+    assertAll(
+        () -> assertEquals(0, lazy.pendingCount()),
+        () -> assertEquals(0, delegate.size()),
+        () -> assertEquals(0, decryptions.get()));
+  }
+
+  @Test
+  @DisplayName("rethrow a failing decryption on every access and keep the ciphertext")
+  void keepFailingDecryptionPending() {
+    DataException failure = new DataException("error: decryption of field path 'first' failed");
+    lazy.defer(
+        "first",
+        () -> {
+          throw failure;
+        });
+
+    assertAll(
+        () -> assertSame(failure, assertThrows(DataException.class, () -> lazy.get("first"))),
+        () -> assertSame(failure, assertThrows(DataException.class, () -> lazy.get("first"))),
+        () -> assertThrows(DataException.class, () -> lazy.values().forEach(v -> {})),
+        () -> assertEquals(2, lazy.pendingCount()),
+        () -> assertEquals("ciphertext-1", delegate.get("first")));
+  }
+}
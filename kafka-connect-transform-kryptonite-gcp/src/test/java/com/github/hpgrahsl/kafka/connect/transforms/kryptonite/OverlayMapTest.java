@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class OverlayMapTest {
+
+  static Map<String, Integer> base() {
+    Map<String, Integer> base = new LinkedHashMap<>();
+    base.put("a", 1);
+    base.put("b", 2);
+    base.put("c", null);
+    base.put("d", 4);
+    return base;
+  }
+
+  static void assertBehavesLikeCopy(Consumer<Map<String, Integer>> operations) {
+    Map<String, Integer> base = base();
+    Map<String, Integer> overlay = new OverlayMap<>(base);
+    Map<String, Integer> copy = new LinkedHashMap<>(base);
+    operations.accept(overlay);
+    operations.accept(copy);
+    assertAll(
+        () -> assertEquals(base(), base),
+        () -> assertEquals(copy, overlay),
+        () -> assertEquals(overlay, copy),
+        () -> assertEquals(copy.hashCode(), overlay.hashCode()),
+        () -> assertEquals(copy.size(), overlay.size()),
+        () -> assertEquals(new ArrayList<>(copy.keySet()), new ArrayList<>(overlay.keySet())),
+        () -> assertEquals(new ArrayList<>(copy.values()), new ArrayList<>(overlay.values())),
+        () -> {
+          for (String key : List.of("a", "b", "c", "d", "e", "f")) {
+            assertEquals(copy.containsKey(key), overlay.containsKey(key), key);
+            assertEquals(copy.get(key), overlay.get(key), key);
+          }
+        });
+  }
+
+  @Test
+  @DisplayName("read through to the unmodified underlying map")
+  void readThrough() {
+    assertBehavesLikeCopy(map -> {});
+  }
+
+  @Test
+  @DisplayName("replace existing keys in place and append new keys in insertion order")
+  void putKeys() {
+    assertBehavesLikeCopy(
+        map -> {
+          assertEquals(2, map.put("b", 20));
+          assertNull(map.put("c", 30));
+          assertNull(map.put("f", 6));
+          assertNull(map.put("e", 5));
+          assertEquals(20, map.put("b", 200));
+          assertEquals(6, map.put("f", 60));
+        });
+  }
+
+  @Test
+  @DisplayName("remove keys of the underlying map, added keys and keys written after removal")
+  void removeKeys() {
+    assertBehavesLikeCopy(
+        map -> {
+          assertEquals(1, map.remove("a"));
+          assertNull(map.remove("a"));
+          assertNull(map.remove("c"));
+          map.put("d", 40);
+          assertEquals(40, map.remove("d"));
+          map.put("e", 5);
+          assertEquals(5, map.remove("e"));
+          map.put("a", 10);
+          assertEquals(10, map.put("a", 100));
+          assertNull(map.remove("f"));
+        });
+  }
+
+  @Test
+  @DisplayName("clear all keys and accept new ones afterwards")
+  void clearKeys() {
+    assertBehavesLikeCopy(
+        map -> {
+          map.put("e", 5);
+          map.clear();
+          assertTrue(map.isEmpty());
+          map.put("b", 2);
+          map.put("f", 6);
+        });
+  }
+
+  @Test
+  @DisplayName("write and remove entries while iterating")
+  void modifyWhileIterating() {
+    assertBehavesLikeCopy(
+        map -> {
+          map.put("e", 5);
+          map.put("f", 6);
+          for (Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+              it.hasNext(); ) {
+            Map.Entry<String, Integer> entry = it.next();
+            if (entry.getKey().equals("b") || entry.getKey().equals("e")) {
+              it.remove();
+            } else if (entry.getValue() != null) {
+              entry.setValue(entry.getValue() * 10);
+            }
+          }
+        });
+  }
+
+  @Test
+  @DisplayName("guard the iterator like the maps it stands in for")
+  void iteratorContract() {
+    Iterator<Map.Entry<String, Integer>> it = new OverlayMap<>(base()).entrySet().iterator();
+    assertThrows(IllegalStateException.class, it::remove);
+    it.next();
+    it.remove();
+    assertThrows(IllegalStateException.class, it::remove);
+    it.next();
+    it.next();
+    it.next();
+    assertFalse(it.hasNext());
+    assertThrows(NoSuchElementException.class, it::next);
+  }
+}
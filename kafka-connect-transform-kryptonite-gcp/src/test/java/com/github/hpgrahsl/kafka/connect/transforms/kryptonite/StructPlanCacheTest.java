@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.SchemaawareRecordHandler.StructPlan;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.KryoSerdeProcessor;
+import com.github.hpgrahsl.kryptonite.CipherMode;
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.key.ConfigDataKeyVault;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.transforms.util.SimpleConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class StructPlanCacheTest {
+
+  private final AtomicInteger compilations = new AtomicInteger();
+  private Function<Schema, StructPlan> compiler;
+
+  @BeforeEach
+  void setupCompiler() {
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, "ENCRYPT");
+    props.put(CipherField.FIELD_CONFIG, "[{\"name\":\"notPresent\"}]");
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+    SimpleConfig config = new SimpleConfig(CipherField.CONFIG_DEF, props);
+    Map<String, FieldConfig> fieldConfig = new HashMap<>();
+    fieldConfig.put("notPresent", new FieldConfig("notPresent", null, null, null, null));
+    FieldPlans fieldPlans =
+        new FieldPlans(
+            config, fieldConfig, new FieldMemoCaches(config, CipherMode.ENCRYPT, fieldConfig));
+    SchemaawareRecordHandler handler =
+        new SchemaawareRecordHandler(
+            config,
+            new KryoSerdeProcessor(32, -1),
+            new Kryptonite(new ConfigDataKeyVault(Collections.emptyMap())),
+            CipherMode.ENCRYPT,
+            fieldPlans,
+            null);
+    compiler =
+        schema -> {
+          compilations.incrementAndGet();
+          return handler.compile(schema, schema);
+        };
+  }
+
+  @Test
+  @DisplayName("serve plans of known schemas from the cache and count hits and misses")
+  void countHitsAndMisses() {
+    StructPlanCache cache = new StructPlanCache(16, Runnable::run);
+    Schema first = schema("first");
+    Schema second = schema("second");
+
+    StructPlan firstPlan = cache.get(first, compiler);
+    assertSame(firstPlan, cache.get(first, compiler));
+    StructPlan secondPlan = cache.get(second, compiler);
+    assertSame(firstPlan, cache.get(first, compiler));
+
+    assertAll(
+        () -> assertNotSame(firstPlan, secondPlan),
+        () -> assertEquals(2, compilations.get()),
+        () -> assertEquals(2, cache.hitCount()),
+        () -> assertEquals(2, cache.missCount()),
+        () -> assertEquals(0.5, cache.hitRate()),
+        () -> assertEquals(2, cache.estimatedSize()));
+  }
+
+  @Test
+  @DisplayName("evict plans once the cache exceeds its maximum size")
+  void evictBeyondMaxSize() {
+    int maxSize = 2;
+    StructPlanCache cache = new StructPlanCache(maxSize, Runnable::run);
+    for (int i = 0; i < 5; i++) {
+      cache.get(schema("schema" + i), compiler);
+    }
+
+    assertAll(
+        () -> assertEquals(5, compilations.get()),
+        () -> assertEquals(maxSize, cache.estimatedSize()),
+        () -> assertEquals(3, cache.evictionCount()));
+  }
+
+  @Test
+  @DisplayName("reuse the plan of an equal schema given as a different instance")
+  void reusePlanOfEqualSchemaInstance() {
+    StructPlanCache cache = new StructPlanCache(16, Runnable::run);
+    Schema schema = schema("record");
+    Schema equalSchema = schema("record");
+
+    StructPlan plan = cache.get(schema, compiler);
+
+    assertAll(
+        () -> assertNotSame(schema, equalSchema),
+        () -> assertEquals(schema, equalSchema),
+        () -> assertSame(plan, cache.get(equalSchema, compiler)),
+        () -> assertEquals(1, compilations.get()),
+        () -> assertEquals(1, cache.hitCount()),
+        () -> assertEquals(1, cache.missCount()));
+  }
+
+  private static Schema schema(String name) {
+    return SchemaBuilder.struct()
+        .name(name)
+        .field("id", Schema.STRING_SCHEMA)
+        .field("myInt", Schema.INT32_SCHEMA)
+        .field("mySubDoc", SchemaBuilder.struct().field("myString", Schema.STRING_SCHEMA).build())
+        .build();
+  }
+}
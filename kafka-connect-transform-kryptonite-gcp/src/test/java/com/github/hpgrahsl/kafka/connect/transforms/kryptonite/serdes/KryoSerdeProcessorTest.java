@@ -1,8 +1,31 @@
 package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Timestamp;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -23,4 +46,209 @@ class KryoSerdeProcessorTest {
         () -> assertEquals(small, processor.bytesToObject(processor.objectToBytes(small))),
         () -> assertEquals(large, processor.bytesToObject(processor.objectToBytes(large))));
   }
+
+  @Test
+  @DisplayName("serialize and deserialize with the registration table and read the original format")
+  void serializeAndDeserializeWithRegistrationTable() {
+    KryoSerdeProcessor legacy = new KryoSerdeProcessor(32, -1);
+    KryoSerdeProcessor table = new KryoSerdeProcessor(32, -1, true, false);
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("decimal", new BigDecimal("1234.5678"));
+    map.put("timestamp", new Date(1700000000000L));
+    map.put("array", new ArrayList<>(Arrays.asList("a", "b")));
+    List<Object> values =
+        Arrays.asList(
+            null,
+            "test",
+            42,
+            true,
+            new byte[] {1, 2, 3},
+            new BigDecimal("0.1"),
+            new Date(0L),
+            new ArrayList<>(Arrays.asList(1L, 2L, 3L)),
+            map);
+
+    for (Object value : values) {
+      byte[] tableBytes = table.objectToBytes(value);
+      byte[] legacyBytes = legacy.objectToBytes(value);
+      assertEquals(KryoInstance.REGISTRATION_TABLE_V1_TAG, tableBytes[0]);
+      assertTrue(tableBytes.length <= legacyBytes.length + 1);
+      if (value instanceof byte[]) {
+        assertAll(
+            () -> assertArrayEquals((byte[]) value, (byte[]) table.bytesToObject(tableBytes)),
+            () -> assertArrayEquals((byte[]) value, (byte[]) table.bytesToObject(legacyBytes)),
+            () -> assertArrayEquals((byte[]) value, (byte[]) legacy.bytesToObject(tableBytes)));
+      } else {
+        assertAll(
+            () -> assertEquals(value, table.bytesToObject(tableBytes)),
+            () -> assertEquals(value, table.bytesToObject(legacyBytes)),
+            () -> assertEquals(value, legacy.bytesToObject(tableBytes)));
+      }
+    }
+    assertTrue(table.objectToBytes(map).length < legacy.objectToBytes(map).length);
+  }
+
+  @Test
+  @DisplayName("reject unregistered classes if registration is required")
+  void rejectUnregisteredClassesIfRegistrationRequired() {
+    KryoSerdeProcessor lenient = new KryoSerdeProcessor(32, -1);
+    KryoSerdeProcessor strict = new KryoSerdeProcessor(32, -1, true, true);
+    TreeMap<String, String> unregistered = new TreeMap<>();
+    unregistered.put("key", "value");
+
+    byte[] bytes = lenient.objectToBytes(unregistered);
+    assertAll(
+        () -> assertEquals(unregistered, lenient.bytesToObject(bytes)),
+        () -> assertThrows(RuntimeException.class, () -> strict.bytesToObject(bytes)),
+        () -> assertThrows(RuntimeException.class, () -> strict.objectToBytes(unregistered)),
+        () -> assertEquals("test", strict.bytesToObject(lenient.objectToBytes("test"))));
+  }
+
+  @Test
+  @DisplayName("serialize structs with schema fingerprints and intern deserialized schemas")
+  void serializeAndDeserializeStructsWithSchemaFingerprints() {
+    Schema nestedSchema = SchemaBuilder.struct().field("secret", Schema.STRING_SCHEMA).build();
+    Schema schema =
+        SchemaBuilder.struct()
+            .name("my.Record")
+            .doc("some struct with a lengthy description of its purpose")
+            .field("id", Schema.INT64_SCHEMA)
+            .field("nested", nestedSchema)
+            .build();
+    Struct struct =
+        new Struct(schema)
+            .put("id", 42L)
+            .put("nested", new Struct(nestedSchema).put("secret", "my secret"));
+    Schema configuredSchema =
+        SchemaBuilder.struct()
+            .name("my.Record")
+            .doc("some struct with a lengthy description of its purpose")
+            .field("id", Schema.INT64_SCHEMA)
+            .field("nested", SchemaBuilder.struct().field("secret", Schema.STRING_SCHEMA).build())
+            .build();
+    SchemaDictionary decryptDictionary = new SchemaDictionary(8);
+    decryptDictionary.register(configuredSchema);
+
+    KryoSerdeProcessor fullSchemas = new KryoSerdeProcessor(32, -1);
+    KryoSerdeProcessor encryptFingerprints =
+        new KryoSerdeProcessor(32, -1, false, false, new SchemaDictionary(8), true);
+    KryoSerdeProcessor decryptFingerprints =
+        new KryoSerdeProcessor(32, -1, false, false, decryptDictionary, false);
+    byte[] fullSchemaBytes = fullSchemas.objectToBytes(struct);
+    byte[] fingerprintBytes = encryptFingerprints.objectToBytes(struct);
+
+    Struct restored = (Struct) decryptFingerprints.bytesToObject(fingerprintBytes);
+    assertAll(
+        () -> assertTrue(fingerprintBytes.length < fullSchemaBytes.length),
+        () -> assertEquals(struct, restored),
+        () -> assertSame(configuredSchema, restored.schema()),
+        () -> assertEquals(struct, encryptFingerprints.bytesToObject(fingerprintBytes)),
+        () ->
+            assertSame(
+                configuredSchema,
+                ((Struct) decryptFingerprints.bytesToObject(fullSchemaBytes)).schema()),
+        () ->
+            assertSame(
+                ((Struct) fullSchemas.bytesToObject(fullSchemaBytes)).schema(),
+                ((Struct) fullSchemas.bytesToObject(fullSchemaBytes)).schema()),
+        () ->
+            assertThrows(
+                RuntimeException.class,
+                () -> new KryoSerdeProcessor(32, -1).bytesToObject(fingerprintBytes)));
+  }
+
+  @Test
+  @DisplayName("fingerprint default values independently of map order and time zone")
+  void fingerprintDefaultValuesCanonically() {
+    Map<String, Integer> ab = new LinkedHashMap<>();
+    ab.put("a", 1);
+    ab.put("b", 2);
+    Map<String, Integer> ba = new LinkedHashMap<>();
+    ba.put("b", 2);
+    ba.put("a", 1);
+    Schema timestampSchema = Timestamp.builder().defaultValue(new Date(1700000000000L)).build();
+
+    TimeZone timeZone = TimeZone.getDefault();
+    long timestampFingerprint;
+    try {
+      TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+      timestampFingerprint = SchemaDictionary.computeFingerprint(timestampSchema);
+      TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Auckland"));
+      assertEquals(timestampFingerprint, SchemaDictionary.computeFingerprint(timestampSchema));
+    } finally {
+      TimeZone.setDefault(timeZone);
+    }
+
+    assertAll(
+        () ->
+            assertEquals(
+                SchemaDictionary.computeFingerprint(
+                    SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.INT32_SCHEMA)
+                        .defaultValue(ab)
+                        .build()),
+                SchemaDictionary.computeFingerprint(
+                    SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.INT32_SCHEMA)
+                        .defaultValue(ba)
+                        .build())),
+        () ->
+            assertNotEquals(
+                timestampFingerprint,
+                SchemaDictionary.computeFingerprint(
+                    Timestamp.builder().defaultValue(new Date(1700000000001L)).build())));
+  }
+
+  @Test
+  @DisplayName("serialize and deserialize concurrently with one processor shared by many tasks")
+  void serializeAndDeserializeConcurrently() throws Exception {
+    KryoSerdeProcessor processor = new KryoSerdeProcessor(32, -1);
+    int tasks = 32;
+    int valuesPerTask = 2000;
+    ExecutorService executor = Executors.newFixedThreadPool(tasks);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < tasks; t++) {
+        int task = t;
+        results.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  int roundTrips = 0;
+                  for (int i = 0; i < valuesPerTask; i++) {
+                    Object value = value(task, i);
+                    assertEquals(value, processor.bytesToObject(processor.objectToBytes(value)));
+                    roundTrips++;
+                  }
+                  return roundTrips;
+                }));
+      }
+      start.countDown();
+      int roundTrips = 0;
+      for (Future<Integer> result : results) {
+        roundTrips += result.get(60, TimeUnit.SECONDS);
+      }
+      assertEquals(tasks * valuesPerTask, roundTrips);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Object value(int task, int i) {
+    switch (i % 5) {
+      case 0:
+        return "task " + task + " value " + i;
+      case 1:
+        return (long) task * i;
+      case 2:
+        return new ArrayList<>(Arrays.asList("task", String.valueOf(task), String.valueOf(i)));
+      case 3:
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("task", task);
+        map.put("value", i);
+        return map;
+      default:
+        // exceeds the size up to which output buffers are kept for reuse
+        return i % 100 == 4 ? new String(new char[100000]).replace("\0", "x") : null;
+    }
+  }
 }
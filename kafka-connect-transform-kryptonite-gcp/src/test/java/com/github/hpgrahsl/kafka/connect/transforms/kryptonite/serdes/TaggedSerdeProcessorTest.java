@@ -0,0 +1,88 @@
+package com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TaggedSerdeProcessorTest {
+
+  @Test
+  @DisplayName("serialize and deserialize primitive and logical type values without Kryo")
+  void serializeAndDeserializeTaggedValues() {
+    KryoSerdeProcessor kryo = new KryoSerdeProcessor(32, -1);
+    TaggedSerdeProcessor processor = new TaggedSerdeProcessor(kryo);
+    List<Object> values =
+        Arrays.asList(
+            "",
+            "some foo bla text",
+            "\u00fcn\u00efc\u00f6d\u00e9 \uD83D\uDD12",
+            Long.MIN_VALUE,
+            -1L,
+            Long.MAX_VALUE,
+            Integer.MIN_VALUE,
+            0,
+            Integer.MAX_VALUE,
+            Short.MIN_VALUE,
+            Short.MAX_VALUE,
+            Byte.MIN_VALUE,
+            Byte.MAX_VALUE,
+            true,
+            false,
+            -0.0f,
+            Float.NaN,
+            3.14f,
+            Double.NEGATIVE_INFINITY,
+            2.718281828459045,
+            new BigDecimal("-12345678901234567890.123456789"),
+            new BigDecimal("1E+5"),
+            new Date(-86400000L),
+            new Date(1700000000000L),
+            new Date(1700006400000L));
+
+    for (Object value : values) {
+      byte[] bytes = processor.objectToBytes(value);
+      assertAll(
+          () -> assertTrue(TaggedValues.isTagged(bytes), "tagged " + value),
+          () -> assertEquals(value, processor.bytesToObject(bytes)),
+          () -> assertEquals(value, kryo.bytesToObject(bytes)));
+    }
+    assertAll(
+        () -> assertEquals(2, processor.objectToBytes(63L).length),
+        () -> assertEquals(1, processor.objectToBytes(true).length),
+        () -> assertEquals(2, processor.objectToBytes(new Date(0L)).length));
+  }
+
+  @Test
+  @DisplayName("serialize and deserialize bytes as raw bytes and other values with Kryo")
+  void serializeAndDeserializeRawBytesAndFallbackValues() {
+    KryoSerdeProcessor kryo = new KryoSerdeProcessor(32, -1);
+    TaggedSerdeProcessor processor = new TaggedSerdeProcessor(kryo);
+    byte[] array = {1, 2, 3};
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0, 4, 5, 6}, 1, 3);
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("key", "value");
+    List<Object> list = new ArrayList<>(Arrays.asList(1, "two", 3.0));
+
+    assertAll(
+        () ->
+            assertArrayEquals(
+                array, (byte[]) processor.bytesToObject(processor.objectToBytes(array))),
+        () -> assertEquals(buffer, processor.bytesToObject(processor.objectToBytes(buffer))),
+        () -> assertEquals(map, processor.bytesToObject(processor.objectToBytes(map))),
+        () -> assertEquals(list, processor.bytesToObject(processor.objectToBytes(list))),
+        () -> assertEquals(null, processor.bytesToObject(processor.objectToBytes(null))),
+        () -> assertEquals("test", processor.bytesToObject(kryo.objectToBytes("test"))));
+  }
+}
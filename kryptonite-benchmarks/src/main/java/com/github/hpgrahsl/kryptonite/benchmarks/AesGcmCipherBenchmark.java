@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmNoPadding;
+import com.github.hpgrahsl.kryptonite.key.ConfigDataKeyVault;
+import com.github.hpgrahsl.kryptonite.key.KeyVault;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the former per-call setup of AES-GCM ({@code Cipher.getInstance}, new {@code
+ * SecretKeySpec}, full {@code init}) against the pooled {@link AesGcmNoPadding} using prepared key
+ * handles for small plaintexts.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar AesGcmCipherBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesGcmCipherBenchmark {
+
+  private static final String IDENTIFIER = "my-demo-secret-key/versions/123";
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  @Param({"16", "32", "64"})
+  public int plaintextSize;
+
+  private byte[] keyBytes;
+  private byte[] plaintext;
+  private byte[] ciphertext;
+  private byte[] legacyCiphertext;
+  private AesGcmNoPadding aesGcm;
+  private KeyVault keyVault;
+
+  @Setup
+  public void setup() throws Exception {
+    keyBytes = new byte[32];
+    SECURE_RANDOM.nextBytes(keyBytes);
+    plaintext = new byte[plaintextSize];
+    SECURE_RANDOM.nextBytes(plaintext);
+    aesGcm = new AesGcmNoPadding();
+    keyVault = new ConfigDataKeyVault(Collections.singletonMap(IDENTIFIER, keyBytes));
+    ciphertext = aesGcm.cipher(plaintext, keyBytes);
+    legacyCiphertext = cipherPerCallSetup();
+  }
+
+  @Benchmark
+  public byte[] cipherPerCallSetup() throws Exception {
+    byte[] iv = new byte[AesGcmNoPadding.IV_LENGTH];
+    SECURE_RANDOM.nextBytes(iv);
+    Cipher cipher = Cipher.getInstance(AesGcmNoPadding.CIPHER_ALGORITHM);
+    SecretKey secretKey = new SecretKeySpec(keyBytes, AesGcmNoPadding.KEY_ALGORITHM);
+    cipher.init(
+        Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(AesGcmNoPadding.AUTH_TAG_LENGTH, iv));
+    byte[] encrypted = cipher.doFinal(plaintext);
+    ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + encrypted.length);
+    byteBuffer.put(iv);
+    byteBuffer.put(encrypted);
+    return byteBuffer.array();
+  }
+
+  @Benchmark
+  public byte[] cipherPooled() throws Exception {
+    return aesGcm.cipher(plaintext, keyVault.readKeyHandle(IDENTIFIER).getSecretKey());
+  }
+
+  @Benchmark
+  public byte[] decipherPerCallSetup() throws Exception {
+    Cipher cipher = Cipher.getInstance(AesGcmNoPadding.CIPHER_ALGORITHM);
+    SecretKey secretKey = new SecretKeySpec(keyBytes, AesGcmNoPadding.KEY_ALGORITHM);
+    cipher.init(
+        Cipher.DECRYPT_MODE,
+        secretKey,
+        new GCMParameterSpec(
+            AesGcmNoPadding.AUTH_TAG_LENGTH, legacyCiphertext, 0, AesGcmNoPadding.IV_LENGTH));
+    return cipher.doFinal(
+        legacyCiphertext,
+        AesGcmNoPadding.IV_LENGTH,
+        legacyCiphertext.length - AesGcmNoPadding.IV_LENGTH);
+  }
+
+  @Benchmark
+  public byte[] decipherPooled() throws Exception {
+    return aesGcm.decipher(ciphertext, keyVault.readKeyHandle(IDENTIFIER).getSecretKey());
+  }
+}
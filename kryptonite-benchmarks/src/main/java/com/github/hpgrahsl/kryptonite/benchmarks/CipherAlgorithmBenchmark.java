@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.crypto.CryptoAlgorithm;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the randomized AEAD ciphers AES-GCM and ChaCha20-Poly1305 across plaintext sizes, as
+ * registered in {@link Kryptonite#ID_CRYPTOALGORITHM_LUT}. Whether AES-GCM wins depends on the
+ * availability of AES and carry-less multiplication instructions, so results should be taken on the
+ * instance types in question.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar
+ * CipherAlgorithmBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherAlgorithmBenchmark {
+
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  @Param({"AES/GCM/NoPadding", "ChaCha20-Poly1305"})
+  public String cipherAlgorithm;
+
+  @Param({"16", "256", "4096", "65536"})
+  public int plaintextSize;
+
+  private CryptoAlgorithm cryptoAlgorithm;
+  private SecretKey secretKey;
+  private byte[] plaintext;
+  private byte[] ciphertext;
+
+  @Setup
+  public void setup() throws Exception {
+    cryptoAlgorithm =
+        Kryptonite.ID_CRYPTOALGORITHM_LUT.get(Kryptonite.CIPHERNAME_ID_LUT.get(cipherAlgorithm));
+    byte[] keyBytes = new byte[32];
+    SECURE_RANDOM.nextBytes(keyBytes);
+    secretKey = new SecretKeySpec(keyBytes, cryptoAlgorithm.getKeyAlgorithm());
+    plaintext = new byte[plaintextSize];
+    SECURE_RANDOM.nextBytes(plaintext);
+    ciphertext = cryptoAlgorithm.cipher(plaintext, secretKey);
+  }
+
+  @Benchmark
+  public byte[] cipher() throws Exception {
+    return cryptoAlgorithm.cipher(plaintext, secretKey);
+  }
+
+  @Benchmark
+  public byte[] decipher() throws Exception {
+    return cryptoAlgorithm.decipher(ciphertext, secretKey);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kryptonite.FieldMetaData;
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import com.github.hpgrahsl.kryptonite.key.ConfigDataKeyVault;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares encrypting and decrypting the matched fields of one record field by field against {@link
+ * Kryptonite#cipherAll(List, List)} and {@link Kryptonite#decipherAll(List, List)}, which look up
+ * every key and algorithm once per group of fields sharing them. Besides the time per record, the
+ * {@code gc} profiler's {@code gc.alloc.rate.norm} shows what the grouping itself allocates on top
+ * of the ciphertexts.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar CipherAllBenchmark
+ * -prof gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherAllBenchmark {
+
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+  private static final String KEY_NAME = "my-demo-secret-key";
+
+  @Param({"8", "32"})
+  public int fields;
+
+  /** Number of distinct data keys the fields are spread across. */
+  @Param({"1", "4"})
+  public int keys;
+
+  private Kryptonite kryptonite;
+  private List<byte[]> plainTexts;
+  private List<FieldMetaData> metadata;
+  private List<String> cipherTexts;
+
+  @Setup
+  public void setup() {
+    Map<String, byte[]> keyMap = new HashMap<>();
+    for (int k = 0; k < keys; k++) {
+      byte[] keyBytes = new byte[32];
+      SECURE_RANDOM.nextBytes(keyBytes);
+      keyMap.put(
+          String.join(FieldMetaData.IDENTIFIER_DELIMITER_DEFAULT, KEY_NAME, String.valueOf(k)),
+          keyBytes);
+    }
+    kryptonite = new Kryptonite(new ConfigDataKeyVault(keyMap));
+    plainTexts = new ArrayList<>(fields);
+    metadata = new ArrayList<>(fields);
+    for (int f = 0; f < fields; f++) {
+      byte[] plainText = new byte[16];
+      SECURE_RANDOM.nextBytes(plainText);
+      plainTexts.add(plainText);
+      metadata.add(new FieldMetaData("AES/GCM/NoPadding", "", KEY_NAME, String.valueOf(f % keys)));
+    }
+    cipherTexts = kryptonite.cipherAll(plainTexts, metadata);
+  }
+
+  @Benchmark
+  public void cipherPerField(Blackhole blackhole) {
+    for (int f = 0; f < fields; f++) {
+      blackhole.consume(kryptonite.cipher(plainTexts.get(f), metadata.get(f)));
+    }
+  }
+
+  @Benchmark
+  public List<String> cipherAll() {
+    return kryptonite.cipherAll(plainTexts, metadata);
+  }
+
+  @Benchmark
+  public void decipherPerField(Blackhole blackhole) {
+    for (int f = 0; f < fields; f++) {
+      blackhole.consume(kryptonite.decipher(cipherTexts.get(f), metadata.get(f)));
+    }
+  }
+
+  @Benchmark
+  public List<byte[]> decipherAll() {
+    return kryptonite.decipherAll(cipherTexts, metadata);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kryptonite.EnvelopeCodec;
+import com.github.hpgrahsl.kryptonite.Kryptonite;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares building and parsing ciphertext envelopes by means of {@code String.join} / {@code
+ * String.split} and the JDK's Base64 codec against {@link EnvelopeCodec}. The interesting figure is
+ * the allocation per operation, which the {@code gc} profiler reports as {@code
+ * gc.alloc.rate.norm}: the codec should allocate the resulting string or byte array only.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar EnvelopeCodecBenchmark
+ * -prof gc}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeCodecBenchmark {
+
+  private static final String KEY_VERSION = "123";
+  private static final String DELIMITER = Kryptonite.VERSION_DELIMITER_DEFAULT;
+
+  /** Sizes of AES-GCM ciphertexts (v2 layout) for 16, 64 and 256 byte plaintexts. */
+  @Param({"45", "93", "285"})
+  public int cipherTextSize;
+
+  private byte[] cipherText;
+  private String envelope;
+  private EnvelopeCodec envelopeCodec;
+
+  @Setup
+  public void setup() {
+    cipherText = new byte[cipherTextSize];
+    new Random(42).nextBytes(cipherText);
+    envelopeCodec = new EnvelopeCodec(DELIMITER);
+    envelope = envelopeCodec.encode(KEY_VERSION, cipherText);
+  }
+
+  @Benchmark
+  public String encodeJoin() {
+    return String.join(DELIMITER, KEY_VERSION, Base64.getEncoder().encodeToString(cipherText));
+  }
+
+  @Benchmark
+  public String encodeCodec() {
+    return envelopeCodec.encode(KEY_VERSION, cipherText);
+  }
+
+  @Benchmark
+  public void decodeSplit(Blackhole blackhole) {
+    String[] splitText = envelope.split(DELIMITER);
+    blackhole.consume(splitText[0]);
+    blackhole.consume(Base64.getDecoder().decode(splitText[1]));
+  }
+
+  @Benchmark
+  public void decodeCodec(Blackhole blackhole) {
+    int versionEnd = envelopeCodec.versionEnd(envelope);
+    blackhole.consume(envelopeCodec.versionMatches(envelope, versionEnd, KEY_VERSION));
+    blackhole.consume(envelopeCodec.decodePayload(envelope, versionEnd));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encrypting wide records of which only a handful of fields, one of them nested, are
+ * configured for encryption, so that the cost is dominated by matching and copying the unmatched
+ * fields. Comparing results across versions shows the effect of changes to field matching.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar FieldMatchingBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldMatchingBenchmark {
+
+  private static final String DATA_KEYS =
+      "[{\"name\":\"my-demo-secret-key\",\"version\":\"123\","
+          + "\"material\":\"YWFhYWFhYWFhYWFhYWFhYQ==\"}]";
+  private static final String FIELD_CONFIG =
+      "[{\"name\":\"field7\"},{\"name\":\"field42\"},{\"name\":\"nested\"},"
+          + "{\"name\":\"nested.secret\"}]";
+
+  @Param({"50", "500"})
+  public int fieldCount;
+
+  private Map<String, Object> schemalessValue;
+  private Struct schemaawareValue;
+  private CipherField.Value<SourceRecord> encryptTransform;
+
+  @Setup
+  public void setup() {
+    Schema nestedSchema =
+        SchemaBuilder.struct()
+            .field("secret", Schema.STRING_SCHEMA)
+            .field("plain", Schema.STRING_SCHEMA)
+            .build();
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct();
+    for (int i = 0; i < fieldCount; i++) {
+      schemaBuilder.field("field" + i, Schema.STRING_SCHEMA);
+    }
+    Schema schema = schemaBuilder.field("nested", nestedSchema).build();
+
+    schemalessValue = new LinkedHashMap<>();
+    schemaawareValue = new Struct(schema);
+    for (int i = 0; i < fieldCount; i++) {
+      schemalessValue.put("field" + i, "some foo bla text " + i);
+      schemaawareValue.put("field" + i, "some foo bla text " + i);
+    }
+    Map<String, Object> nested = new LinkedHashMap<>();
+    nested.put("secret", "my secret");
+    nested.put("plain", "my plain");
+    schemalessValue.put("nested", nested);
+    schemaawareValue.put(
+        "nested", new Struct(nestedSchema).put("secret", "my secret").put("plain", "my plain"));
+
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, "ENCRYPT");
+    props.put(CipherField.FIELD_CONFIG, FIELD_CONFIG);
+    props.put(CipherField.CIPHER_DATA_KEYS, DATA_KEYS);
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+    encryptTransform = new CipherField.Value<>();
+    encryptTransform.configure(props);
+  }
+
+  @TearDown
+  public void tearDown() {
+    encryptTransform.close();
+  }
+
+  @Benchmark
+  public SourceRecord applySchemaless() {
+    return encryptTransform.apply(
+        new SourceRecord(null, null, "some-kafka-topic", 0, null, schemalessValue));
+  }
+
+  @Benchmark
+  public SourceRecord applySchemaaware() {
+    return encryptTransform.apply(
+        new SourceRecord(
+            null, null, "some-kafka-topic", 0, schemaawareValue.schema(), schemaawareValue));
+  }
+}
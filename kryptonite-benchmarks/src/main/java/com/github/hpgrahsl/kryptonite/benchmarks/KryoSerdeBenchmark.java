@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.KryoSerdeProcessor;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.SerdeProcessor;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.serdes.TaggedSerdeProcessor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of serializing and deserializing field values with one {@link
+ * KryoSerdeProcessor} shared by all threads, as it is by the tasks of a connector sharing a
+ * transformation instance. Vary the number of threads to see how it scales. The {@code TAGGED}
+ * variant serializes strings and longs with {@link TaggedSerdeProcessor} and falls back to Kryo for
+ * maps.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar KryoSerdeBenchmark -t 8
+ * -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class KryoSerdeBenchmark {
+
+  @Param({"KRYO", "TAGGED"})
+  public String serde;
+
+  private SerdeProcessor processor;
+  private String stringValue;
+  private Long longValue;
+  private Map<String, Object> mapValue;
+  private byte[] serializedString;
+  private byte[] serializedLong;
+  private byte[] serializedMap;
+
+  @Setup
+  public void setup() {
+    KryoSerdeProcessor kryoProcessor = new KryoSerdeProcessor(32, -1);
+    processor = "TAGGED".equals(serde) ? new TaggedSerdeProcessor(kryoProcessor) : kryoProcessor;
+    stringValue = "some foo bla text";
+    longValue = 1700000000000L;
+    mapValue = new LinkedHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      mapValue.put("key" + i, "value" + i);
+    }
+    serializedString = processor.objectToBytes(stringValue);
+    serializedLong = processor.objectToBytes(longValue);
+    serializedMap = processor.objectToBytes(mapValue);
+  }
+
+  @Benchmark
+  public byte[] serializeString() {
+    return processor.objectToBytes(stringValue);
+  }
+
+  @Benchmark
+  public Object deserializeString() {
+    return processor.bytesToObject(serializedString);
+  }
+
+  @Benchmark
+  public byte[] serializeLong() {
+    return processor.objectToBytes(longValue);
+  }
+
+  @Benchmark
+  public Object deserializeLong() {
+    return processor.bytesToObject(serializedLong);
+  }
+
+  @Benchmark
+  public byte[] serializeMap() {
+    return processor.objectToBytes(mapValue);
+  }
+
+  @Benchmark
+  public Object deserializeMap() {
+    return processor.bytesToObject(serializedMap);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmNoPadding;
+import com.github.hpgrahsl.kryptonite.crypto.CipherPool;
+import com.github.hpgrahsl.kryptonite.crypto.ThreadLocalDrbgNonceGenerator;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares AES-GCM encryption under concurrency for the legacy layout (16 byte IV drawn from one
+ * shared {@link SecureRandom}) against the v2 layout (96-bit nonce) with per-thread DRBGs.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar
+ * NonceGenerationBenchmark -t 8}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class NonceGenerationBenchmark {
+
+  private static final SecureRandom SHARED_SECURE_RANDOM = new SecureRandom();
+  private static final CipherPool CIPHER_POOL = new CipherPool(AesGcmNoPadding.CIPHER_ALGORITHM);
+
+  @Param({"32"})
+  public int plaintextSize;
+
+  private byte[] plaintext;
+  private SecretKey secretKey;
+  private AesGcmNoPadding drbgAesGcm;
+
+  @Setup
+  public void setup() {
+    byte[] keyBytes = new byte[32];
+    SHARED_SECURE_RANDOM.nextBytes(keyBytes);
+    secretKey = new SecretKeySpec(keyBytes, AesGcmNoPadding.KEY_ALGORITHM);
+    plaintext = new byte[plaintextSize];
+    SHARED_SECURE_RANDOM.nextBytes(plaintext);
+    drbgAesGcm = new AesGcmNoPadding(new ThreadLocalDrbgNonceGenerator());
+  }
+
+  @Benchmark
+  public byte[] legacySharedSecureRandom() throws Exception {
+    byte[] iv = new byte[AesGcmNoPadding.IV_LENGTH];
+    SHARED_SECURE_RANDOM.nextBytes(iv);
+    Cipher cipher = CIPHER_POOL.get();
+    cipher.init(
+        Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(AesGcmNoPadding.AUTH_TAG_LENGTH, iv));
+    byte[] ciphertext = new byte[iv.length + cipher.getOutputSize(plaintext.length)];
+    System.arraycopy(iv, 0, ciphertext, 0, iv.length);
+    cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, iv.length);
+    return ciphertext;
+  }
+
+  @Benchmark
+  public byte[] v2ThreadLocalDrbg() throws Exception {
+    return drbgAesGcm.cipher(plaintext, secretKey);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encrypting 3 fields of large schemaless records with each {@link
+ * CipherField.SchemalessValueMode}. Run it with {@code -prof gc} to compare the allocation rates,
+ * which for COPY are dominated by copying the record's map.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar
+ * SchemalessValueBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemalessValueBenchmark {
+
+  private static final String DATA_KEYS =
+      "[{\"name\":\"my-demo-secret-key\",\"version\":\"123\","
+          + "\"material\":\"YWFhYWFhYWFhYWFhYWFhYQ==\"}]";
+  private static final String FIELD_CONFIG =
+      "[{\"name\":\"field7\"},{\"name\":\"field42\"},{\"name\":\"field1000\"}]";
+
+  @Param({"COPY", "OVERLAY", "IN_PLACE"})
+  public String valueMode;
+
+  @Param({"2500"})
+  public int fieldCount;
+
+  private Map<String, Object> value;
+  private CipherField.Value<SourceRecord> encryptTransform;
+
+  @Setup
+  public void setup() {
+    value = new LinkedHashMap<>();
+    for (int i = 0; i < fieldCount; i++) {
+      value.put("field" + i, "some foo bla text " + i);
+    }
+
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, "ENCRYPT");
+    props.put(CipherField.FIELD_CONFIG, FIELD_CONFIG);
+    props.put(CipherField.CIPHER_DATA_KEYS, DATA_KEYS);
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+    props.put(CipherField.SCHEMALESS_VALUE_MODE, valueMode);
+    encryptTransform = new CipherField.Value<>();
+    encryptTransform.configure(props);
+  }
+
+  @TearDown
+  public void tearDown() {
+    encryptTransform.close();
+  }
+
+  @Benchmark
+  public SourceRecord apply() {
+    SourceRecord encrypted =
+        encryptTransform.apply(new SourceRecord(null, null, "some-kafka-topic", 0, null, value));
+    // IN_PLACE encrypts the fields of the shared map, so restore them for the next invocation
+    value.put("field7", "some foo bla text 7");
+    value.put("field42", "some foo bla text 42");
+    value.put("field1000", "some foo bla text 1000");
+    return encrypted;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmNoPadding;
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmSegmented;
+import com.github.hpgrahsl.kryptonite.crypto.CryptoAlgorithm;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares AES-GCM over the whole value against segmented AES-GCM, sequentially and with the
+ * segments spread across all available cores, for multi-megabyte values.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar
+ * SegmentedCipherBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentedCipherBenchmark {
+
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  @Param({"WHOLE", "SEGMENTED", "SEGMENTED_PARALLEL"})
+  public String variant;
+
+  @Param({"1048576", "20971520"})
+  public int plaintextSize;
+
+  private ForkJoinPool forkJoinPool;
+  private CryptoAlgorithm cryptoAlgorithm;
+  private SecretKey secretKey;
+  private byte[] plaintext;
+  private byte[] ciphertext;
+
+  @Setup
+  public void setup() throws Exception {
+    switch (variant) {
+      case "WHOLE":
+        cryptoAlgorithm = new AesGcmNoPadding();
+        break;
+      case "SEGMENTED":
+        cryptoAlgorithm = new AesGcmSegmented();
+        break;
+      default:
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        cryptoAlgorithm =
+            new AesGcmSegmented(AesGcmSegmented.SEGMENT_SIZE_DEFAULT, null, forkJoinPool);
+    }
+    byte[] keyBytes = new byte[16];
+    SECURE_RANDOM.nextBytes(keyBytes);
+    secretKey = new SecretKeySpec(keyBytes, cryptoAlgorithm.getKeyAlgorithm());
+    plaintext = new byte[plaintextSize];
+    SECURE_RANDOM.nextBytes(plaintext);
+    ciphertext = cryptoAlgorithm.cipher(plaintext, secretKey);
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (forkJoinPool != null) {
+      forkJoinPool.shutdown();
+    }
+  }
+
+  @Benchmark
+  public byte[] cipher() throws Exception {
+    return cryptoAlgorithm.cipher(plaintext, secretKey);
+  }
+
+  @Benchmark
+  public byte[] decipher() throws Exception {
+    return cryptoAlgorithm.decipher(ciphertext, secretKey);
+  }
+}
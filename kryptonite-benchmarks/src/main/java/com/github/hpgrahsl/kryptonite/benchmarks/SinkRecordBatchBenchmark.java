@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.benchmarks;
+
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.CipherField;
+import com.github.hpgrahsl.kafka.connect.transforms.kryptonite.SinkRecordBatchProcessor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares decrypting a batch of schemaless sink records one by one through the SMT, i.e. the way
+ * Kafka Connect applies it on the task thread, against {@link SinkRecordBatchProcessor} fanning the
+ * same batch out across all available cores.
+ *
+ * <p>Run with: {@code java -jar kryptonite-benchmarks/target/benchmarks.jar
+ * SinkRecordBatchBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SinkRecordBatchBenchmark {
+
+  private static final String DATA_KEYS =
+      "[{\"name\":\"my-demo-secret-key\",\"version\":\"123\","
+          + "\"material\":\"YWFhYWFhYWFhYWFhYWFhYQ==\"}]";
+  private static final String FIELD_CONFIG =
+      "[{\"name\":\"id\"},{\"name\":\"myString\"},{\"name\":\"myInt\"}]";
+
+  @Param({"50", "500"})
+  public int batchSize;
+
+  private List<SinkRecord> encryptedRecords;
+  private CipherField.Value<SinkRecord> decryptTransform;
+  private SinkRecordBatchProcessor batchProcessor;
+
+  @Setup
+  public void setup() {
+    CipherField.Value<SinkRecord> encryptTransform = new CipherField.Value<>();
+    encryptTransform.configure(props("ENCRYPT"));
+    encryptedRecords = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      Map<String, Object> record = new HashMap<>();
+      record.put("id", "id_" + i);
+      record.put("myString", "some foo bla text " + i);
+      record.put("myInt", i);
+      encryptedRecords.add(
+          encryptTransform.apply(
+              new SinkRecord("some-kafka-topic", 0, null, null, null, record, i)));
+    }
+    encryptTransform.close();
+    decryptTransform = new CipherField.Value<>();
+    decryptTransform.configure(props("DECRYPT"));
+    batchProcessor = new SinkRecordBatchProcessor(decryptTransform);
+  }
+
+  @TearDown
+  public void tearDown() {
+    batchProcessor.close();
+    decryptTransform.close();
+  }
+
+  @Benchmark
+  public List<SinkRecord> applySequential() {
+    List<SinkRecord> decryptedRecords = new ArrayList<>(encryptedRecords.size());
+    for (SinkRecord record : encryptedRecords) {
+      decryptedRecords.add(decryptTransform.apply(record));
+    }
+    return decryptedRecords;
+  }
+
+  @Benchmark
+  public List<SinkRecord> applyBatchProcessor() {
+    return batchProcessor.apply(encryptedRecords);
+  }
+
+  private static Map<String, Object> props(String cipherMode) {
+    Map<String, Object> props = new HashMap<>();
+    props.put(CipherField.CIPHER_MODE, cipherMode);
+    props.put(CipherField.FIELD_CONFIG, FIELD_CONFIG);
+    props.put(CipherField.CIPHER_DATA_KEYS, DATA_KEYS);
+    props.put(CipherField.CIPHER_DATA_KEY_NAME, "my-demo-secret-key");
+    props.put(CipherField.CIPHER_DATA_KEY_VERSION, "123");
+    return props;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.hpgrahsl.kryptonite;
+
+public enum CipherEncoding {
+  BASE64("base64"),
+  RAW("raw");
+
+  private final String name;
+
+  CipherEncoding(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public static CipherEncoding forName(String name) {
+    for (CipherEncoding encoding : values()) {
+      if (encoding.name.equals(name)) {
+        return encoding;
+      }
+    }
+    throw new IllegalArgumentException("unsupported cipher text encoding '" + name + "'");
+  }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encodes and parses ciphertext envelopes, i.e. the key version, the delimiter and the Base64
+ * encoded ciphertext for the {@code base64} encoding or a length prefixed key version followed by
+ * the ciphertext bytes for the {@code raw} encoding.
+ *
+ * <p>Base64 envelopes are written into a single per-thread scratch buffer which is then turned into
+ * the resulting string, and parsed by scanning indexes of the envelope string, so that neither
+ * direction creates intermediate strings or arrays apart from the result itself.
+ *
+ * <p>Instead of the key version, envelopes may start with a 6 byte key id header: the header
+ * format, the algorithm id and the big-endian 32-bit key id. Base64 envelopes then consist of the
+ * delimiter twice followed by {@code base64(header + cipherText)}, which no key version envelope
+ * can start with since those contain exactly one delimiter, not even one with an empty key version.
+ * Raw envelopes consist of the length byte {@code 0xFF}, which exceeds the maximum key version
+ * length, followed by the header and the ciphertext bytes. Parsed headers are handed out packed
+ * into a {@code long}, see {@link #keyId(long)} and {@link #algorithmId(long)}.
+ */
+public final class EnvelopeCodec {
+
+  public static final int MAX_RAW_KEY_VERSION_LENGTH = 254;
+  public static final int KEY_ID_HEADER_LENGTH = 6;
+  public static final int KEY_ID_HEADER_FORMAT = 0x01;
+
+  private static final byte[] BASE64_ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+          .getBytes(StandardCharsets.US_ASCII);
+  private static final int[] BASE64_VALUES = new int[128];
+  private static final int MAX_LATIN1_CHAR = 0xFF;
+  private static final int RAW_KEY_ID_MARKER = 0xFF;
+  private static final int KEY_ID_HEADER_BASE64_LENGTH = 4 * KEY_ID_HEADER_LENGTH / 3;
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+  private static final ThreadLocal<byte[]> ENCODE_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[256]);
+
+  static {
+    Arrays.fill(BASE64_VALUES, -1);
+    for (int i = 0; i < BASE64_ALPHABET.length; i++) {
+      BASE64_VALUES[BASE64_ALPHABET[i]] = i;
+    }
+  }
+
+  private final String delimiter;
+  private final boolean latin1Delimiter;
+
+  public EnvelopeCodec(String delimiter) {
+    if (delimiter == null || delimiter.isEmpty()) {
+      throw new IllegalArgumentException("envelope delimiter must not be empty");
+    }
+    this.delimiter = delimiter;
+    this.latin1Delimiter = isLatin1(delimiter);
+  }
+
+  public String getDelimiter() {
+    return delimiter;
+  }
+
+  /**
+   * Returns the envelope {@code keyVersion + delimiter + base64(cipherText)}.
+   *
+   * @throws DataException if the key version contains the delimiter
+   */
+  public String encode(String keyVersion, byte[] cipherText) {
+    return encode(keyVersion, cipherText, 0, cipherText.length);
+  }
+
+  /** Like {@link #encode(String, byte[])} for the ciphertext in the given range of the array. */
+  public String encode(String keyVersion, byte[] cipherText, int offset, int cipherTextLength) {
+    if (keyVersion.contains(delimiter)) {
+      throw new DataException("key version must not contain the envelope delimiter " + delimiter);
+    }
+    if (!latin1Delimiter || !isLatin1(keyVersion)) {
+      return keyVersion + delimiter + base64(cipherText, offset, cipherTextLength);
+    }
+    int length = keyVersion.length() + delimiter.length() + 4 * ((cipherTextLength + 2) / 3);
+    byte[] buffer = encodeBuffer(length);
+    int pos = writeLatin1(keyVersion, buffer, 0);
+    pos = writeLatin1(delimiter, buffer, pos);
+    writeBase64(cipherText, offset, cipherTextLength, buffer, pos);
+    return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Returns the envelope {@code delimiter + delimiter + base64(header + cipherText)} with a key id
+   * header for the given key id and algorithm id.
+   */
+  public String encodeKeyId(int keyId, int algorithmId, byte[] cipherText) {
+    return encodeKeyId(keyId, algorithmId, cipherText, 0, cipherText.length);
+  }
+
+  /**
+   * Like {@link #encodeKeyId(int, int, byte[])} for the ciphertext in the given range of the array.
+   */
+  public String encodeKeyId(
+      int keyId, int algorithmId, byte[] cipherText, int offset, int cipherTextLength) {
+    if (!latin1Delimiter) {
+      byte[] headed = new byte[KEY_ID_HEADER_LENGTH + cipherTextLength];
+      writeKeyIdHeader(keyId, algorithmId, headed, 0);
+      System.arraycopy(cipherText, offset, headed, KEY_ID_HEADER_LENGTH, cipherTextLength);
+      return delimiter + delimiter + Base64.getEncoder().encodeToString(headed);
+    }
+    int length =
+        2 * delimiter.length() + KEY_ID_HEADER_BASE64_LENGTH + 4 * ((cipherTextLength + 2) / 3);
+    byte[] buffer = encodeBuffer(length);
+    int pos = writeLatin1(delimiter, buffer, 0);
+    pos = writeLatin1(delimiter, buffer, pos);
+    pos =
+        writeBase64Group(KEY_ID_HEADER_FORMAT << 16 | algorithmId << 8 | keyId >>> 24, buffer, pos);
+    pos = writeBase64Group(keyId & 0xFFFFFF, buffer, pos);
+    writeBase64(cipherText, offset, cipherTextLength, buffer, pos);
+    return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Returns the index at which the delimiter following the key version starts or -1 if the envelope
+   * carries no key version. Envelopes with a key id header must be told apart by {@link
+   * #hasKeyIdHeader(String)} beforehand.
+   *
+   * @throws DataException if the envelope contains more than one delimiter
+   */
+  public int versionEnd(String envelope) {
+    int versionEnd = envelope.indexOf(delimiter);
+    if (versionEnd >= 0 && envelope.indexOf(delimiter, versionEnd + delimiter.length()) >= 0) {
+      throw new DataException("Illegal cipher text format.");
+    }
+    return versionEnd;
+  }
+
+  /** Whether the key version of the envelope equals the given one, without extracting it. */
+  public boolean versionMatches(String envelope, int versionEnd, String keyVersion) {
+    return versionEnd == keyVersion.length() && envelope.startsWith(keyVersion);
+  }
+
+  public String version(String envelope, int versionEnd) {
+    return envelope.substring(0, versionEnd);
+  }
+
+  /** Whether the envelope starts with a key id header, i.e. with the delimiter twice. */
+  public boolean hasKeyIdHeader(String envelope) {
+    return envelope.startsWith(delimiter) && envelope.startsWith(delimiter, delimiter.length());
+  }
+
+  /**
+   * Parses the key id header of the given envelope.
+   *
+   * @throws DataException if the envelope is truncated or the header format is unsupported
+   */
+  public long keyIdHeader(String envelope) {
+    int start = 2 * delimiter.length();
+    if (envelope.length() < start + KEY_ID_HEADER_BASE64_LENGTH) {
+      throw new DataException("Illegal cipher text format.");
+    }
+    int high = base64Group(envelope, start);
+    int low = base64Group(envelope, start + 4);
+    return keyIdHeader(high >>> 16, (high >>> 8) & 0xFF, (high & 0xFF) << 24 | low);
+  }
+
+  /** Decodes the Base64 ciphertext which follows the key id header of the envelope. */
+  public byte[] decodeKeyIdPayload(String envelope) {
+    return decodeBase64(envelope, 2 * delimiter.length() + KEY_ID_HEADER_BASE64_LENGTH);
+  }
+
+  /**
+   * Decodes the Base64 payload which follows the key version of the envelope.
+   *
+   * @throws IllegalArgumentException if the payload is not valid Base64
+   */
+  public byte[] decodePayload(String envelope, int versionEnd) {
+    return decodeBase64(envelope, versionEnd < 0 ? 0 : versionEnd + delimiter.length());
+  }
+
+  private static byte[] decodeBase64(String envelope, int start) {
+    int end = envelope.length();
+    if (end - start >= 1 && envelope.charAt(end - 1) == '=') {
+      end--;
+      if (end - start >= 1 && envelope.charAt(end - 1) == '=') {
+        end--;
+      }
+    }
+    int chars = end - start;
+    if (chars % 4 == 1) {
+      throw new IllegalArgumentException("Last unit does not have enough valid bits");
+    }
+    byte[] decoded = new byte[chars / 4 * 3 + Math.max(0, chars % 4 - 1)];
+    int pos = 0;
+    int i = start;
+    for (; i + 4 <= end; i += 4) {
+      int bits = base64Group(envelope, i);
+      decoded[pos++] = (byte) (bits >> 16);
+      decoded[pos++] = (byte) (bits >> 8);
+      decoded[pos++] = (byte) bits;
+    }
+    if (end - i == 2) {
+      int bits = base64Value(envelope, i) << 18 | base64Value(envelope, i + 1) << 12;
+      decoded[pos] = (byte) (bits >> 16);
+    } else if (end - i == 3) {
+      int bits =
+          base64Value(envelope, i) << 18
+              | base64Value(envelope, i + 1) << 12
+              | base64Value(envelope, i + 2) << 6;
+      decoded[pos++] = (byte) (bits >> 16);
+      decoded[pos] = (byte) (bits >> 8);
+    }
+    return decoded;
+  }
+
+  /** Returns the raw envelope holding the length prefixed key version and the ciphertext. */
+  public byte[] encodeRaw(String keyVersion, byte[] cipherText) {
+    return encodeRaw(keyVersion, cipherText, 0, cipherText.length);
+  }
+
+  /** Like {@link #encodeRaw(String, byte[])} for the ciphertext in the given range of the array. */
+  public byte[] encodeRaw(String keyVersion, byte[] cipherText, int offset, int cipherTextLength) {
+    byte[] version = keyVersion.getBytes(StandardCharsets.UTF_8);
+    if (version.length > MAX_RAW_KEY_VERSION_LENGTH) {
+      throw new DataException(
+          "key version must not exceed " + MAX_RAW_KEY_VERSION_LENGTH + " bytes for raw encoding");
+    }
+    byte[] envelope = new byte[1 + version.length + cipherTextLength];
+    envelope[0] = (byte) version.length;
+    System.arraycopy(version, 0, envelope, 1, version.length);
+    System.arraycopy(cipherText, offset, envelope, 1 + version.length, cipherTextLength);
+    return envelope;
+  }
+
+  /**
+   * Returns the length of the key version of the given raw envelope, 0 meaning that it carries no
+   * key version.
+   *
+   * @throws DataException if the envelope is truncated
+   */
+  public int rawVersionLength(byte[] envelope) {
+    if (envelope.length == 0 || 1 + (envelope[0] & 0xFF) > envelope.length) {
+      throw new DataException("Illegal cipher text format.");
+    }
+    return envelope[0] & 0xFF;
+  }
+
+  /** Whether the key version of the raw envelope equals the given one, without extracting it. */
+  public boolean rawVersionMatches(byte[] envelope, int versionLength, String keyVersion) {
+    if (versionLength != keyVersion.length()) {
+      return false;
+    }
+    for (int i = 0; i < versionLength; i++) {
+      if (keyVersion.charAt(i) >= 0x80 || envelope[1 + i] != keyVersion.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String rawVersion(byte[] envelope, int versionLength) {
+    return new String(envelope, 1, versionLength, StandardCharsets.UTF_8);
+  }
+
+  public byte[] rawPayload(byte[] envelope, int versionLength) {
+    return Arrays.copyOfRange(envelope, 1 + versionLength, envelope.length);
+  }
+
+  /** Returns the raw envelope holding the marker byte, the key id header and the ciphertext. */
+  public byte[] encodeRawKeyId(int keyId, int algorithmId, byte[] cipherText) {
+    return encodeRawKeyId(keyId, algorithmId, cipherText, 0, cipherText.length);
+  }
+
+  /**
+   * Like {@link #encodeRawKeyId(int, int, byte[])} for the ciphertext in the given range of the
+   * array.
+   */
+  public byte[] encodeRawKeyId(
+      int keyId, int algorithmId, byte[] cipherText, int offset, int cipherTextLength) {
+    byte[] envelope = new byte[1 + KEY_ID_HEADER_LENGTH + cipherTextLength];
+    envelope[0] = (byte) RAW_KEY_ID_MARKER;
+    writeKeyIdHeader(keyId, algorithmId, envelope, 1);
+    System.arraycopy(cipherText, offset, envelope, 1 + KEY_ID_HEADER_LENGTH, cipherTextLength);
+    return envelope;
+  }
+
+  public boolean rawHasKeyIdHeader(byte[] envelope) {
+    return envelope.length > 0 && (envelope[0] & 0xFF) == RAW_KEY_ID_MARKER;
+  }
+
+  /**
+   * Parses the key id header of the given raw envelope.
+   *
+   * @throws DataException if the envelope is truncated or the header format is unsupported
+   */
+  public long rawKeyIdHeader(byte[] envelope) {
+    if (envelope.length < 1 + KEY_ID_HEADER_LENGTH) {
+      throw new DataException("Illegal cipher text format.");
+    }
+    return keyIdHeader(
+        envelope[1] & 0xFF,
+        envelope[2] & 0xFF,
+        (envelope[3] & 0xFF) << 24
+            | (envelope[4] & 0xFF) << 16
+            | (envelope[5] & 0xFF) << 8
+            | (envelope[6] & 0xFF));
+  }
+
+  public byte[] rawKeyIdPayload(byte[] envelope) {
+    return Arrays.copyOfRange(envelope, 1 + KEY_ID_HEADER_LENGTH, envelope.length);
+  }
+
+  public static int keyId(long keyIdHeader) {
+    return (int) keyIdHeader;
+  }
+
+  public static int algorithmId(long keyIdHeader) {
+    return (int) (keyIdHeader >>> 32);
+  }
+
+  private static long keyIdHeader(int format, int algorithmId, int keyId) {
+    if (format != KEY_ID_HEADER_FORMAT) {
+      throw new DataException("unsupported envelope header format " + format);
+    }
+    return (long) algorithmId << 32 | (keyId & 0xFFFFFFFFL);
+  }
+
+  private static void writeKeyIdHeader(int keyId, int algorithmId, byte[] target, int pos) {
+    target[pos] = (byte) KEY_ID_HEADER_FORMAT;
+    target[pos + 1] = (byte) algorithmId;
+    target[pos + 2] = (byte) (keyId >>> 24);
+    target[pos + 3] = (byte) (keyId >>> 16);
+    target[pos + 4] = (byte) (keyId >>> 8);
+    target[pos + 5] = (byte) keyId;
+  }
+
+  private static byte[] encodeBuffer(int length) {
+    byte[] buffer = ENCODE_BUFFER.get();
+    if (buffer.length < length) {
+      buffer = new byte[Math.max(length, buffer.length * 2)];
+      if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+        ENCODE_BUFFER.set(buffer);
+      }
+    }
+    return buffer;
+  }
+
+  private static boolean isLatin1(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) > MAX_LATIN1_CHAR) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int writeLatin1(String value, byte[] buffer, int pos) {
+    for (int i = 0; i < value.length(); i++) {
+      buffer[pos++] = (byte) value.charAt(i);
+    }
+    return pos;
+  }
+
+  private static int writeBase64Group(int bits, byte[] buffer, int pos) {
+    buffer[pos++] = BASE64_ALPHABET[bits >>> 18];
+    buffer[pos++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+    buffer[pos++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+    buffer[pos++] = BASE64_ALPHABET[bits & 0x3F];
+    return pos;
+  }
+
+  private static String base64(byte[] src, int offset, int length) {
+    return offset == 0 && length == src.length
+        ? Base64.getEncoder().encodeToString(src)
+        : Base64.getEncoder().encodeToString(Arrays.copyOfRange(src, offset, offset + length));
+  }
+
+  private static void writeBase64(byte[] src, int offset, int length, byte[] buffer, int pos) {
+    int i = offset;
+    int end = offset + length;
+    int full = end - length % 3;
+    for (; i < full; i += 3) {
+      pos =
+          writeBase64Group(
+              (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF), buffer, pos);
+    }
+    int remaining = end - full;
+    if (remaining > 0) {
+      int bits = (src[i] & 0xFF) << 16 | (remaining == 2 ? (src[i + 1] & 0xFF) << 8 : 0);
+      buffer[pos++] = BASE64_ALPHABET[bits >>> 18];
+      buffer[pos++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+      buffer[pos++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+      buffer[pos] = (byte) '=';
+    }
+  }
+
+  private static int base64Group(String envelope, int index) {
+    return base64Value(envelope, index) << 18
+        | base64Value(envelope, index + 1) << 12
+        | base64Value(envelope, index + 2) << 6
+        | base64Value(envelope, index + 3);
+  }
+
+  private static int base64Value(String envelope, int index) {
+    char c = envelope.charAt(index);
+    int value = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+    if (value < 0) {
+      throw new IllegalArgumentException(
+          "Illegal base64 character " + Integer.toString(c, 16) + " at index " + index);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite;
+
+/**
+ * How ciphertext envelopes refer to the key they were encrypted with: by the key version string or
+ * by a fixed-width binary header holding the numeric key id and the algorithm id.
+ */
+public enum EnvelopeHeader {
+  KEY_VERSION("key_version"),
+  KEY_ID("key_id");
+
+  private final String name;
+
+  EnvelopeHeader(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public static EnvelopeHeader forName(String name) {
+    for (EnvelopeHeader header : values()) {
+      if (header.name.equals(name)) {
+        return header;
+      }
+    }
+    throw new IllegalArgumentException("unsupported envelope header '" + name + "'");
+  }
+}
@@ -21,10 +21,12 @@ public class FieldMetaData {
   public static final String IDENTIFIER_DELIMITER_DEFAULT = "/versions/";
 
   private final String algorithm;
+  private final String algorithmId;
   private final String dataType;
   private final String keyName;
   private final String keyVersion;
   private final String delimiter;
+  private final String identifier;
 
   public FieldMetaData(String algorithm, String dataType, String keyName, String keyVersion) {
     this(algorithm, dataType, keyName, keyVersion, IDENTIFIER_DELIMITER_DEFAULT);
@@ -33,10 +35,12 @@ public class FieldMetaData {
   public FieldMetaData(
       String algorithm, String dataType, String keyName, String keyVersion, String delimiter) {
     this.algorithm = algorithm;
+    this.algorithmId = Kryptonite.CIPHERNAME_ID_LUT.get(algorithm);
     this.dataType = dataType;
     this.keyName = keyName;
     this.keyVersion = keyVersion;
     this.delimiter = delimiter;
+    this.identifier = String.join(delimiter, keyName, keyVersion);
   }
 
   public String getAlgorithm() {
@@ -44,7 +48,7 @@ public class FieldMetaData {
   }
 
   public String getAlgorithmId() {
-    return Kryptonite.CIPHERNAME_ID_LUT.get(algorithm);
+    return algorithmId;
   }
 
   public String getDataType() {
@@ -64,7 +68,7 @@ public class FieldMetaData {
   }
 
   public String getIdentifier() {
-    return String.join(delimiter, keyName, keyVersion);
+    return identifier;
   }
 
   public String getIdentifier(String keyVersion) {
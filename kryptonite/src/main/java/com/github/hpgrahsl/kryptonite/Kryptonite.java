@@ -16,12 +16,26 @@
 
 package com.github.hpgrahsl.kryptonite;
 
+import com.github.hpgrahsl.kryptonite.cache.EncryptionMemoCache;
 import com.github.hpgrahsl.kryptonite.crypto.AesGcmNoPadding;
+import com.github.hpgrahsl.kryptonite.crypto.AesGcmSegmented;
+import com.github.hpgrahsl.kryptonite.crypto.AesSivNoPadding;
+import com.github.hpgrahsl.kryptonite.crypto.ChaCha20Poly1305;
+import com.github.hpgrahsl.kryptonite.crypto.CipherProviderRegistry;
 import com.github.hpgrahsl.kryptonite.crypto.CryptoAlgorithm;
+import com.github.hpgrahsl.kryptonite.crypto.NonceGenerator;
+import com.github.hpgrahsl.kryptonite.key.KeyHandle;
 import com.github.hpgrahsl.kryptonite.key.KeyVault;
-import java.util.Base64;
+import java.nio.ByteBuffer;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
 
 public class Kryptonite {
 
@@ -32,6 +46,9 @@ public class Kryptonite {
       new LinkedHashMap<String, String>() {
         {
           put("AES/GCM/NoPadding", "01");
+          put("AES/SIV/NoPadding", "02");
+          put("ChaCha20-Poly1305", "03");
+          put("AES/GCM-SEGMENTED/NoPadding", "04");
         }
       };
 
@@ -40,11 +57,26 @@ public class Kryptonite {
       new LinkedHashMap<String, CryptoAlgorithm>() {
         {
           put("01", new AesGcmNoPadding());
+          put("02", new AesSivNoPadding());
+          put("03", new ChaCha20Poly1305());
+          put("04", new AesGcmSegmented());
         }
       };
 
+  private static final String SEGMENTED_ALGORITHM_ID = "04";
+  private static final int MAX_RETAINED_CIPHER_TEXT_BUFFER_SIZE = 64 * 1024;
+  // holds the buffer while it isn't borrowed, which keeps nested use on the same thread safe
+  private static final ThreadLocal<ByteBuffer[]> CIPHER_TEXT_BUFFER =
+      ThreadLocal.withInitial(() -> new ByteBuffer[1]);
+
   private final KeyVault keyVault;
-  private final String delimiter;
+  private final EnvelopeCodec envelopeCodec;
+  private final EnvelopeHeader envelopeHeader;
+  private final Map<String, CryptoAlgorithm> cryptoAlgorithms;
+  private final CryptoAlgorithm[] cryptoAlgorithmsByNumericId;
+  private final AesGcmNoPadding aesGcmCipher;
+  private final AesGcmSegmented segmentedCipher;
+  private final int segmentThreshold;
 
   public Kryptonite(KeyVault keyVault) {
     this(keyVault, VERSION_DELIMITER_DEFAULT);
@@ -52,47 +84,550 @@ public class Kryptonite {
 
   public Kryptonite(KeyVault keyVault, String delimiter) {
     this.keyVault = keyVault;
-    this.delimiter = delimiter;
+    this.envelopeCodec = new EnvelopeCodec(delimiter);
+    this.envelopeHeader = EnvelopeHeader.KEY_VERSION;
+    this.cryptoAlgorithms = ID_CRYPTOALGORITHM_LUT;
+    this.cryptoAlgorithmsByNumericId = byNumericId(cryptoAlgorithms);
+    this.aesGcmCipher =
+        (AesGcmNoPadding)
+            cryptoAlgorithms.get(CIPHERNAME_ID_LUT.get(AesGcmNoPadding.CIPHER_ALGORITHM));
+    this.segmentedCipher = (AesGcmSegmented) cryptoAlgorithms.get(SEGMENTED_ALGORITHM_ID);
+    this.segmentThreshold = 0;
+  }
+
+  public Kryptonite(KeyVault keyVault, NonceGenerator nonceGenerator) {
+    this(keyVault, VERSION_DELIMITER_DEFAULT, nonceGenerator);
+  }
+
+  public Kryptonite(KeyVault keyVault, String delimiter, NonceGenerator nonceGenerator) {
+    this(keyVault, delimiter, nonceGenerator, EnvelopeHeader.KEY_VERSION);
+  }
+
+  /**
+   * @param envelopeHeader whether envelopes written by this instance refer to their key by key
+   *     version or by key id header, envelopes of either kind can always be decrypted
+   */
+  public Kryptonite(
+      KeyVault keyVault,
+      String delimiter,
+      NonceGenerator nonceGenerator,
+      EnvelopeHeader envelopeHeader) {
+    this(keyVault, delimiter, nonceGenerator, envelopeHeader, null);
+  }
+
+  /**
+   * @param cipherProvider the JCE provider backing AES-GCM, e.g. as selected by {@link
+   *     CipherProviderRegistry}, or null for the JCE default
+   */
+  public Kryptonite(
+      KeyVault keyVault,
+      String delimiter,
+      NonceGenerator nonceGenerator,
+      EnvelopeHeader envelopeHeader,
+      Provider cipherProvider) {
+    this(
+        keyVault,
+        delimiter,
+        nonceGenerator,
+        envelopeHeader,
+        cipherProvider,
+        new AesGcmSegmented(AesGcmSegmented.SEGMENT_SIZE_DEFAULT, cipherProvider, null),
+        0);
+  }
+
+  /**
+   * @param segmentedCipher the segmented AES-GCM instance used for values reaching the segment
+   *     threshold as well as for fields configured with it explicitly
+   * @param segmentThreshold the plaintext size in bytes from which on values of fields configured
+   *     with AES-GCM are encrypted with the segmented cipher instead, 0 to disable it
+   */
+  public Kryptonite(
+      KeyVault keyVault,
+      String delimiter,
+      NonceGenerator nonceGenerator,
+      EnvelopeHeader envelopeHeader,
+      Provider cipherProvider,
+      AesGcmSegmented segmentedCipher,
+      int segmentThreshold) {
+    this.keyVault = keyVault;
+    this.envelopeCodec = new EnvelopeCodec(delimiter);
+    this.envelopeHeader = envelopeHeader;
+    this.cryptoAlgorithms = new LinkedHashMap<>(ID_CRYPTOALGORITHM_LUT);
+    this.aesGcmCipher = new AesGcmNoPadding(nonceGenerator, cipherProvider);
+    this.cryptoAlgorithms.put(
+        CIPHERNAME_ID_LUT.get(AesGcmNoPadding.CIPHER_ALGORITHM), aesGcmCipher);
+    this.cryptoAlgorithms.put(
+        CIPHERNAME_ID_LUT.get(ChaCha20Poly1305.CIPHER_ALGORITHM),
+        new ChaCha20Poly1305(nonceGenerator));
+    this.cryptoAlgorithms.put(SEGMENTED_ALGORITHM_ID, segmentedCipher);
+    this.cryptoAlgorithmsByNumericId = byNumericId(cryptoAlgorithms);
+    this.segmentedCipher = segmentedCipher;
+    this.segmentThreshold = segmentThreshold;
+  }
+
+  /** Returns the JCE provider backing AES/GCM/NoPadding. */
+  public Provider getCipherProvider() {
+    return aesGcmCipher.getProvider();
   }
 
-  private byte[] cipher(byte[] plainText, String algorithmId, String identifier) {
+  private static CryptoAlgorithm[] byNumericId(Map<String, CryptoAlgorithm> cryptoAlgorithms) {
+    int maxId = 0;
+    for (String algorithmId : cryptoAlgorithms.keySet()) {
+      maxId = Math.max(maxId, Integer.parseInt(algorithmId));
+    }
+    CryptoAlgorithm[] byNumericId = new CryptoAlgorithm[maxId + 1];
+    cryptoAlgorithms.forEach((id, algorithm) -> byNumericId[Integer.parseInt(id)] = algorithm);
+    return byNumericId;
+  }
+
+  private KeyHandle readKeyHandle(String identifier) {
     try {
-      return ID_CRYPTOALGORITHM_LUT
-          .get(algorithmId)
-          .cipher(plainText, keyVault.readKey(identifier));
+      return keyVault.readKeyHandle(identifier);
+    } catch (Exception e) {
+      throw new DataException(e.getMessage(), e);
+    }
+  }
+
+  private KeyHandle readKeyHandle(int keyId) {
+    try {
+      return keyVault.readKeyHandle(keyId);
+    } catch (Exception e) {
+      throw new DataException(e.getMessage(), e);
+    }
+  }
+
+  private CryptoAlgorithm cryptoAlgorithm(int numericAlgorithmId) {
+    CryptoAlgorithm cryptoAlgorithm =
+        numericAlgorithmId < cryptoAlgorithmsByNumericId.length
+            ? cryptoAlgorithmsByNumericId[numericAlgorithmId]
+            : null;
+    if (cryptoAlgorithm == null) {
+      throw new DataException("unsupported cipher algorithm id " + numericAlgorithmId);
+    }
+    return cryptoAlgorithm;
+  }
+
+  private CryptoAlgorithm cryptoAlgorithm(String algorithmId) {
+    CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithms.get(algorithmId);
+    if (cryptoAlgorithm == null) {
+      throw new DataException("unsupported cipher algorithm id '" + algorithmId + "'");
+    }
+    return cryptoAlgorithm;
+  }
+
+  private byte[] cipher(byte[] plainText, CryptoAlgorithm cryptoAlgorithm, SecretKey secretKey) {
+    try {
+      return cryptoAlgorithm.cipher(plainText, secretKey);
     } catch (Exception e) {
       throw new DataException(e.getMessage(), e);
     }
   }
 
   public String cipher(byte[] plainText, FieldMetaData metadata) {
-    String cipherText =
-        Base64.getEncoder()
-            .encodeToString(cipher(plainText, metadata.getAlgorithmId(), metadata.getIdentifier()));
-    return String.join(delimiter, metadata.getKeyVersion(), cipherText);
+    return cipher(plainText, metadata, null);
   }
 
-  private byte[] decipher(byte[] cipherText, String algorithmId, String identifier) {
+  /**
+   * Encrypts the given plaintext and, if the field's algorithm is deterministic, memoizes the
+   * resulting ciphertext in the given cache so that repeated plaintexts skip the cipher entirely.
+   */
+  public String cipher(byte[] plainText, FieldMetaData metadata, EncryptionMemoCache memoCache) {
+    return (String) cipher(plainText, metadata, memoCache, CipherEncoding.BASE64);
+  }
+
+  /**
+   * Like {@link #cipher(byte[], FieldMetaData, EncryptionMemoCache)} but returns the binary
+   * envelope: one byte holding the length of the UTF-8 encoded key version, the key version itself
+   * and the raw ciphertext bytes.
+   */
+  public byte[] cipherRaw(byte[] plainText, FieldMetaData metadata, EncryptionMemoCache memoCache) {
+    return (byte[]) cipher(plainText, metadata, memoCache, CipherEncoding.RAW);
+  }
+
+  private Object cipher(
+      byte[] plainText,
+      FieldMetaData metadata,
+      EncryptionMemoCache memoCache,
+      CipherEncoding encoding) {
+    KeyHandle keyHandle = readKeyHandle(metadata.getIdentifier());
+    CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithm(metadata.getAlgorithmId());
+    return cipher(
+        plainText,
+        metadata,
+        memoCache,
+        encoding,
+        keyHandle,
+        cryptoAlgorithm,
+        keyHandle.getSecretKey(cryptoAlgorithm.getKeyAlgorithm()));
+  }
+
+  private Object cipher(
+      byte[] plainText,
+      FieldMetaData metadata,
+      EncryptionMemoCache memoCache,
+      CipherEncoding encoding,
+      KeyHandle keyHandle,
+      CryptoAlgorithm cryptoAlgorithm,
+      SecretKey secretKey) {
+    boolean memoize = memoCache != null && cryptoAlgorithm.isDeterministic();
+    if (memoize) {
+      Object memoized = memoCache.get(plainText, keyHandle, metadata.getAlgorithmId());
+      if (memoized instanceof byte[] && CipherEncoding.RAW == encoding) {
+        return ((byte[]) memoized).clone();
+      }
+      if (memoized instanceof String && CipherEncoding.BASE64 == encoding) {
+        return memoized;
+      }
+    }
+    String algorithmId = metadata.getAlgorithmId();
+    if (isSegmented(cryptoAlgorithm, plainText.length)) {
+      cryptoAlgorithm = segmentedCipher;
+      algorithmId = SEGMENTED_ALGORITHM_ID;
+    }
+    byte[] cipherText = cipher(plainText, cryptoAlgorithm, secretKey);
+    Object envelope =
+        envelope(cipherText, 0, cipherText.length, algorithmId, metadata, keyHandle, encoding);
+    if (memoize) {
+      memoCache.put(
+          plainText,
+          keyHandle,
+          metadata.getAlgorithmId(),
+          envelope instanceof byte[] ? ((byte[]) envelope).clone() : envelope);
+    }
+    return envelope;
+  }
+
+  public String cipher(ByteBuffer plainText, FieldMetaData metadata) {
+    return (String) cipher(new ByteBuffer[] {plainText}, metadata, null, CipherEncoding.BASE64);
+  }
+
+  public byte[] cipherRaw(ByteBuffer plainText, FieldMetaData metadata) {
+    return (byte[]) cipher(new ByteBuffer[] {plainText}, metadata, null, CipherEncoding.RAW);
+  }
+
+  /**
+   * Encrypts the concatenation of the remaining bytes of the given plaintext buffers, which may be
+   * direct buffers, without copying them into an array first and returns the envelope in the given
+   * encoding. The ciphertext is written into a pooled buffer of its exact length from which the
+   * envelope is encoded. Plaintexts of fields whose algorithm is deterministic or cannot tell the
+   * ciphertext length in advance are copied and encrypted like {@code byte[]} plaintexts, which
+   * includes memoizing them in the given cache.
+   */
+  public Object cipher(
+      ByteBuffer[] plainText,
+      FieldMetaData metadata,
+      EncryptionMemoCache memoCache,
+      CipherEncoding encoding) {
+    KeyHandle keyHandle = readKeyHandle(metadata.getIdentifier());
+    CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithm(metadata.getAlgorithmId());
+    SecretKey secretKey = keyHandle.getSecretKey(cryptoAlgorithm.getKeyAlgorithm());
+    int plainTextLength = 0;
+    for (ByteBuffer buffer : plainText) {
+      plainTextLength += buffer.remaining();
+    }
+    if (cryptoAlgorithm.isDeterministic() || cryptoAlgorithm.ciphertextLength(0) < 0) {
+      byte[] bytes = new byte[plainTextLength];
+      ByteBuffer target = ByteBuffer.wrap(bytes);
+      for (ByteBuffer buffer : plainText) {
+        target.put(buffer);
+      }
+      return cipher(bytes, metadata, memoCache, encoding, keyHandle, cryptoAlgorithm, secretKey);
+    }
+    String algorithmId = metadata.getAlgorithmId();
+    if (isSegmented(cryptoAlgorithm, plainTextLength)) {
+      cryptoAlgorithm = segmentedCipher;
+      algorithmId = SEGMENTED_ALGORITHM_ID;
+    }
+    int cipherTextLength = cryptoAlgorithm.ciphertextLength(plainTextLength);
+    ByteBuffer cipherText = borrowCipherTextBuffer(cipherTextLength);
     try {
-      return ID_CRYPTOALGORITHM_LUT
-          .get(algorithmId)
-          .decipher(cipherText, keyVault.readKey(identifier));
+      cryptoAlgorithm.cipher(plainText, cipherText, secretKey);
+      return envelope(
+          cipherText.array(), 0, cipherTextLength, algorithmId, metadata, keyHandle, encoding);
+    } catch (DataException e) {
+      throw e;
     } catch (Exception e) {
       throw new DataException(e.getMessage(), e);
+    } finally {
+      releaseCipherTextBuffer(cipherText);
+    }
+  }
+
+  private static ByteBuffer borrowCipherTextBuffer(int length) {
+    ByteBuffer[] holder = CIPHER_TEXT_BUFFER.get();
+    ByteBuffer buffer = holder[0];
+    holder[0] = null;
+    if (buffer == null || buffer.capacity() < length) {
+      buffer = ByteBuffer.allocate(Math.max(length, buffer != null ? 2 * buffer.capacity() : 0));
+    }
+    buffer.clear().limit(length);
+    return buffer;
+  }
+
+  private static void releaseCipherTextBuffer(ByteBuffer buffer) {
+    if (buffer.capacity() <= MAX_RETAINED_CIPHER_TEXT_BUFFER_SIZE) {
+      CIPHER_TEXT_BUFFER.get()[0] = buffer;
     }
   }
 
+  private boolean isSegmented(CryptoAlgorithm cryptoAlgorithm, int plainTextLength) {
+    return segmentThreshold > 0
+        && plainTextLength >= segmentThreshold
+        && cryptoAlgorithm instanceof AesGcmNoPadding;
+  }
+
+  private Object envelope(
+      byte[] cipherText,
+      int offset,
+      int length,
+      String algorithmId,
+      FieldMetaData metadata,
+      KeyHandle keyHandle,
+      CipherEncoding encoding) {
+    if (EnvelopeHeader.KEY_ID == envelopeHeader) {
+      int keyId = keyHandle.getKeyId();
+      int numericAlgorithmId = Integer.parseInt(algorithmId);
+      return CipherEncoding.RAW == encoding
+          ? envelopeCodec.encodeRawKeyId(keyId, numericAlgorithmId, cipherText, offset, length)
+          : envelopeCodec.encodeKeyId(keyId, numericAlgorithmId, cipherText, offset, length);
+    }
+    return CipherEncoding.RAW == encoding
+        ? envelopeCodec.encodeRaw(metadata.getKeyVersion(), cipherText, offset, length)
+        : envelopeCodec.encode(metadata.getKeyVersion(), cipherText, offset, length);
+  }
+
+  public List<String> cipherAll(List<byte[]> plainTexts, List<FieldMetaData> metadata) {
+    List<String> cipherTexts = new ArrayList<>(plainTexts.size());
+    for (Object cipherText : cipherAll(plainTexts, metadata, null, CipherEncoding.BASE64)) {
+      cipherTexts.add((String) cipherText);
+    }
+    return cipherTexts;
+  }
+
+  /**
+   * Encrypts a batch of plaintexts, e.g. all matched fields of a record, and returns the envelopes
+   * in the given encoding in the order of the plaintexts. The work is grouped by key identifier and
+   * algorithm so that every key handle is read and every secret key is bound only once per batch
+   * and the fields sharing a key are encrypted back to back.
+   *
+   * @param memoCaches the memo cache per plaintext (entries may be null), or null for none at all
+   */
+  public List<Object> cipherAll(
+      List<byte[]> plainTexts,
+      List<FieldMetaData> metadata,
+      List<EncryptionMemoCache> memoCaches,
+      CipherEncoding encoding) {
+    Object[] cipherTexts = new Object[plainTexts.size()];
+    for (int[] group :
+        groupByKey(
+            plainTexts.size(),
+            i -> metadata.get(i).getIdentifier(),
+            i -> metadata.get(i).getAlgorithmId())) {
+      FieldMetaData first = metadata.get(group[0]);
+      KeyHandle keyHandle = readKeyHandle(first.getIdentifier());
+      CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithm(first.getAlgorithmId());
+      SecretKey secretKey = keyHandle.getSecretKey(cryptoAlgorithm.getKeyAlgorithm());
+      for (int i : group) {
+        cipherTexts[i] =
+            cipher(
+                plainTexts.get(i),
+                metadata.get(i),
+                memoCaches != null ? memoCaches.get(i) : null,
+                encoding,
+                keyHandle,
+                cryptoAlgorithm,
+                secretKey);
+      }
+    }
+    return Arrays.asList(cipherTexts);
+  }
+
+  private byte[] decipher(byte[] cipherText, CryptoAlgorithm cryptoAlgorithm, SecretKey secretKey) {
+    try {
+      if (cryptoAlgorithm instanceof AesGcmNoPadding && AesGcmSegmented.hasHeader(cipherText)) {
+        // values of AES-GCM fields reaching the segment threshold were written segmented
+        try {
+          return segmentedCipher.decipher(cipherText, secretKey);
+        } catch (AEADBadTagException e) {
+          // might still be a legacy ciphertext whose random IV resembles the segmented header
+        }
+      }
+      return cryptoAlgorithm.decipher(cipherText, secretKey);
+    } catch (Exception e) {
+      throw new DataException(e.getMessage(), e);
+    }
+  }
+
+  private byte[] decipher(byte[] cipherText, String algorithmId, String identifier) {
+    CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithm(algorithmId);
+    return decipher(
+        cipherText,
+        cryptoAlgorithm,
+        readKeyHandle(identifier).getSecretKey(cryptoAlgorithm.getKeyAlgorithm()));
+  }
+
+  /**
+   * Decrypts an envelope whose key id header determines key and algorithm, looked up by their
+   * numeric ids without touching the field metadata.
+   */
+  private byte[] decipher(byte[] cipherText, long keyIdHeader) {
+    CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithm(EnvelopeCodec.algorithmId(keyIdHeader));
+    return decipher(
+        cipherText,
+        cryptoAlgorithm,
+        readKeyHandle(EnvelopeCodec.keyId(keyIdHeader))
+            .getSecretKey(cryptoAlgorithm.getKeyAlgorithm()));
+  }
+
   public byte[] decipher(String cipherText, FieldMetaData metadata) {
-    String[] splitText = cipherText.split(delimiter);
-    if (splitText.length == 1) {
-      byte[] decoded = Base64.getDecoder().decode(splitText[0]);
-      return decipher(decoded, metadata.getAlgorithmId(), metadata.getIdentifier());
-    } else if (splitText.length == 2) {
-      byte[] decoded = Base64.getDecoder().decode(splitText[1]);
-      return decipher(decoded, metadata.getAlgorithmId(), metadata.getIdentifier(splitText[0]));
-    } else {
-      throw new DataException("Illegal cipher text format.");
+    if (envelopeCodec.hasKeyIdHeader(cipherText)) {
+      long keyIdHeader = envelopeCodec.keyIdHeader(cipherText);
+      return decipher(envelopeCodec.decodeKeyIdPayload(cipherText), keyIdHeader);
+    }
+    int versionEnd = envelopeCodec.versionEnd(cipherText);
+    byte[] decoded = envelopeCodec.decodePayload(cipherText, versionEnd);
+    return decipher(
+        decoded, metadata.getAlgorithmId(), identifier(cipherText, versionEnd, metadata));
+  }
+
+  public byte[] decipher(byte[] envelope, FieldMetaData metadata) {
+    if (envelopeCodec.rawHasKeyIdHeader(envelope)) {
+      long keyIdHeader = envelopeCodec.rawKeyIdHeader(envelope);
+      return decipher(envelopeCodec.rawKeyIdPayload(envelope), keyIdHeader);
+    }
+    int versionLength = envelopeCodec.rawVersionLength(envelope);
+    return decipher(
+        envelopeCodec.rawPayload(envelope, versionLength),
+        metadata.getAlgorithmId(),
+        rawIdentifier(envelope, versionLength, metadata));
+  }
+
+  public byte[] decipher(ByteBuffer envelope, FieldMetaData metadata) {
+    return decipher(toByteArray(envelope), metadata);
+  }
+
+  /**
+   * Decrypts a batch of envelopes, each given as Base64 {@link String} or as raw {@code byte[]} or
+   * {@link ByteBuffer}, and returns the plaintexts in the order of the envelopes. Like {@link
+   * #cipherAll(List, List, List, CipherEncoding)} the work is grouped by key identifier, which is
+   * derived from the key version found in each envelope, and algorithm. Envelopes with a key id
+   * header resolve their key directly and are decrypted right away.
+   */
+  public List<byte[]> decipherAll(List<?> cipherTexts, List<FieldMetaData> metadata) {
+    int size = cipherTexts.size();
+    byte[][] payloads = new byte[size][];
+    String[] identifiers = new String[size];
+    byte[][] plainTexts = new byte[size][];
+    for (int i = 0; i < size; i++) {
+      Object cipherText = cipherTexts.get(i);
+      if (cipherText instanceof String) {
+        String envelope = (String) cipherText;
+        if (envelopeCodec.hasKeyIdHeader(envelope)) {
+          long keyIdHeader = envelopeCodec.keyIdHeader(envelope);
+          plainTexts[i] = decipher(envelopeCodec.decodeKeyIdPayload(envelope), keyIdHeader);
+          continue;
+        }
+        int versionEnd = envelopeCodec.versionEnd(envelope);
+        payloads[i] = envelopeCodec.decodePayload(envelope, versionEnd);
+        identifiers[i] = identifier(envelope, versionEnd, metadata.get(i));
+      } else {
+        byte[] envelope =
+            cipherText instanceof ByteBuffer
+                ? toByteArray((ByteBuffer) cipherText)
+                : (byte[]) cipherText;
+        if (envelopeCodec.rawHasKeyIdHeader(envelope)) {
+          long keyIdHeader = envelopeCodec.rawKeyIdHeader(envelope);
+          plainTexts[i] = decipher(envelopeCodec.rawKeyIdPayload(envelope), keyIdHeader);
+          continue;
+        }
+        int versionLength = envelopeCodec.rawVersionLength(envelope);
+        payloads[i] = envelopeCodec.rawPayload(envelope, versionLength);
+        identifiers[i] = rawIdentifier(envelope, versionLength, metadata.get(i));
+      }
+    }
+    for (int[] group :
+        groupByKey(size, i -> identifiers[i], i -> metadata.get(i).getAlgorithmId())) {
+      int first = group[0];
+      CryptoAlgorithm cryptoAlgorithm = cryptoAlgorithm(metadata.get(first).getAlgorithmId());
+      SecretKey secretKey =
+          readKeyHandle(identifiers[first]).getSecretKey(cryptoAlgorithm.getKeyAlgorithm());
+      for (int i : group) {
+        plainTexts[i] = decipher(payloads[i], cryptoAlgorithm, secretKey);
+      }
+    }
+    return Arrays.asList(plainTexts);
+  }
+
+  private String identifier(String envelope, int versionEnd, FieldMetaData metadata) {
+    return versionEnd < 0
+            || envelopeCodec.versionMatches(envelope, versionEnd, metadata.getKeyVersion())
+        ? metadata.getIdentifier()
+        : metadata.getIdentifier(envelopeCodec.version(envelope, versionEnd));
+  }
+
+  private String rawIdentifier(byte[] envelope, int versionLength, FieldMetaData metadata) {
+    return versionLength == 0
+            || envelopeCodec.rawVersionMatches(envelope, versionLength, metadata.getKeyVersion())
+        ? metadata.getIdentifier()
+        : metadata.getIdentifier(envelopeCodec.rawVersion(envelope, versionLength));
+  }
+
+  private static byte[] toByteArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Groups the indices of the entries by algorithm and key identifier, in order of first
+   * appearance. Records rarely use more than a handful of keys, so the distinct keys are found by a
+   * linear scan, and all but the per-group index arrays live in a few small arrays.
+   */
+  private static int[][] groupByKey(
+      int size, IntFunction<String> identifiers, IntFunction<String> algorithmIds) {
+    int[] groupOf = new int[size];
+    String[] groupIdentifiers = new String[4];
+    String[] groupAlgorithmIds = new String[4];
+    int[] groupSizes = new int[4];
+    int groups = 0;
+    for (int i = 0; i < size; i++) {
+      String identifier = identifiers.apply(i);
+      if (identifier == null) {
+        // entries without identifier, i.e. envelopes with a key id header, need no grouping
+        groupOf[i] = -1;
+        continue;
+      }
+      String algorithmId = algorithmIds.apply(i);
+      int group = 0;
+      while (group < groups
+          && !(identifier.equals(groupIdentifiers[group])
+              && algorithmId.equals(groupAlgorithmIds[group]))) {
+        group++;
+      }
+      if (group == groups) {
+        if (groups == groupSizes.length) {
+          groupIdentifiers = Arrays.copyOf(groupIdentifiers, groups * 2);
+          groupAlgorithmIds = Arrays.copyOf(groupAlgorithmIds, groups * 2);
+          groupSizes = Arrays.copyOf(groupSizes, groups * 2);
+        }
+        groupIdentifiers[group] = identifier;
+        groupAlgorithmIds[group] = algorithmId;
+        groups++;
+      }
+      groupOf[i] = group;
+      groupSizes[group]++;
+    }
+    int[][] indices = new int[groups][];
+    for (int group = 0; group < groups; group++) {
+      indices[group] = new int[groupSizes[group]];
+      groupSizes[group] = 0;
+    }
+    for (int i = 0; i < size; i++) {
+      if (groupOf[i] >= 0) {
+        indices[groupOf[i]][groupSizes[groupOf[i]]++] = i;
+      }
     }
+    return indices;
   }
 
   public void close() {
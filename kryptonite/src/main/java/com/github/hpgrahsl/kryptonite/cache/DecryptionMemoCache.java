@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Bounded ciphertext to plaintext memo for the decrypt path. Entries are keyed by a SHA-256 digest
+ * of the ciphertext together with the key identifier and hold a copy of the decrypted plaintext
+ * bytes. Immutable restored objects are memoized and handed out as is, byte arrays are handed out
+ * as copies and all other objects are restored again from the memoized plaintext, so callers never
+ * share mutable state. The buffers are zeroed once an entry leaves the cache.
+ */
+public class DecryptionMemoCache implements MemoCacheStats {
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+  @SuppressWarnings("serial")
+  private static final Set<Class<?>> IMMUTABLE_TYPES =
+      new LinkedHashSet<Class<?>>() {
+        {
+          add(String.class);
+          add(Boolean.class);
+          add(Byte.class);
+          add(Short.class);
+          add(Integer.class);
+          add(Long.class);
+          add(Float.class);
+          add(Double.class);
+          add(Character.class);
+          add(BigInteger.class);
+          add(BigDecimal.class);
+        }
+      };
+
+  private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST =
+      ThreadLocal.withInitial(DecryptionMemoCache::newMessageDigest);
+
+  private final Cache<DigestKey, Entry> cache;
+
+  public DecryptionMemoCache(long maxBytes) {
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(DecryptionMemoCache::weigh)
+            .removalListener((DigestKey key, Entry entry, RemovalCause cause) -> entry.release())
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Returns the object memoized for the given ciphertext or null if there is none. The restorer is
+   * only invoked for restored objects of mutable types in order to hand out a fresh instance.
+   */
+  public Object get(String cipherText, String identifier, Function<byte[], Object> restorer) {
+    return get(cipherText.getBytes(StandardCharsets.ISO_8859_1), identifier, restorer);
+  }
+
+  public Object get(byte[] cipherText, String identifier, Function<byte[], Object> restorer) {
+    Entry entry = cache.getIfPresent(new DigestKey(cipherText, identifier));
+    return entry != null ? entry.restore(restorer) : null;
+  }
+
+  public void put(String cipherText, String identifier, byte[] plaintext, Object restored) {
+    put(cipherText.getBytes(StandardCharsets.ISO_8859_1), identifier, plaintext, restored);
+  }
+
+  public void put(byte[] cipherText, String identifier, byte[] plaintext, Object restored) {
+    cache.put(new DigestKey(cipherText, identifier), new Entry(plaintext, restored));
+  }
+
+  @Override
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  @Override
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public long evictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  @Override
+  public long estimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private static int weigh(DigestKey key, Entry entry) {
+    int restoredBytes = 0;
+    if (entry.restored instanceof byte[]) {
+      restoredBytes = ((byte[]) entry.restored).length;
+    } else if (entry.restored instanceof String) {
+      restoredBytes = ((String) entry.restored).length();
+    }
+    return ENTRY_OVERHEAD_BYTES
+        + key.identifier.length()
+        + key.digest.length
+        + entry.plaintext.length
+        + restoredBytes;
+  }
+
+  private static MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  private static final class DigestKey {
+
+    private final byte[] digest;
+    private final String identifier;
+    private final int hash;
+
+    private DigestKey(byte[] cipherText, String identifier) {
+      this.digest = MESSAGE_DIGEST.get().digest(cipherText);
+      this.identifier = identifier;
+      this.hash = 31 * Arrays.hashCode(digest) + identifier.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof DigestKey)) {
+        return false;
+      }
+      DigestKey that = (DigestKey) o;
+      return hash == that.hash
+          && identifier.equals(that.identifier)
+          && Arrays.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class Entry {
+
+    private final byte[] plaintext;
+    private final Object restored;
+    private volatile boolean released;
+
+    private Entry(byte[] plaintext, Object restored) {
+      // the caller keeps the plaintext, which restored objects might even be a view of
+      this.plaintext = plaintext.clone();
+      if (restored instanceof byte[]) {
+        this.restored = ((byte[]) restored).clone();
+      } else if (restored != null && IMMUTABLE_TYPES.contains(restored.getClass())) {
+        this.restored = restored;
+      } else {
+        // mutable objects are restored from the plaintext on every hit instead
+        this.restored = null;
+      }
+    }
+
+    private Object restore(Function<byte[], Object> restorer) {
+      if (restored != null && !(restored instanceof byte[])) {
+        return restored;
+      }
+      Object copy;
+      try {
+        copy = restored instanceof byte[] ? ((byte[]) restored).clone() : restorer.apply(plaintext);
+      } catch (RuntimeException e) {
+        VarHandle.acquireFence();
+        if (released) {
+          return null;
+        }
+        throw e;
+      }
+      // buffers might have been zeroed concurrently while copying, treat as miss in that case
+      VarHandle.acquireFence();
+      return released ? null : copy;
+    }
+
+    private void release() {
+      released = true;
+      Arrays.fill(plaintext, (byte) 0);
+      if (restored instanceof byte[]) {
+        Arrays.fill((byte[]) restored, (byte) 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.hpgrahsl.kryptonite.key.KeyHandle;
+import java.util.Arrays;
+
+/**
+ * Bounded plaintext to ciphertext memo for deterministic cipher algorithms. Memoized ciphertexts
+ * are either base64 encoded strings or raw byte arrays, depending on the configured encoding.
+ * Entries are scoped to the {@link KeyHandle} and algorithm they were produced with, so a refreshed
+ * key version never serves a ciphertext computed under its predecessor. The cache is bounded by the
+ * approximate number of bytes held rather than by entry count.
+ */
+public class EncryptionMemoCache implements MemoCacheStats {
+
+  private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+  private final Cache<MemoKey, Object> cache;
+
+  public EncryptionMemoCache(long maxBytes) {
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(EncryptionMemoCache::weigh)
+            .recordStats()
+            .build();
+  }
+
+  public Object get(byte[] plaintext, KeyHandle keyHandle, String algorithmId) {
+    return cache.getIfPresent(new MemoKey(plaintext, keyHandle, algorithmId));
+  }
+
+  public void put(byte[] plaintext, KeyHandle keyHandle, String algorithmId, Object cipherText) {
+    cache.put(new MemoKey(plaintext, keyHandle, algorithmId), cipherText);
+  }
+
+  @Override
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  @Override
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public long evictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  @Override
+  public long estimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private static int weigh(MemoKey key, Object cipherText) {
+    int cipherTextBytes =
+        cipherText instanceof byte[]
+            ? ((byte[]) cipherText).length
+            : ((String) cipherText).length();
+    return ENTRY_OVERHEAD_BYTES + key.plaintext.length + cipherTextBytes;
+  }
+
+  private static final class MemoKey {
+
+    private final byte[] plaintext;
+    private final KeyHandle keyHandle;
+    private final String algorithmId;
+    private final int hash;
+
+    private MemoKey(byte[] plaintext, KeyHandle keyHandle, String algorithmId) {
+      this.plaintext = plaintext;
+      this.keyHandle = keyHandle;
+      this.algorithmId = algorithmId;
+      this.hash =
+          31 * (31 * Arrays.hashCode(plaintext) + System.identityHashCode(keyHandle))
+              + algorithmId.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof MemoKey)) {
+        return false;
+      }
+      MemoKey that = (MemoKey) o;
+      return hash == that.hash
+          && keyHandle == that.keyHandle
+          && algorithmId.equals(that.algorithmId)
+          && Arrays.equals(plaintext, that.plaintext);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
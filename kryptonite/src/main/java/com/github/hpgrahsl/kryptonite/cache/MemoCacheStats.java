@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.cache;
+
+/**
+ * Statistics of a memo cache as plain numbers, so that callers such as metrics reporters don't
+ * depend on the types of the (relocated) caching library backing it.
+ */
+public interface MemoCacheStats {
+
+  long hitCount();
+
+  long missCount();
+
+  default double hitRate() {
+    long lookups = hitCount() + missCount();
+    return lookups == 0 ? 1.0 : (double) hitCount() / lookups;
+  }
+
+  long evictionCount();
+
+  long estimatedSize();
+}
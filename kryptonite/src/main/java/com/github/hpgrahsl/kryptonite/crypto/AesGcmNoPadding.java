@@ -17,43 +17,156 @@
 package com.github.hpgrahsl.kryptonite.crypto;
 
 import java.nio.ByteBuffer;
-import java.security.SecureRandom;
-import java.security.spec.AlgorithmParameterSpec;
+import java.security.Provider;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * AES in GCM mode. Ciphertexts are written in the v2 layout: a version byte, a 96-bit nonce from
+ * the configured {@link NonceGenerator} and the encrypted plaintext including the 128-bit
+ * authentication tag. Legacy ciphertexts consisting of a 16 byte IV followed by the encrypted
+ * plaintext and tag can still be deciphered. The cipher is taken from the JCE default provider
+ * unless a specific one is given, see {@link CipherProviderRegistry}.
+ */
 public class AesGcmNoPadding implements CryptoAlgorithm {
 
   public static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
   public static final String KEY_ALGORITHM = "AES";
   public static final int AUTH_TAG_LENGTH = 128;
   public static final int IV_LENGTH = 16;
+  public static final int NONCE_LENGTH = 12;
+  public static final byte FORMAT_VERSION_V2 = 0x02;
+
+  private static final int V2_HEADER_LENGTH = 1 + NONCE_LENGTH;
+  private static final int AUTH_TAG_BYTES = AUTH_TAG_LENGTH / 8;
+  private static final CipherPool DEFAULT_CIPHER_POOL = new CipherPool(CIPHER_ALGORITHM);
+
+  private final NonceGenerator nonceGenerator;
+  private final CipherPool cipherPool;
+
+  public AesGcmNoPadding() {
+    this(new ThreadLocalDrbgNonceGenerator());
+  }
+
+  public AesGcmNoPadding(NonceGenerator nonceGenerator) {
+    this(nonceGenerator, null);
+  }
 
-  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+  public AesGcmNoPadding(NonceGenerator nonceGenerator, Provider provider) {
+    this.nonceGenerator = nonceGenerator;
+    this.cipherPool =
+        provider != null ? new CipherPool(CIPHER_ALGORITHM, provider) : DEFAULT_CIPHER_POOL;
+  }
+
+  /** Returns the JCE provider the ciphers of this instance are taken from. */
+  public Provider getProvider() {
+    return cipherPool.get().getProvider();
+  }
 
   @Override
-  public byte[] cipher(byte[] plaintext, byte[] key) throws Exception {
-    byte[] iv = new byte[IV_LENGTH];
-    SECURE_RANDOM.nextBytes(iv);
-    final Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
-    GCMParameterSpec parameterSpec = new GCMParameterSpec(AUTH_TAG_LENGTH, iv);
-    SecretKey secretKey = new SecretKeySpec(key, KEY_ALGORITHM);
-    cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
-    byte[] ciphertext = cipher.doFinal(plaintext);
-    ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + ciphertext.length);
-    byteBuffer.put(iv);
-    byteBuffer.put(ciphertext);
-    return byteBuffer.array();
+  public String getKeyAlgorithm() {
+    return KEY_ALGORITHM;
   }
 
   @Override
-  public byte[] decipher(byte[] ciphertext, byte[] key) throws Exception {
-    final Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
-    AlgorithmParameterSpec gcmIv = new GCMParameterSpec(AUTH_TAG_LENGTH, ciphertext, 0, IV_LENGTH);
-    SecretKey secretKey = new SecretKeySpec(key, KEY_ALGORITHM);
-    cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmIv);
-    return cipher.doFinal(ciphertext, IV_LENGTH, ciphertext.length - IV_LENGTH);
+  public boolean isValidKeyLength(int keyLength) {
+    return keyLength == 16 || keyLength == 24 || keyLength == 32;
+  }
+
+  @Override
+  public int ciphertextLength(int plaintextLength) {
+    return V2_HEADER_LENGTH + plaintextLength + AUTH_TAG_BYTES;
+  }
+
+  @Override
+  public byte[] cipher(byte[] plaintext, SecretKey key) throws Exception {
+    byte[] ciphertext = new byte[V2_HEADER_LENGTH + plaintext.length + AUTH_TAG_BYTES];
+    ciphertext[0] = FORMAT_VERSION_V2;
+    nonceGenerator.nextNonce(ciphertext, 1, NONCE_LENGTH);
+    final Cipher cipher = cipherPool.get();
+    cipher.init(
+        Cipher.ENCRYPT_MODE,
+        key,
+        new GCMParameterSpec(AUTH_TAG_LENGTH, ciphertext, 1, NONCE_LENGTH));
+    cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, V2_HEADER_LENGTH);
+    return ciphertext;
+  }
+
+  @Override
+  public void cipher(ByteBuffer[] plaintext, ByteBuffer ciphertext, SecretKey key)
+      throws Exception {
+    byte[] nonce = new byte[NONCE_LENGTH];
+    nonceGenerator.nextNonce(nonce, 0, NONCE_LENGTH);
+    ciphertext.put(FORMAT_VERSION_V2).put(nonce);
+    final Cipher cipher = cipherPool.get();
+    cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AUTH_TAG_LENGTH, nonce));
+    for (int i = 0; i < plaintext.length - 1; i++) {
+      cipher.update(plaintext[i], ciphertext);
+    }
+    cipher.doFinal(
+        plaintext.length > 0 ? plaintext[plaintext.length - 1] : ByteBuffer.allocate(0),
+        ciphertext);
+  }
+
+  @Override
+  public ByteBuffer decipher(ByteBuffer ciphertext, SecretKey key) throws Exception {
+    ByteBuffer plaintext = null;
+    if (ciphertext.remaining() >= V2_HEADER_LENGTH + AUTH_TAG_BYTES
+        && ciphertext.get(ciphertext.position()) == FORMAT_VERSION_V2) {
+      try {
+        plaintext = decipher(ciphertext.duplicate(), key, 1, NONCE_LENGTH);
+      } catch (AEADBadTagException e) {
+        // might still be a legacy ciphertext whose random IV starts with the v2 version byte
+        if (ciphertext.remaining() < IV_LENGTH + AUTH_TAG_BYTES) {
+          throw e;
+        }
+      }
+    }
+    if (plaintext == null) {
+      plaintext = decipher(ciphertext.duplicate(), key, 0, IV_LENGTH);
+    }
+    ciphertext.position(ciphertext.limit());
+    return plaintext;
+  }
+
+  @Override
+  public byte[] decipher(byte[] ciphertext, SecretKey key) throws Exception {
+    if (ciphertext.length >= V2_HEADER_LENGTH + AUTH_TAG_BYTES
+        && ciphertext[0] == FORMAT_VERSION_V2) {
+      try {
+        return decipher(ciphertext, key, 1, NONCE_LENGTH);
+      } catch (AEADBadTagException e) {
+        // might still be a legacy ciphertext whose random IV starts with the v2 version byte
+        if (ciphertext.length < IV_LENGTH + AUTH_TAG_BYTES) {
+          throw e;
+        }
+      }
+    }
+    return decipher(ciphertext, key, 0, IV_LENGTH);
+  }
+
+  private byte[] decipher(byte[] ciphertext, SecretKey key, int ivOffset, int ivLength)
+      throws Exception {
+    final Cipher cipher = cipherPool.get();
+    cipher.init(
+        Cipher.DECRYPT_MODE,
+        key,
+        new GCMParameterSpec(AUTH_TAG_LENGTH, ciphertext, ivOffset, ivLength));
+    int offset = ivOffset + ivLength;
+    return cipher.doFinal(ciphertext, offset, ciphertext.length - offset);
+  }
+
+  private ByteBuffer decipher(ByteBuffer ciphertext, SecretKey key, int ivOffset, int ivLength)
+      throws Exception {
+    byte[] iv = new byte[ivLength];
+    ciphertext.position(ciphertext.position() + ivOffset);
+    ciphertext.get(iv);
+    final Cipher cipher = cipherPool.get();
+    cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(AUTH_TAG_LENGTH, iv));
+    ByteBuffer plaintext = ByteBuffer.allocate(cipher.getOutputSize(ciphertext.remaining()));
+    cipher.doFinal(ciphertext, plaintext);
+    return plaintext.flip();
   }
 }
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Provider;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Segmented AES-GCM for large values, following the construction of the streaming AEAD schemes of
+ * Hoang, Reyhanitabar, Rogaway and Vizar. The plaintext is split into segments of a fixed size
+ * which are encrypted independently, each with its own authentication tag, so that the JCE never
+ * buffers more than one segment and segments can be processed in parallel.
+ *
+ * <p>Ciphertexts are laid out as a format byte ({@code 0x03}), the plaintext segment size as 4-byte
+ * big-endian integer, a random 16 byte salt and a random 7 byte nonce prefix, followed by the
+ * encrypted segments including their 16 byte tags. Each ciphertext uses its own AES key derived
+ * from the data key, the salt and the header by HKDF-SHA256. The nonce of a segment consists of the
+ * nonce prefix, the 4-byte big-endian segment index and a byte which is 1 for the last segment
+ * only, which prevents segments from being reordered, dropped or truncated.
+ */
+public class AesGcmSegmented implements CryptoAlgorithm {
+
+  public static final String CIPHER_ALGORITHM = "AES/GCM-SEGMENTED/NoPadding";
+  public static final String KEY_ALGORITHM = AesGcmNoPadding.KEY_ALGORITHM;
+  public static final byte FORMAT_VERSION = 0x03;
+  public static final int SALT_LENGTH = 16;
+  public static final int NONCE_PREFIX_LENGTH = 7;
+  public static final int HEADER_LENGTH = 1 + 4 + SALT_LENGTH + NONCE_PREFIX_LENGTH;
+  public static final int SEGMENT_SIZE_DEFAULT = 64 * 1024;
+  public static final int SEGMENT_SIZE_MIN = 1024;
+
+  private static final int AUTH_TAG_BYTES = AesGcmNoPadding.AUTH_TAG_LENGTH / 8;
+  private static final String HKDF_MAC_ALGORITHM = "HmacSHA256";
+  private static final NonceGenerator SALT_GENERATOR = new ThreadLocalDrbgNonceGenerator();
+  private static final CipherPool DEFAULT_CIPHER_POOL =
+      new CipherPool(AesGcmNoPadding.CIPHER_ALGORITHM);
+  private static final ThreadLocal<Mac> HKDF_MAC =
+      ThreadLocal.withInitial(AesGcmSegmented::newHkdfMac);
+
+  private final int segmentSize;
+  private final CipherPool cipherPool;
+  private final ForkJoinPool forkJoinPool;
+
+  public AesGcmSegmented() {
+    this(SEGMENT_SIZE_DEFAULT, null, null);
+  }
+
+  /**
+   * @param segmentSize the plaintext size of all but the last segment of ciphertexts written by
+   *     this instance, ciphertexts of any segment size can be deciphered
+   * @param provider the JCE provider to take AES-GCM from or null for the JCE default
+   * @param forkJoinPool the pool to process the segments of a value on in parallel or null to
+   *     process them on the calling thread
+   */
+  public AesGcmSegmented(int segmentSize, Provider provider, ForkJoinPool forkJoinPool) {
+    if (segmentSize < SEGMENT_SIZE_MIN) {
+      throw new IllegalArgumentException(
+          "segment size must be >= " + SEGMENT_SIZE_MIN + " but was " + segmentSize);
+    }
+    this.segmentSize = segmentSize;
+    this.cipherPool =
+        provider != null
+            ? new CipherPool(AesGcmNoPadding.CIPHER_ALGORITHM, provider)
+            : DEFAULT_CIPHER_POOL;
+    this.forkJoinPool = forkJoinPool;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  /** Returns the JCE provider the ciphers of this instance are taken from. */
+  public Provider getProvider() {
+    return cipherPool.get().getProvider();
+  }
+
+  @Override
+  public String getKeyAlgorithm() {
+    return KEY_ALGORITHM;
+  }
+
+  @Override
+  public boolean isValidKeyLength(int keyLength) {
+    return keyLength == 16 || keyLength == 24 || keyLength == 32;
+  }
+
+  /**
+   * Whether the given ciphertext starts with a plausible header of this format. Since legacy
+   * AES-GCM ciphertexts start with a random IV, a match is no proof of the format.
+   */
+  public static boolean hasHeader(byte[] ciphertext) {
+    return ciphertext.length >= HEADER_LENGTH + AUTH_TAG_BYTES
+        && ciphertext[0] == FORMAT_VERSION
+        && readSegmentSize(ciphertext) >= SEGMENT_SIZE_MIN;
+  }
+
+  @Override
+  public int ciphertextLength(int plaintextLength) {
+    return HEADER_LENGTH + plaintextLength + segments(plaintextLength) * AUTH_TAG_BYTES;
+  }
+
+  @Override
+  public byte[] cipher(byte[] plaintext, SecretKey key) throws Exception {
+    int segments = segments(plaintext.length);
+    byte[] ciphertext = new byte[HEADER_LENGTH + plaintext.length + segments * AUTH_TAG_BYTES];
+    ciphertext[0] = FORMAT_VERSION;
+    writeSegmentSize(ciphertext, segmentSize);
+    SALT_GENERATOR.nextNonce(ciphertext, 5, SALT_LENGTH + NONCE_PREFIX_LENGTH);
+    SecretKey segmentKey = deriveKey(key, ciphertext);
+    processSegments(
+        segments,
+        segment -> {
+          int offset = segment * segmentSize;
+          int length = Math.min(segmentSize, plaintext.length - offset);
+          Cipher cipher = cipherPool.get();
+          cipher.init(Cipher.ENCRYPT_MODE, segmentKey, segmentNonce(ciphertext, segment, segments));
+          cipher.doFinal(
+              plaintext,
+              offset,
+              length,
+              ciphertext,
+              HEADER_LENGTH + segment * (segmentSize + AUTH_TAG_BYTES));
+        });
+    return ciphertext;
+  }
+
+  /**
+   * Encrypts the segments straight from the given plaintext buffers, a segment spanning several
+   * buffers is fed to the cipher piece by piece.
+   */
+  @Override
+  public void cipher(ByteBuffer[] plaintext, ByteBuffer ciphertext, SecretKey key)
+      throws Exception {
+    int plaintextLength = remaining(plaintext);
+    int segments = segments(plaintextLength);
+    byte[] header = new byte[HEADER_LENGTH];
+    header[0] = FORMAT_VERSION;
+    writeSegmentSize(header, segmentSize);
+    SALT_GENERATOR.nextNonce(header, 5, SALT_LENGTH + NONCE_PREFIX_LENGTH);
+    SecretKey segmentKey = deriveKey(key, header);
+    int start = ciphertext.position();
+    ciphertext.put(header);
+    processSegments(
+        segments,
+        segment -> {
+          int offset = segment * segmentSize;
+          int length = Math.min(segmentSize, plaintextLength - offset);
+          ByteBuffer target = ciphertext.duplicate();
+          target.position(start + HEADER_LENGTH + segment * (segmentSize + AUTH_TAG_BYTES));
+          target.limit(target.position() + length + AUTH_TAG_BYTES);
+          Cipher cipher = cipherPool.get();
+          cipher.init(Cipher.ENCRYPT_MODE, segmentKey, segmentNonce(header, segment, segments));
+          for (ByteBuffer buffer : plaintext) {
+            if (length == 0) {
+              break;
+            }
+            if (offset >= buffer.remaining()) {
+              offset -= buffer.remaining();
+              continue;
+            }
+            ByteBuffer piece = buffer.duplicate();
+            piece.position(buffer.position() + offset);
+            piece.limit(piece.position() + Math.min(length, piece.remaining()));
+            length -= piece.remaining();
+            offset = 0;
+            cipher.update(piece, target);
+          }
+          cipher.doFinal(ByteBuffer.allocate(0), target);
+        });
+    for (ByteBuffer buffer : plaintext) {
+      buffer.position(buffer.limit());
+    }
+    ciphertext.position(start + ciphertextLength(plaintextLength));
+  }
+
+  @Override
+  public byte[] decipher(byte[] ciphertext, SecretKey key) throws Exception {
+    if (!hasHeader(ciphertext)) {
+      throw new AEADBadTagException("ciphertext lacks a valid segmented AES-GCM header");
+    }
+    int plaintextSegmentSize = readSegmentSize(ciphertext);
+    long ciphertextSegmentSize = (long) plaintextSegmentSize + AUTH_TAG_BYTES;
+    int payloadLength = ciphertext.length - HEADER_LENGTH;
+    int segments = (int) ((payloadLength + ciphertextSegmentSize - 1) / ciphertextSegmentSize);
+    long lastLength = payloadLength - (segments - 1) * ciphertextSegmentSize;
+    if (lastLength < AUTH_TAG_BYTES) {
+      throw new AEADBadTagException("last segment is shorter than its authentication tag");
+    }
+    byte[] plaintext = new byte[payloadLength - segments * AUTH_TAG_BYTES];
+    SecretKey segmentKey = deriveKey(key, ciphertext);
+    processSegments(
+        segments,
+        segment -> {
+          int offset = HEADER_LENGTH + (int) (segment * ciphertextSegmentSize);
+          int length = (int) Math.min(ciphertextSegmentSize, ciphertext.length - offset);
+          Cipher cipher = cipherPool.get();
+          cipher.init(Cipher.DECRYPT_MODE, segmentKey, segmentNonce(ciphertext, segment, segments));
+          cipher.doFinal(ciphertext, offset, length, plaintext, segment * plaintextSegmentSize);
+        });
+    return plaintext;
+  }
+
+  @FunctionalInterface
+  private interface SegmentProcessor {
+    void process(int segment) throws GeneralSecurityException;
+  }
+
+  private void processSegments(int segments, SegmentProcessor processor) throws Exception {
+    if (forkJoinPool == null || segments < 2) {
+      for (int segment = 0; segment < segments; segment++) {
+        processor.process(segment);
+      }
+      return;
+    }
+    AtomicReference<GeneralSecurityException> failure = new AtomicReference<>();
+    SegmentRangeTask task = new SegmentRangeTask(0, segments, processor, failure);
+    if (ForkJoinTask.getPool() == forkJoinPool) {
+      // already running on the pool, e.g. for an element of a list processed in parallel
+      task.invoke();
+    } else {
+      forkJoinPool.invoke(task);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  private static int remaining(ByteBuffer[] buffers) {
+    int remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      remaining += buffer.remaining();
+    }
+    return remaining;
+  }
+
+  private int segments(int plaintextLength) {
+    return (int) Math.max(1, ((long) plaintextLength + segmentSize - 1) / segmentSize);
+  }
+
+  private static GCMParameterSpec segmentNonce(byte[] ciphertext, int segment, int segments) {
+    byte[] nonce = new byte[AesGcmNoPadding.NONCE_LENGTH];
+    System.arraycopy(ciphertext, 5 + SALT_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+    nonce[7] = (byte) (segment >>> 24);
+    nonce[8] = (byte) (segment >>> 16);
+    nonce[9] = (byte) (segment >>> 8);
+    nonce[10] = (byte) segment;
+    nonce[11] = (byte) (segment == segments - 1 ? 1 : 0);
+    return new GCMParameterSpec(AesGcmNoPadding.AUTH_TAG_LENGTH, nonce);
+  }
+
+  /** HKDF-SHA256 (RFC 5869) of the data key, salted and bound to the header of the ciphertext. */
+  private static SecretKey deriveKey(SecretKey key, byte[] ciphertext)
+      throws GeneralSecurityException {
+    byte[] keyBytes = key.getEncoded();
+    if (keyBytes == null
+        || (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32)) {
+      throw new InvalidKeyException(
+          "segmented AES-GCM requires a key of 16, 24 or 32 bytes but got "
+              + (keyBytes == null ? 0 : keyBytes.length));
+    }
+    Mac mac = HKDF_MAC.get();
+    mac.init(new SecretKeySpec(ciphertext, 5, SALT_LENGTH, HKDF_MAC_ALGORITHM));
+    byte[] pseudoRandomKey = mac.doFinal(keyBytes);
+    mac.init(new SecretKeySpec(pseudoRandomKey, HKDF_MAC_ALGORITHM));
+    mac.update(ciphertext, 0, 5);
+    mac.update(ciphertext, 5 + SALT_LENGTH, NONCE_PREFIX_LENGTH);
+    mac.update((byte) 1);
+    return new SecretKeySpec(mac.doFinal(), 0, keyBytes.length, KEY_ALGORITHM);
+  }
+
+  private static int readSegmentSize(byte[] ciphertext) {
+    return (ciphertext[1] & 0xFF) << 24
+        | (ciphertext[2] & 0xFF) << 16
+        | (ciphertext[3] & 0xFF) << 8
+        | (ciphertext[4] & 0xFF);
+  }
+
+  private static void writeSegmentSize(byte[] ciphertext, int segmentSize) {
+    ciphertext[1] = (byte) (segmentSize >>> 24);
+    ciphertext[2] = (byte) (segmentSize >>> 16);
+    ciphertext[3] = (byte) (segmentSize >>> 8);
+    ciphertext[4] = (byte) segmentSize;
+  }
+
+  private static Mac newHkdfMac() {
+    try {
+      return Mac.getInstance(HKDF_MAC_ALGORITHM);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("failed to create " + HKDF_MAC_ALGORITHM + " instance", e);
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private static final class SegmentRangeTask extends RecursiveAction {
+
+    private final int from;
+    private final int to;
+    private final SegmentProcessor processor;
+    private final AtomicReference<GeneralSecurityException> failure;
+
+    private SegmentRangeTask(
+        int from,
+        int to,
+        SegmentProcessor processor,
+        AtomicReference<GeneralSecurityException> failure) {
+      this.from = from;
+      this.to = to;
+      this.processor = processor;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      if (failure.get() != null) {
+        return;
+      }
+      if (to - from == 1) {
+        try {
+          processor.process(from);
+        } catch (GeneralSecurityException e) {
+          failure.compareAndSet(null, e);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(
+          new SegmentRangeTask(from, middle, processor, failure),
+          new SegmentRangeTask(middle, to, processor, failure));
+    }
+  }
+}
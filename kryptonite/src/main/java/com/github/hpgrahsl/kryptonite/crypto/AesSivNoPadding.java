@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Deterministic AEAD cipher implementing AES-SIV (RFC 5297) on top of the JDK's AES primitives. The
+ * same plaintext encrypted under the same key always yields the same ciphertext, which makes the
+ * result usable as join or partition key.
+ *
+ * <p>Keys must be 32, 48 or 64 bytes long. The first half is used for S2V (AES-CMAC), the second
+ * half for AES-CTR. The ciphertext layout is the 16 byte synthetic IV followed by the encrypted
+ * plaintext.
+ */
+public class AesSivNoPadding implements CryptoAlgorithm {
+
+  public static final String CIPHER_ALGORITHM = "AES/SIV/NoPadding";
+  public static final String KEY_ALGORITHM = "AES";
+  public static final int SIV_LENGTH = 16;
+
+  private static final int BLOCK_SIZE = 16;
+  private static final CipherPool ECB_CIPHER_POOL = new CipherPool("AES/ECB/NoPadding");
+  private static final CipherPool CTR_CIPHER_POOL = new CipherPool("AES/CTR/NoPadding");
+  private static final byte[][] NO_ASSOCIATED_DATA = new byte[0][];
+  // derived sub-keys per data key, compared by identity and dropped once the key is collected
+  private static final Cache<SecretKey, SubKeys> SUB_KEYS =
+      Caffeine.newBuilder().weakKeys().build();
+
+  @Override
+  public String getKeyAlgorithm() {
+    return KEY_ALGORITHM;
+  }
+
+  @Override
+  public boolean isValidKeyLength(int keyLength) {
+    return keyLength == 32 || keyLength == 48 || keyLength == 64;
+  }
+
+  @Override
+  public boolean isDeterministic() {
+    return true;
+  }
+
+  @Override
+  public int ciphertextLength(int plaintextLength) {
+    return SIV_LENGTH + plaintextLength;
+  }
+
+  @Override
+  public byte[] cipher(byte[] plaintext, SecretKey key) throws Exception {
+    return cipher(plaintext, key, NO_ASSOCIATED_DATA);
+  }
+
+  @Override
+  public byte[] decipher(byte[] ciphertext, SecretKey key) throws Exception {
+    return decipher(ciphertext, key, NO_ASSOCIATED_DATA);
+  }
+
+  /** Encrypts with the given associated data as the S2V header components of RFC 5297. */
+  byte[] cipher(byte[] plaintext, SecretKey key, byte[]... associatedData) throws Exception {
+    SubKeys subKeys = subKeys(key);
+    byte[] siv = s2v(subKeys, associatedData, plaintext, 0, plaintext.length);
+    byte[] ciphertext = new byte[SIV_LENGTH + plaintext.length];
+    System.arraycopy(siv, 0, ciphertext, 0, SIV_LENGTH);
+    ctr(subKeys, siv, plaintext, 0, plaintext.length, ciphertext, SIV_LENGTH);
+    return ciphertext;
+  }
+
+  byte[] decipher(byte[] ciphertext, SecretKey key, byte[]... associatedData) throws Exception {
+    if (ciphertext.length < SIV_LENGTH) {
+      throw new AEADBadTagException("ciphertext is shorter than the synthetic IV");
+    }
+    SubKeys subKeys = subKeys(key);
+    byte[] siv = Arrays.copyOf(ciphertext, SIV_LENGTH);
+    byte[] plaintext = new byte[ciphertext.length - SIV_LENGTH];
+    ctr(subKeys, siv, ciphertext, SIV_LENGTH, plaintext.length, plaintext, 0);
+    if (!MessageDigest.isEqual(siv, s2v(subKeys, associatedData, plaintext, 0, plaintext.length))) {
+      Arrays.fill(plaintext, (byte) 0);
+      throw new AEADBadTagException("synthetic IV mismatch");
+    }
+    return plaintext;
+  }
+
+  private static SubKeys subKeys(SecretKey key) throws GeneralSecurityException {
+    SubKeys subKeys = SUB_KEYS.getIfPresent(key);
+    if (subKeys == null) {
+      subKeys = new SubKeys(key);
+      SUB_KEYS.put(key, subKeys);
+    }
+    return subKeys;
+  }
+
+  private static byte[] s2v(
+      SubKeys subKeys, byte[][] associatedData, byte[] message, int offset, int length)
+      throws GeneralSecurityException {
+    Cipher ecb = ECB_CIPHER_POOL.get();
+    ecb.init(Cipher.ENCRYPT_MODE, subKeys.macKey);
+    byte[] d = subKeys.cmacZero.clone();
+    for (byte[] component : associatedData) {
+      dbl(d);
+      byte[] mac = cmac(ecb, subKeys.cmacK1, subKeys.cmacK2, component, 0, component.length);
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        d[i] ^= mac[i];
+      }
+    }
+    byte[] t;
+    if (length >= BLOCK_SIZE) {
+      t = Arrays.copyOfRange(message, offset, offset + length);
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        t[length - BLOCK_SIZE + i] ^= d[i];
+      }
+    } else {
+      dbl(d);
+      t = new byte[BLOCK_SIZE];
+      System.arraycopy(message, offset, t, 0, length);
+      t[length] = (byte) 0x80;
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        t[i] ^= d[i];
+      }
+    }
+    return cmac(ecb, subKeys.cmacK1, subKeys.cmacK2, t, 0, t.length);
+  }
+
+  private static void ctr(
+      SubKeys subKeys,
+      byte[] siv,
+      byte[] input,
+      int inputOffset,
+      int length,
+      byte[] output,
+      int outputOffset)
+      throws GeneralSecurityException {
+    byte[] counter = siv.clone();
+    counter[8] &= (byte) 0x7f;
+    counter[12] &= (byte) 0x7f;
+    Cipher ctr = CTR_CIPHER_POOL.get();
+    ctr.init(Cipher.ENCRYPT_MODE, subKeys.ctrKey, new IvParameterSpec(counter));
+    ctr.doFinal(input, inputOffset, length, output, outputOffset);
+  }
+
+  private static byte[] cmac(
+      Cipher ecb, byte[] k1, byte[] k2, byte[] message, int offset, int length)
+      throws GeneralSecurityException {
+    int blocks = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    boolean complete = blocks > 0 && length % BLOCK_SIZE == 0;
+    if (blocks == 0) {
+      blocks = 1;
+    }
+    byte[] x = new byte[BLOCK_SIZE];
+    for (int b = 0; b < blocks - 1; b++) {
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        x[i] ^= message[offset + b * BLOCK_SIZE + i];
+      }
+      ecb.doFinal(x, 0, BLOCK_SIZE, x, 0);
+    }
+    int lastOffset = offset + (blocks - 1) * BLOCK_SIZE;
+    int remaining = length - (blocks - 1) * BLOCK_SIZE;
+    if (complete) {
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        x[i] ^= (byte) (message[lastOffset + i] ^ k1[i]);
+      }
+    } else {
+      for (int i = 0; i < remaining; i++) {
+        x[i] ^= message[lastOffset + i];
+      }
+      x[remaining] ^= (byte) 0x80;
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        x[i] ^= k2[i];
+      }
+    }
+    ecb.doFinal(x, 0, BLOCK_SIZE, x, 0);
+    return x;
+  }
+
+  private static byte[] dbl(byte[] block) {
+    int carry = (block[0] & 0x80) != 0 ? 0x87 : 0x00;
+    for (int i = 0; i < BLOCK_SIZE - 1; i++) {
+      block[i] = (byte) ((block[i] << 1) | ((block[i + 1] & 0xff) >>> 7));
+    }
+    block[BLOCK_SIZE - 1] = (byte) ((block[BLOCK_SIZE - 1] << 1) ^ carry);
+    return block;
+  }
+
+  private static final class SubKeys {
+
+    private final SecretKey macKey;
+    private final SecretKey ctrKey;
+    private final byte[] cmacK1;
+    private final byte[] cmacK2;
+    private final byte[] cmacZero;
+
+    private SubKeys(SecretKey key) throws GeneralSecurityException {
+      byte[] raw = key.getEncoded();
+      try {
+        if (raw == null || (raw.length != 32 && raw.length != 48 && raw.length != 64)) {
+          throw new InvalidKeyException(
+              "AES-SIV requires a key of 32, 48 or 64 bytes but got "
+                  + (raw == null ? 0 : raw.length));
+        }
+        int half = raw.length / 2;
+        this.macKey = new SecretKeySpec(raw, 0, half, KEY_ALGORITHM);
+        this.ctrKey = new SecretKeySpec(raw, half, half, KEY_ALGORITHM);
+        Cipher ecb = ECB_CIPHER_POOL.get();
+        ecb.init(Cipher.ENCRYPT_MODE, macKey);
+        this.cmacK1 = dbl(ecb.doFinal(new byte[BLOCK_SIZE]));
+        this.cmacK2 = dbl(cmacK1.clone());
+        this.cmacZero = cmac(ecb, cmacK1, cmacK2, new byte[BLOCK_SIZE], 0, BLOCK_SIZE);
+      } finally {
+        if (raw != null) {
+          Arrays.fill(raw, (byte) 0);
+        }
+      }
+    }
+  }
+}
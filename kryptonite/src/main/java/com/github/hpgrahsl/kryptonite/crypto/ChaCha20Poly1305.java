@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * ChaCha20-Poly1305 according to RFC 8439 as provided by the JDK. It requires data keys of 32 bytes
+ * and does not depend on AES hardware support, which makes it the faster choice on CPUs without AES
+ * instructions. Ciphertexts are laid out as the 96-bit nonce from the configured {@link
+ * NonceGenerator} followed by the encrypted plaintext including the 128-bit authentication tag.
+ */
+public class ChaCha20Poly1305 implements CryptoAlgorithm {
+
+  public static final String CIPHER_ALGORITHM = "ChaCha20-Poly1305";
+  public static final String KEY_ALGORITHM = "ChaCha20";
+  public static final int KEY_LENGTH = 32;
+  public static final int NONCE_LENGTH = 12;
+  public static final int AUTH_TAG_LENGTH = 128;
+
+  private static final int AUTH_TAG_BYTES = AUTH_TAG_LENGTH / 8;
+  private static final CipherPool CIPHER_POOL = new CipherPool(CIPHER_ALGORITHM);
+
+  private final NonceGenerator nonceGenerator;
+
+  public ChaCha20Poly1305() {
+    this(new ThreadLocalDrbgNonceGenerator());
+  }
+
+  public ChaCha20Poly1305(NonceGenerator nonceGenerator) {
+    this.nonceGenerator = nonceGenerator;
+  }
+
+  @Override
+  public String getKeyAlgorithm() {
+    return KEY_ALGORITHM;
+  }
+
+  @Override
+  public boolean isValidKeyLength(int keyLength) {
+    return keyLength == KEY_LENGTH;
+  }
+
+  @Override
+  public int ciphertextLength(int plaintextLength) {
+    return NONCE_LENGTH + plaintextLength + AUTH_TAG_BYTES;
+  }
+
+  @Override
+  public byte[] cipher(byte[] plaintext, SecretKey key) throws Exception {
+    byte[] ciphertext = new byte[NONCE_LENGTH + plaintext.length + AUTH_TAG_BYTES];
+    nonceGenerator.nextNonce(ciphertext, 0, NONCE_LENGTH);
+    final Cipher cipher = CIPHER_POOL.get();
+    cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(ciphertext, 0, NONCE_LENGTH));
+    cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, NONCE_LENGTH);
+    return ciphertext;
+  }
+
+  @Override
+  public void cipher(ByteBuffer[] plaintext, ByteBuffer ciphertext, SecretKey key)
+      throws Exception {
+    byte[] nonce = new byte[NONCE_LENGTH];
+    nonceGenerator.nextNonce(nonce, 0, NONCE_LENGTH);
+    ciphertext.put(nonce);
+    final Cipher cipher = CIPHER_POOL.get();
+    cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(nonce));
+    for (int i = 0; i < plaintext.length - 1; i++) {
+      cipher.update(plaintext[i], ciphertext);
+    }
+    cipher.doFinal(
+        plaintext.length > 0 ? plaintext[plaintext.length - 1] : ByteBuffer.allocate(0),
+        ciphertext);
+  }
+
+  @Override
+  public byte[] decipher(byte[] ciphertext, SecretKey key) throws Exception {
+    if (ciphertext.length < NONCE_LENGTH + AUTH_TAG_BYTES) {
+      throw new AEADBadTagException("ciphertext is shorter than nonce and authentication tag");
+    }
+    final Cipher cipher = CIPHER_POOL.get();
+    initDecrypt(cipher, key, Arrays.copyOf(ciphertext, NONCE_LENGTH));
+    return cipher.doFinal(ciphertext, NONCE_LENGTH, ciphertext.length - NONCE_LENGTH);
+  }
+
+  @Override
+  public ByteBuffer decipher(ByteBuffer ciphertext, SecretKey key) throws Exception {
+    if (ciphertext.remaining() < NONCE_LENGTH + AUTH_TAG_BYTES) {
+      throw new AEADBadTagException("ciphertext is shorter than nonce and authentication tag");
+    }
+    byte[] nonce = new byte[NONCE_LENGTH];
+    ciphertext.get(nonce);
+    final Cipher cipher = CIPHER_POOL.get();
+    initDecrypt(cipher, key, nonce);
+    ByteBuffer plaintext = ByteBuffer.allocate(cipher.getOutputSize(ciphertext.remaining()));
+    cipher.doFinal(ciphertext, plaintext);
+    return plaintext.flip();
+  }
+
+  private static void initDecrypt(Cipher cipher, SecretKey key, byte[] nonce) throws Exception {
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(nonce));
+    } catch (InvalidKeyException e) {
+      // the JDK rejects the key and nonce of the previous initialization of the pooled instance,
+      // which is legitimate when deciphering the same ciphertext twice in a row, so reset it
+      byte[] otherNonce = nonce.clone();
+      otherNonce[0] ^= 1;
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(otherNonce));
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(nonce));
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import javax.crypto.Cipher;
+
+/**
+ * Hands out one {@link Cipher} instance per thread for a given transformation so that the
+ * (comparatively expensive) provider lookup done by {@link Cipher#getInstance(String)} happens only
+ * once per thread instead of once per field. Callers must always {@code init} the returned instance
+ * before using it. The instances are taken from the given JCE provider, or from the most preferred
+ * provider supporting the transformation if none is given.
+ */
+public class CipherPool {
+
+  private final String transformation;
+  private final Provider provider;
+  private final ThreadLocal<Cipher> ciphers;
+
+  public CipherPool(String transformation) {
+    this(transformation, null);
+  }
+
+  public CipherPool(String transformation, Provider provider) {
+    this.transformation = transformation;
+    this.provider = provider;
+    this.ciphers = ThreadLocal.withInitial(this::newCipher);
+  }
+
+  public String getTransformation() {
+    return transformation;
+  }
+
+  /** Returns the configured provider or null if the JCE default is used. */
+  public Provider getProvider() {
+    return provider;
+  }
+
+  public Cipher get() {
+    return ciphers.get();
+  }
+
+  private Cipher newCipher() {
+    try {
+      return provider != null
+          ? Cipher.getInstance(transformation, provider)
+          : Cipher.getInstance(transformation);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(
+          "failed to create cipher instance for transformation '" + transformation + "'", e);
+    }
+  }
+}
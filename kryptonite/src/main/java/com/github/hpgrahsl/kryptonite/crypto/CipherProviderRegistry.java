@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the JCE providers {@link AesGcmNoPadding} can be backed by. Besides the JDK's own
+ * {@code SunJCE}, the native-backed Amazon Corretto Crypto Provider and Conscrypt are known and
+ * used if their classes are on the classpath, further ones can be registered by name. Providers
+ * installed via {@link Security} are found by name as well.
+ *
+ * <p>{@link #select(String)} resolves a {@code cipher_provider} setting: {@value #DEFAULT} for the
+ * JCE default, {@value #AUTO} for the fastest available provider passing an AES-GCM known-answer
+ * test as measured by a short self-benchmark, or the name of a specific provider.
+ */
+public final class CipherProviderRegistry {
+
+  public static final String DEFAULT = "default";
+  public static final String AUTO = "auto";
+  public static final int BENCHMARK_PLAINTEXT_SIZE = 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CipherProviderRegistry.class);
+
+  private static final int BENCHMARK_ROUNDS = 5;
+  private static final long BENCHMARK_ROUND_NANOS = TimeUnit.MILLISECONDS.toNanos(40);
+
+  // test case 3 of the GCM specification (McGrew and Viega)
+  private static final byte[] KAT_KEY = hex("feffe9928665731c6d6a8f9467308308");
+  private static final byte[] KAT_NONCE = hex("cafebabefacedbaddecaf888");
+  private static final byte[] KAT_PLAINTEXT =
+      hex(
+          "d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a72"
+              + "1c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b391aafd255");
+  private static final byte[] KAT_CIPHERTEXT =
+      hex(
+          "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+              + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985"
+              + "4d5c2af327cd64a62cf35abd2ba6fab4");
+
+  private static final Map<String, Supplier<Provider>> PROVIDERS =
+      Collections.synchronizedMap(new LinkedHashMap<>());
+
+  static {
+    register("SunJCE", () -> Security.getProvider("SunJCE"));
+    register(
+        "AmazonCorrettoCryptoProvider",
+        () ->
+            loadProvider(
+                "com.amazon.corretto.crypto.provider.AmazonCorrettoCryptoProvider", "INSTANCE"));
+    register("Conscrypt", () -> loadProvider("org.conscrypt.Conscrypt", "newProvider"));
+  }
+
+  private CipherProviderRegistry() {}
+
+  /** The provider chosen for a setting, together with its measured throughput if benchmarked. */
+  public static final class Selection {
+
+    private final String name;
+    private final Provider provider;
+    private final double throughput;
+
+    private Selection(String name, Provider provider, double throughput) {
+      this.name = name;
+      this.provider = provider;
+      this.throughput = throughput;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the chosen provider or null for the JCE default. */
+    public Provider getProvider() {
+      return provider;
+    }
+
+    /**
+     * Returns the AES-GCM encryption throughput in bytes per second for plaintexts of {@link
+     * #BENCHMARK_PLAINTEXT_SIZE} bytes measured during selection, or NaN if it wasn't measured.
+     */
+    public double getThroughput() {
+      return throughput;
+    }
+
+    @Override
+    public String toString() {
+      return "Selection{" + "name='" + name + "'" + ", throughput=" + throughput + "}";
+    }
+  }
+
+  /**
+   * Registers a provider under the given name, the supplier returning null if it is unavailable.
+   */
+  public static void register(String name, Supplier<Provider> provider) {
+    PROVIDERS.put(name, provider);
+  }
+
+  public static Set<String> names() {
+    synchronized (PROVIDERS) {
+      return new LinkedHashSet<>(PROVIDERS.keySet());
+    }
+  }
+
+  /** Returns the registered or installed provider of the given name if it is available. */
+  public static Optional<Provider> lookup(String name) {
+    Supplier<Provider> supplier = PROVIDERS.get(name);
+    Provider provider = null;
+    try {
+      provider = supplier != null ? supplier.get() : Security.getProvider(name);
+    } catch (RuntimeException | LinkageError e) {
+      LOGGER.debug("cipher provider '{}' is unavailable", name, e);
+    }
+    return Optional.ofNullable(provider);
+  }
+
+  /**
+   * Resolves the given {@code cipher_provider} setting.
+   *
+   * @throws IllegalArgumentException if the named provider is unavailable or fails the known-answer
+   *     test
+   */
+  public static Selection select(String setting) {
+    if (DEFAULT.equals(setting)) {
+      return new Selection(DEFAULT, null, Double.NaN);
+    }
+    if (AUTO.equals(setting)) {
+      return selectFastest();
+    }
+    Provider provider =
+        lookup(setting)
+            .orElseThrow(
+                () -> new IllegalArgumentException("cipher provider '" + setting + "' not found"));
+    if (!passesKnownAnswerTest(provider)) {
+      throw new IllegalArgumentException(
+          "cipher provider '" + setting + "' failed the AES-GCM known-answer test");
+    }
+    return new Selection(provider.getName(), provider, Double.NaN);
+  }
+
+  private static Selection selectFastest() {
+    List<Throughput> candidates = new ArrayList<>();
+    Set<String> names = new LinkedHashSet<>();
+    for (String name : names()) {
+      Provider provider = lookup(name).filter(p -> names.add(p.getName())).orElse(null);
+      if (provider == null) {
+        continue;
+      }
+      if (!passesKnownAnswerTest(provider)) {
+        LOGGER.warn("skipping cipher provider {} which failed the known-answer test", provider);
+        continue;
+      }
+      try {
+        candidates.add(new Throughput(provider));
+      } catch (Exception e) {
+        LOGGER.warn("skipping cipher provider {} which failed the benchmark", provider, e);
+      }
+    }
+    // rounds are interleaved so that all candidates get the same time to be JIT-compiled
+    for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+      for (Throughput candidate : candidates) {
+        candidate.measure();
+      }
+    }
+    Selection fastest = null;
+    for (Throughput candidate : candidates) {
+      LOGGER.info(
+          "cipher provider {} encrypts {} MB/s",
+          candidate.provider.getName(),
+          (long) (candidate.best / 1e6));
+      if (!Double.isNaN(candidate.best)
+          && (fastest == null || candidate.best > fastest.getThroughput())) {
+        fastest = new Selection(candidate.provider.getName(), candidate.provider, candidate.best);
+      }
+    }
+    if (fastest == null) {
+      LOGGER.warn("no cipher provider passed the self-test, falling back to the JCE default");
+      return new Selection(DEFAULT, null, Double.NaN);
+    }
+    LOGGER.info("selected cipher provider {}", fastest);
+    return fastest;
+  }
+
+  static boolean passesKnownAnswerTest(Provider provider) {
+    try {
+      Cipher cipher = Cipher.getInstance(AesGcmNoPadding.CIPHER_ALGORITHM, provider);
+      SecretKey key = new SecretKeySpec(KAT_KEY, AesGcmNoPadding.KEY_ALGORITHM);
+      GCMParameterSpec nonce = new GCMParameterSpec(AesGcmNoPadding.AUTH_TAG_LENGTH, KAT_NONCE);
+      cipher.init(Cipher.ENCRYPT_MODE, key, nonce);
+      if (!MessageDigest.isEqual(KAT_CIPHERTEXT, cipher.doFinal(KAT_PLAINTEXT))) {
+        return false;
+      }
+      cipher.init(Cipher.DECRYPT_MODE, key, nonce);
+      return MessageDigest.isEqual(KAT_PLAINTEXT, cipher.doFinal(KAT_CIPHERTEXT));
+    } catch (Exception e) {
+      LOGGER.debug("known-answer test of cipher provider {} failed", provider, e);
+      return false;
+    }
+  }
+
+  /** Best AES-GCM encryption throughput of a provider observed across benchmark rounds. */
+  private static final class Throughput {
+
+    private final Provider provider;
+    private final Cipher cipher;
+    private final SecretKey key;
+    private final byte[] plaintext = new byte[BENCHMARK_PLAINTEXT_SIZE];
+    private final byte[] ciphertext =
+        new byte[BENCHMARK_PLAINTEXT_SIZE + AesGcmNoPadding.AUTH_TAG_LENGTH / 8];
+    private final ByteBuffer nonce = ByteBuffer.allocate(AesGcmNoPadding.NONCE_LENGTH);
+    private long counter;
+    private double best = Double.NaN;
+
+    private Throughput(Provider provider) throws Exception {
+      this.provider = provider;
+      this.cipher = Cipher.getInstance(AesGcmNoPadding.CIPHER_ALGORITHM, provider);
+      byte[] keyBytes = new byte[16];
+      new SecureRandom().nextBytes(keyBytes);
+      this.key = new SecretKeySpec(keyBytes, AesGcmNoPadding.KEY_ALGORITHM);
+    }
+
+    private void measure() {
+      try {
+        long operations = 0;
+        long start = System.nanoTime();
+        long now = start;
+        while (now - start < BENCHMARK_ROUND_NANOS) {
+          // providers reject reusing key and nonce for encryption, hence a counter nonce
+          nonce.putLong(0, ++counter);
+          cipher.init(
+              Cipher.ENCRYPT_MODE,
+              key,
+              new GCMParameterSpec(AesGcmNoPadding.AUTH_TAG_LENGTH, nonce.array()));
+          cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, 0);
+          operations++;
+          now = System.nanoTime();
+        }
+        double throughput = operations * (double) BENCHMARK_PLAINTEXT_SIZE * 1e9 / (now - start);
+        if (Double.isNaN(best) || throughput > best) {
+          best = throughput;
+        }
+      } catch (Exception e) {
+        LOGGER.warn("cipher provider {} failed the benchmark", provider, e);
+      }
+    }
+  }
+
+  private static Provider loadProvider(String className, String accessor) {
+    try {
+      Class<?> clazz = Class.forName(className);
+      try {
+        return (Provider) clazz.getField(accessor).get(null);
+      } catch (NoSuchFieldException e) {
+        return (Provider) clazz.getMethod(accessor).invoke(null);
+      }
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("failed to load cipher provider " + className, e);
+    }
+  }
+
+  private static byte[] hex(String hex) {
+    return HexFormat.of().parseHex(hex);
+  }
+}
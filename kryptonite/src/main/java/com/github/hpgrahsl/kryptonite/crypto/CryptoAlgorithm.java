@@ -16,9 +16,76 @@
 
 package com.github.hpgrahsl.kryptonite.crypto;
 
+import java.nio.ByteBuffer;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
 public interface CryptoAlgorithm {
 
-  byte[] cipher(byte[] plaintext, byte[] key) throws Exception;
+  String getKeyAlgorithm();
+
+  /** Whether data keys of the given length in bytes can be used with this algorithm. */
+  boolean isValidKeyLength(int keyLength);
+
+  byte[] cipher(byte[] plaintext, SecretKey key) throws Exception;
+
+  byte[] decipher(byte[] ciphertext, SecretKey key) throws Exception;
+
+  /**
+   * Whether equal plaintexts encrypted under the same key yield equal ciphertexts. Only the results
+   * of deterministic algorithms may be memoized.
+   */
+  default boolean isDeterministic() {
+    return false;
+  }
+
+  /**
+   * Returns the exact length of the ciphertext of a plaintext of the given length or -1 if it is
+   * not known in advance, in which case the {@link ByteBuffer} based methods must not be used to
+   * encrypt.
+   */
+  default int ciphertextLength(int plaintextLength) {
+    return -1;
+  }
+
+  /**
+   * Encrypts the concatenation of the remaining bytes of the given plaintext buffers, which may be
+   * direct buffers, into the given ciphertext buffer, which must have at least {@link
+   * #ciphertextLength(int)} bytes remaining. The positions of all buffers are advanced past the
+   * bytes consumed or written. This default implementation copies the plaintext into an array.
+   */
+  default void cipher(ByteBuffer[] plaintext, ByteBuffer ciphertext, SecretKey key)
+      throws Exception {
+    int length = 0;
+    for (ByteBuffer buffer : plaintext) {
+      length += buffer.remaining();
+    }
+    byte[] bytes = new byte[length];
+    int pos = 0;
+    for (ByteBuffer buffer : plaintext) {
+      int remaining = buffer.remaining();
+      buffer.get(bytes, pos, remaining);
+      pos += remaining;
+    }
+    ciphertext.put(cipher(bytes, key));
+  }
+
+  /**
+   * Decrypts the remaining bytes of the given ciphertext buffer, which may be a direct buffer, and
+   * advances its position to its limit. This default implementation copies the ciphertext into an
+   * array.
+   */
+  default ByteBuffer decipher(ByteBuffer ciphertext, SecretKey key) throws Exception {
+    byte[] bytes = new byte[ciphertext.remaining()];
+    ciphertext.get(bytes);
+    return ByteBuffer.wrap(decipher(bytes, key));
+  }
+
+  default byte[] cipher(byte[] plaintext, byte[] key) throws Exception {
+    return cipher(plaintext, new SecretKeySpec(key, getKeyAlgorithm()));
+  }
 
-  byte[] decipher(byte[] ciphertext, byte[] key) throws Exception;
+  default byte[] decipher(byte[] ciphertext, byte[] key) throws Exception {
+    return decipher(ciphertext, new SecretKeySpec(key, getKeyAlgorithm()));
+  }
 }
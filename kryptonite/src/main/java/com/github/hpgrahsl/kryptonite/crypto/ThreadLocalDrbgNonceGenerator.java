@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Draws random nonces from one DRBG instance per thread, so that concurrent tasks never contend on
+ * a shared {@link SecureRandom}. Falls back to the platform default algorithm if no DRBG is
+ * available.
+ */
+public class ThreadLocalDrbgNonceGenerator implements NonceGenerator {
+
+  public static final String SECURE_RANDOM_ALGORITHM = "DRBG";
+
+  private static final ThreadLocal<SecureRandom> SECURE_RANDOM =
+      ThreadLocal.withInitial(ThreadLocalDrbgNonceGenerator::newSecureRandom);
+
+  @Override
+  public void nextNonce(byte[] buffer, int offset, int length) {
+    SecureRandom secureRandom = SECURE_RANDOM.get();
+    if (offset == 0 && length == buffer.length) {
+      secureRandom.nextBytes(buffer);
+      return;
+    }
+    byte[] nonce = new byte[length];
+    secureRandom.nextBytes(nonce);
+    System.arraycopy(nonce, 0, buffer, offset, length);
+  }
+
+  private static SecureRandom newSecureRandom() {
+    try {
+      return SecureRandom.getInstance(SECURE_RANDOM_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      return new SecureRandom();
+    }
+  }
+}
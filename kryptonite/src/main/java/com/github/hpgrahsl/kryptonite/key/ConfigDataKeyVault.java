@@ -17,10 +17,12 @@
 package com.github.hpgrahsl.kryptonite.key;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ConfigDataKeyVault extends KeyVault {
 
   private final Map<String, byte[]> keys;
+  private final Map<String, KeyHandle> keyHandles = new ConcurrentHashMap<>();
 
   public ConfigDataKeyVault(Map<String, byte[]> keys) {
     this(keys, new NoOpKeyStrategy());
@@ -29,10 +31,25 @@ public class ConfigDataKeyVault extends KeyVault {
   public ConfigDataKeyVault(Map<String, byte[]> keys, KeyStrategy keyStrategy) {
     super(keyStrategy);
     this.keys = keys;
+    keys.keySet().forEach(this::registerKeyIdentifier);
   }
 
   @Override
   public byte[] readKey(String identifier) {
+    return keyStrategy.processKey(lookupKey(identifier), identifier);
+  }
+
+  @Override
+  public KeyHandle readKeyHandle(String identifier) {
+    KeyHandle keyHandle = keyHandles.get(identifier);
+    if (keyHandle == null) {
+      keyHandle =
+          keyHandles.computeIfAbsent(identifier, id -> keyStrategy.prepareKey(lookupKey(id), id));
+    }
+    return keyHandle;
+  }
+
+  private byte[] lookupKey(String identifier) {
     byte[] keyBytes = keys.get(identifier);
     if (keyBytes == null) {
       throw new KeyNotFoundException(
@@ -42,7 +59,7 @@ public class ConfigDataKeyVault extends KeyVault {
               + ConfigDataKeyVault.class.getName()
               + " key vault");
     }
-    return keyStrategy.processKey(keyBytes, identifier);
+    return keyBytes;
   }
 
   @Override
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.key;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Immutable, prepared handle for one version of a data key. Key vaults hand these out instead of
+ * raw key bytes so that the {@link SecretKey} objects are built once per key version rather than
+ * once per processed field.
+ *
+ * <p>Every handle carries a 32-bit key id derived from its identifier, which binary envelope
+ * headers refer to instead of the key version string.
+ */
+public final class KeyHandle {
+
+  public static final String KEY_ALGORITHM_DEFAULT = "AES";
+
+  private static final String KEY_ID_DIGEST_ALGORITHM = "SHA-256";
+
+  private final String identifier;
+  private final int keyId;
+  private final SecretKey secretKey;
+  private final Map<String, SecretKey> algorithmBindings = new ConcurrentHashMap<>();
+
+  public KeyHandle(String identifier, byte[] keyBytes) {
+    this.identifier = identifier;
+    this.keyId = keyIdOf(identifier);
+    this.secretKey = new SecretKeySpec(keyBytes, KEY_ALGORITHM_DEFAULT);
+  }
+
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  public int getKeyId() {
+    return keyId;
+  }
+
+  public SecretKey getSecretKey() {
+    return secretKey;
+  }
+
+  public SecretKey getSecretKey(String keyAlgorithm) {
+    if (KEY_ALGORITHM_DEFAULT.equals(keyAlgorithm)) {
+      return secretKey;
+    }
+    return algorithmBindings.computeIfAbsent(
+        keyAlgorithm, ka -> new SecretKeySpec(secretKey.getEncoded(), ka));
+  }
+
+  /**
+   * Returns the key id of the given identifier, i.e. the first 4 bytes of the SHA-256 digest of its
+   * UTF-8 encoding, which is stable across processes and key vault implementations.
+   */
+  public static int keyIdOf(String identifier) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance(KEY_ID_DIGEST_ALGORITHM)
+              .digest(identifier.getBytes(StandardCharsets.UTF_8));
+      return (digest[0] & 0xFF) << 24
+          | (digest[1] & 0xFF) << 16
+          | (digest[2] & 0xFF) << 8
+          | (digest[3] & 0xFF);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "KeyHandle{" + "identifier='" + identifier + "'}";
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.key;
+
+/**
+ * Open addressing table from key ids to the identifiers of the keys known to a {@link KeyVault},
+ * each slot caching the prepared {@link KeyHandle} once it has been read. Lookups take a plain
+ * {@code int} and run without locks or string operations. Registrations are rare and replace the
+ * slot array copy-on-write.
+ */
+final class KeyIdTable {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  static final class Slot {
+
+    final int keyId;
+    final String identifier;
+    volatile KeyHandle keyHandle;
+
+    private Slot(int keyId, String identifier) {
+      this.keyId = keyId;
+      this.identifier = identifier;
+    }
+  }
+
+  private volatile Slot[] slots = new Slot[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Registers the identifier under its key id, which is a no-op if it has been registered before.
+   *
+   * @throws KeyInvalidException if a different identifier has already been registered under the
+   *     same key id
+   */
+  synchronized void register(String identifier) {
+    int keyId = KeyHandle.keyIdOf(identifier);
+    Slot existing = get(keyId);
+    if (existing != null) {
+      if (!existing.identifier.equals(identifier)) {
+        throw new KeyInvalidException(
+            "key identifiers '"
+                + existing.identifier
+                + "' and '"
+                + identifier
+                + "' map to the same key id "
+                + keyId);
+      }
+      return;
+    }
+    Slot[] current = slots;
+    Slot[] updated =
+        2 * (size + 1) > current.length ? new Slot[2 * current.length] : current.clone();
+    if (updated.length != current.length) {
+      for (Slot slot : current) {
+        if (slot != null) {
+          insert(updated, slot);
+        }
+      }
+    }
+    insert(updated, new Slot(keyId, identifier));
+    size++;
+    slots = updated;
+  }
+
+  /** Returns the slot registered under the given key id or null if there is none. */
+  Slot get(int keyId) {
+    Slot[] current = slots;
+    int mask = current.length - 1;
+    for (int i = mix(keyId) & mask; ; i = (i + 1) & mask) {
+      Slot slot = current[i];
+      if (slot == null || slot.keyId == keyId) {
+        return slot;
+      }
+    }
+  }
+
+  /** Drops the key handle cached for the given identifier, e.g. after it expired in the vault. */
+  void invalidate(String identifier) {
+    Slot slot = get(KeyHandle.keyIdOf(identifier));
+    if (slot != null && slot.identifier.equals(identifier)) {
+      slot.keyHandle = null;
+    }
+  }
+
+  private static void insert(Slot[] target, Slot slot) {
+    int mask = target.length - 1;
+    int i = mix(slot.keyId) & mask;
+    while (target[i] != null) {
+      i = (i + 1) & mask;
+    }
+    target[i] = slot;
+  }
+
+  private static int mix(int keyId) {
+    // key ids are digest prefixes already, folding in the upper bits suffices for small tables
+    return keyId ^ (keyId >>> 16);
+  }
+}
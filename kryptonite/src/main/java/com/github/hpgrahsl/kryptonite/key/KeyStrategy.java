@@ -29,5 +29,9 @@ public abstract class KeyStrategy {
 
   public abstract byte[] processKey(byte[] origKeyBytes, String identifier);
 
+  public KeyHandle prepareKey(byte[] origKeyBytes, String identifier) {
+    return new KeyHandle(identifier, processKey(origKeyBytes, identifier));
+  }
+
   public abstract void close();
 }
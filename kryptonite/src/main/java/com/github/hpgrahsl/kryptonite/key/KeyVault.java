@@ -20,11 +20,62 @@ public abstract class KeyVault {
 
   protected KeyStrategy keyStrategy;
 
+  private final KeyIdTable keyIdTable = new KeyIdTable();
+
   public KeyVault(KeyStrategy keyStrategy) {
     this.keyStrategy = keyStrategy;
   }
 
   public abstract byte[] readKey(String identifier);
 
+  public abstract KeyHandle readKeyHandle(String identifier);
+
+  /**
+   * Returns the key handle for the given key id (see {@link KeyHandle#keyIdOf(String)}) of a key
+   * which has been registered with this vault. After the first read the handle is served from the
+   * key id table directly, without going through {@link #readKeyHandle(String)} again.
+   *
+   * @throws KeyNotFoundException if no key is registered under the key id
+   */
+  public KeyHandle readKeyHandle(int keyId) {
+    KeyIdTable.Slot slot = keyIdTable.get(keyId);
+    if (slot == null && refreshKeyIdentifiers()) {
+      slot = keyIdTable.get(keyId);
+    }
+    if (slot == null) {
+      throw new KeyNotFoundException(
+          "could not find key for key id " + keyId + " in " + getClass().getName() + " key vault");
+    }
+    KeyHandle keyHandle = slot.keyHandle;
+    if (keyHandle == null) {
+      keyHandle = readKeyHandle(slot.identifier);
+      slot.keyHandle = keyHandle;
+    }
+    return keyHandle;
+  }
+
+  /**
+   * Makes the key with the given identifier resolvable by its key id. Vaults register all keys they
+   * know of when they load.
+   *
+   * @throws KeyInvalidException if another registered identifier maps to the same key id
+   */
+  protected void registerKeyIdentifier(String identifier) {
+    keyIdTable.register(identifier);
+  }
+
+  /** Drops the handle cached in the key id table for the given identifier. */
+  protected void invalidateKeyHandle(String identifier) {
+    keyIdTable.invalidate(identifier);
+  }
+
+  /**
+   * Invoked for key ids which are not registered, giving vaults the chance to register keys added
+   * since they loaded. Returns whether any identifiers might have been registered.
+   */
+  protected boolean refreshKeyIdentifiers() {
+    return false;
+  }
+
   public abstract void close();
 }
@@ -4,6 +4,8 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.hpgrahsl.kryptonite.key.KeyHandle;
 import com.github.hpgrahsl.kryptonite.key.KeyStrategy;
 import com.github.hpgrahsl.kryptonite.key.KeyVault;
 import com.google.cloud.secretmanager.v1.AccessSecretVersionResponse;
@@ -22,10 +24,13 @@ import org.slf4j.LoggerFactory;
 public class GcpSecretManagerKeyVault extends KeyVault {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(GcpSecretManagerKeyVault.class);
+  private static final long KEY_ID_REFRESH_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
 
   private final SecretManagerServiceClient client;
   private final SecretName secretName;
   private final LoadingCache<String, byte[]> secretCache;
+  private final LoadingCache<String, KeyHandle> keyHandleCache;
+  private volatile long lastKeyIdRefresh;
 
   public GcpSecretManagerKeyVault(String secretName, String keyName) throws IOException {
     this(secretName, new GcpKmsKeyStrategy(keyName), 24L, TimeUnit.HOURS.name());
@@ -54,7 +59,16 @@ public class GcpSecretManagerKeyVault extends KeyVault {
                   }
                 })
             .build(key -> accessSecretVersion(key));
+    this.keyHandleCache =
+        Caffeine.newBuilder()
+            .expireAfterWrite(duration, TimeUnit.valueOf(unit))
+            .scheduler(Scheduler.systemScheduler())
+            .removalListener(
+                (String identifier, KeyHandle keyHandle, RemovalCause removalCause) ->
+                    invalidateKeyHandle(identifier))
+            .build(key -> new KeyHandle(key, readKey(key)));
     initKeys();
+    lastKeyIdRefresh = System.nanoTime();
   }
 
   private void initKeys() {
@@ -65,7 +79,8 @@ public class GcpSecretManagerKeyVault extends KeyVault {
               if (version.getState() == State.ENABLED) {
                 final String name = version.getName();
                 LOGGER.info("Init key: " + name);
-                secretCache.get(name);
+                keyHandleCache.get(name);
+                registerKeyIdentifier(name);
               }
             });
   }
@@ -77,6 +92,18 @@ public class GcpSecretManagerKeyVault extends KeyVault {
     return keyStrategy.processKey(keyBytes, identifier);
   }
 
+  @Override
+  protected synchronized boolean refreshKeyIdentifiers() {
+    long now = System.nanoTime();
+    if (now - lastKeyIdRefresh < KEY_ID_REFRESH_INTERVAL_NANOS) {
+      return false;
+    }
+    lastKeyIdRefresh = now;
+    LOGGER.info("Refresh key ids of secret versions: " + secretName);
+    initKeys();
+    return true;
+  }
+
   @Override
   public byte[] readKey(String identifier) {
     byte[] keyBytes = secretCache.get(identifier);
@@ -87,8 +114,14 @@ public class GcpSecretManagerKeyVault extends KeyVault {
     return keyBytes;
   }
 
+  @Override
+  public KeyHandle readKeyHandle(String identifier) {
+    return keyHandleCache.get(identifier);
+  }
+
   @Override
   public void close() {
+    this.keyHandleCache.invalidateAll();
     this.client.shutdown();
     try {
       if (!this.client.awaitTermination(30, TimeUnit.SECONDS)) {
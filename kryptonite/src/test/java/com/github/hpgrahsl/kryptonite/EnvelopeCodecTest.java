@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EnvelopeCodecTest {
+
+  private static final int KEY_ID = 0xCAFEBABE;
+  private static final int ALGORITHM_ID = 4;
+
+  @ParameterizedTest
+  @ValueSource(strings = {"#", "::", "€", "§€"})
+  @DisplayName("encode and decode Base64 envelopes just like java.util.Base64 for every length")
+  void encodeAndDecodeLikeJdkBase64(String delimiter) {
+    EnvelopeCodec codec = new EnvelopeCodec(delimiter);
+    Random random = new Random(42);
+    for (int length = 0; length <= 64; length++) {
+      byte[] cipherText = new byte[length];
+      random.nextBytes(cipherText);
+      String base64 = Base64.getEncoder().encodeToString(cipherText);
+
+      String envelope = codec.encode("17", cipherText);
+      int versionEnd = codec.versionEnd(envelope);
+      String message = "length " + length;
+      assertAll(
+          message,
+          () -> assertEquals("17" + delimiter + base64, envelope),
+          () -> assertFalse(codec.hasKeyIdHeader(envelope)),
+          () -> assertEquals(2, versionEnd),
+          () -> assertEquals("17", codec.version(envelope, versionEnd)),
+          () -> assertTrue(codec.versionMatches(envelope, versionEnd, "17")),
+          () -> assertFalse(codec.versionMatches(envelope, versionEnd, "1")),
+          () -> assertArrayEquals(cipherText, codec.decodePayload(envelope, versionEnd)),
+          () -> assertArrayEquals(cipherText, codec.decodePayload(base64, -1)),
+          () ->
+              assertArrayEquals(
+                  cipherText,
+                  codec.decodePayload(base64.replace("=", ""), codec.versionEnd(base64))));
+    }
+  }
+
+  @Test
+  @DisplayName("encode the given range of the ciphertext only")
+  void encodeRange() {
+    EnvelopeCodec codec = new EnvelopeCodec("#");
+    byte[] cipherText = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    byte[] range = Arrays.copyOfRange(cipherText, 3, 8);
+
+    assertAll(
+        () ->
+            assertEquals(
+                "v#" + Base64.getEncoder().encodeToString(range),
+                codec.encode("v", cipherText, 3, 5)),
+        () ->
+            assertEquals(
+                codec.encodeKeyId(KEY_ID, ALGORITHM_ID, range),
+                codec.encodeKeyId(KEY_ID, ALGORITHM_ID, cipherText, 3, 5)),
+        () ->
+            assertArrayEquals(codec.encodeRaw("v", range), codec.encodeRaw("v", cipherText, 3, 5)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"#", "::", "€"})
+  @DisplayName("pack and parse key id headers of Base64 envelopes")
+  void encodeAndParseKeyIdHeader(String delimiter) {
+    EnvelopeCodec codec = new EnvelopeCodec(delimiter);
+    byte[] cipherText = {1, 2, 3, 4, 5};
+    byte[] headed = {
+      EnvelopeCodec.KEY_ID_HEADER_FORMAT,
+      4,
+      (byte) 0xCA,
+      (byte) 0xFE,
+      (byte) 0xBA,
+      (byte) 0xBE,
+      1,
+      2,
+      3,
+      4,
+      5
+    };
+
+    String envelope = codec.encodeKeyId(KEY_ID, ALGORITHM_ID, cipherText);
+    long header = codec.keyIdHeader(envelope);
+    assertAll(
+        () ->
+            assertEquals(
+                delimiter + delimiter + Base64.getEncoder().encodeToString(headed), envelope),
+        () -> assertTrue(codec.hasKeyIdHeader(envelope)),
+        () -> assertEquals(KEY_ID, EnvelopeCodec.keyId(header)),
+        () -> assertEquals(ALGORITHM_ID, EnvelopeCodec.algorithmId(header)),
+        () -> assertArrayEquals(cipherText, codec.decodeKeyIdPayload(envelope)));
+  }
+
+  @Test
+  @DisplayName("tell key id envelopes apart from key version envelopes with an empty version")
+  void distinguishKeyIdHeaderFromEmptyKeyVersion() {
+    EnvelopeCodec codec = new EnvelopeCodec("#");
+    String emptyVersion = codec.encode("", new byte[] {1, 2, 3});
+
+    assertAll(
+        () -> assertFalse(codec.hasKeyIdHeader(emptyVersion)),
+        () -> assertEquals(0, codec.versionEnd(emptyVersion)),
+        () -> assertTrue(codec.hasKeyIdHeader(codec.encodeKeyId(1, 1, new byte[0]))));
+  }
+
+  @Test
+  @DisplayName("reject key versions containing the delimiter")
+  void rejectKeyVersionContainingDelimiter() {
+    assertAll(
+        () ->
+            assertThrows(
+                DataException.class, () -> new EnvelopeCodec("#").encode("1#2", new byte[1])),
+        () ->
+            assertThrows(
+                DataException.class, () -> new EnvelopeCodec("::").encode("v::", new byte[1])),
+        () ->
+            assertThrows(
+                DataException.class, () -> new EnvelopeCodec("€").encode("€1", new byte[1])),
+        () -> assertThrows(IllegalArgumentException.class, () -> new EnvelopeCodec("")));
+  }
+
+  @Test
+  @DisplayName("reject truncated or malformed Base64 envelopes")
+  void rejectMalformedEnvelopes() {
+    EnvelopeCodec codec = new EnvelopeCodec("#");
+    String keyIdEnvelope = codec.encodeKeyId(KEY_ID, ALGORITHM_ID, new byte[] {1, 2, 3});
+    String unsupportedFormat =
+        "##" + Base64.getEncoder().encodeToString(new byte[] {2, 4, 0, 0, 0, 1, 9, 9, 9});
+
+    assertAll(
+        () -> assertThrows(DataException.class, () -> codec.versionEnd("1#AAAA#AAAA")),
+        () -> assertThrows(DataException.class, () -> codec.keyIdHeader("##AQQA")),
+        () -> assertThrows(DataException.class, () -> codec.keyIdHeader(unsupportedFormat)),
+        () ->
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> codec.decodeKeyIdPayload(keyIdEnvelope.substring(0, 11))),
+        () -> assertThrows(IllegalArgumentException.class, () -> codec.decodePayload("1#AAAAA", 1)),
+        () -> assertThrows(IllegalArgumentException.class, () -> codec.decodePayload("1#AA*A", 1)),
+        () -> assertThrows(IllegalArgumentException.class, () -> codec.decodePayload("1#AA€A", 1)),
+        () -> assertThrows(IllegalArgumentException.class, () -> codec.decodePayload("1#A===", 1)));
+  }
+
+  @Test
+  @DisplayName("encode and parse raw envelopes with key versions and key id headers")
+  void encodeAndParseRawEnvelopes() {
+    EnvelopeCodec codec = new EnvelopeCodec("#");
+    byte[] cipherText = {9, 8, 7};
+    byte[] versioned = codec.encodeRaw("v€", cipherText);
+    int versionLength = codec.rawVersionLength(versioned);
+    byte[] keyIdEnvelope = codec.encodeRawKeyId(KEY_ID, ALGORITHM_ID, cipherText);
+    long header = codec.rawKeyIdHeader(keyIdEnvelope);
+    byte[] unversioned = codec.encodeRaw("", cipherText);
+
+    assertAll(
+        () -> assertFalse(codec.rawHasKeyIdHeader(versioned)),
+        () -> assertEquals(4, versionLength),
+        () -> assertEquals("v€", codec.rawVersion(versioned, versionLength)),
+        () -> assertFalse(codec.rawVersionMatches(versioned, versionLength, "v€")),
+        () -> assertArrayEquals(cipherText, codec.rawPayload(versioned, versionLength)),
+        () -> assertEquals(0, codec.rawVersionLength(unversioned)),
+        () -> assertArrayEquals(cipherText, codec.rawPayload(unversioned, 0)),
+        () -> assertTrue(codec.rawHasKeyIdHeader(keyIdEnvelope)),
+        () -> assertEquals(KEY_ID, EnvelopeCodec.keyId(header)),
+        () -> assertEquals(ALGORITHM_ID, EnvelopeCodec.algorithmId(header)),
+        () -> assertArrayEquals(cipherText, codec.rawKeyIdPayload(keyIdEnvelope)));
+  }
+
+  @Test
+  @DisplayName("reject truncated or malformed raw envelopes")
+  void rejectMalformedRawEnvelopes() {
+    EnvelopeCodec codec = new EnvelopeCodec("#");
+    char[] longVersion = new char[EnvelopeCodec.MAX_RAW_KEY_VERSION_LENGTH + 1];
+    Arrays.fill(longVersion, 'v');
+
+    assertAll(
+        () -> assertThrows(DataException.class, () -> codec.rawVersionLength(new byte[0])),
+        () -> assertThrows(DataException.class, () -> codec.rawVersionLength(new byte[] {5, 'v'})),
+        () ->
+            assertThrows(
+                DataException.class, () -> codec.rawKeyIdHeader(new byte[] {(byte) 0xFF, 1, 4})),
+        () ->
+            assertThrows(
+                DataException.class,
+                () -> codec.rawKeyIdHeader(new byte[] {(byte) 0xFF, 2, 4, 0, 0, 0, 1})),
+        () ->
+            assertThrows(
+                DataException.class, () -> codec.encodeRaw(new String(longVersion), new byte[1])));
+  }
+}
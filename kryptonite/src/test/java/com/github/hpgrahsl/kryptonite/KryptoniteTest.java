@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import com.github.hpgrahsl.kryptonite.key.ConfigDataKeyVault;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class KryptoniteTest {
+
+  static final String KEY_NAME = "my-demo-secret-key";
+
+  // "version#base64" envelopes written by the original implementation with AES-GCM
+  static final String LEGACY_ENVELOPE =
+      "123#lzblgpP14zoMEYA1xBSrQSz2o680DjLFERyOzHCFhESISLIKlLGKtUmBz/FF1e0XUiEE/26yQ4Q=";
+  static final String LEGACY_ENVELOPE_V2_IV =
+      "123#AkSNV4kZWlI+XhlvcEJ0jTqYGzSfoBY/jaxXWjCqVNPcEDGITCXY1cIAWhZvdyfDMgfeZYOeemc=";
+  static final byte[] LEGACY_PLAINTEXT =
+      "legacy AES-GCM plaintext".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  @DisplayName("decipher legacy AES-GCM envelopes")
+  void decipherLegacyEnvelopes() {
+    Map<String, byte[]> keys = new HashMap<>();
+    keys.put(
+        KEY_NAME + FieldMetaData.IDENTIFIER_DELIMITER_DEFAULT + "123",
+        Base64.getDecoder().decode("YWFhYWFhYWFhYWFhYWFhYQ=="));
+    Kryptonite kryptonite = new Kryptonite(new ConfigDataKeyVault(keys));
+    FieldMetaData metadata = new FieldMetaData("AES/GCM/NoPadding", "String", KEY_NAME, "123");
+
+    assertAll(
+        () -> assertArrayEquals(LEGACY_PLAINTEXT, kryptonite.decipher(LEGACY_ENVELOPE, metadata)),
+        () ->
+            assertArrayEquals(
+                LEGACY_PLAINTEXT, kryptonite.decipher(LEGACY_ENVELOPE_V2_IV, metadata)));
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AesGcmNoPaddingTest {
+
+  static final SecretKey KEY =
+      new SecretKeySpec(
+          "aaaaaaaaaaaaaaaa".getBytes(StandardCharsets.US_ASCII), AesGcmNoPadding.KEY_ALGORITHM);
+  static final byte[] PLAINTEXT = "legacy AES-GCM plaintext".getBytes(StandardCharsets.UTF_8);
+
+  // written by the original implementation, i.e. a random 16 byte IV followed by ciphertext and tag
+  static final String LEGACY_CIPHERTEXT =
+      "lzblgpP14zoMEYA1xBSrQSz2o680DjLFERyOzHCFhESISLIKlLGKtUmBz/FF1e0XUiEE/26yQ4Q=";
+  // legacy ciphertexts whose IV happens to start with the v2 format version byte
+  static final String LEGACY_CIPHERTEXT_V2_IV =
+      "AkSNV4kZWlI+XhlvcEJ0jTqYGzSfoBY/jaxXWjCqVNPcEDGITCXY1cIAWhZvdyfDMgfeZYOeemc=";
+  static final String LEGACY_EMPTY_CIPHERTEXT_V2_IV =
+      "AonGoEPw3sSze0bPzFtG64mOLV3W++kaBknBDSVdUCE=";
+
+  private final AesGcmNoPadding gcm = new AesGcmNoPadding();
+
+  @Test
+  @DisplayName("decipher legacy ciphertexts including those whose IV starts with the v2 version")
+  void decipherLegacyCiphertexts() {
+    byte[] legacy = Base64.getDecoder().decode(LEGACY_CIPHERTEXT);
+    byte[] legacyV2Iv = Base64.getDecoder().decode(LEGACY_CIPHERTEXT_V2_IV);
+    byte[] legacyEmptyV2Iv = Base64.getDecoder().decode(LEGACY_EMPTY_CIPHERTEXT_V2_IV);
+
+    assertAll(
+        () -> assertEquals(AesGcmNoPadding.FORMAT_VERSION_V2, legacyV2Iv[0]),
+        () -> assertEquals(AesGcmNoPadding.FORMAT_VERSION_V2, legacyEmptyV2Iv[0]),
+        () -> assertArrayEquals(PLAINTEXT, gcm.decipher(legacy, KEY)),
+        () -> assertArrayEquals(PLAINTEXT, gcm.decipher(legacyV2Iv, KEY)),
+        () -> assertArrayEquals(new byte[0], gcm.decipher(legacyEmptyV2Iv, KEY)),
+        () -> assertEquals(ByteBuffer.wrap(PLAINTEXT), gcm.decipher(ByteBuffer.wrap(legacy), KEY)),
+        () ->
+            assertEquals(
+                ByteBuffer.wrap(PLAINTEXT), gcm.decipher(ByteBuffer.wrap(legacyV2Iv), KEY)));
+  }
+
+  @Test
+  @DisplayName("write the v2 layout and reject it once tampered with")
+  void cipherV2Layout() throws Exception {
+    byte[] ciphertext = gcm.cipher(PLAINTEXT, KEY);
+    byte[] tampered = ciphertext.clone();
+    tampered[tampered.length - 1] ^= 1;
+
+    assertAll(
+        () -> assertEquals(AesGcmNoPadding.FORMAT_VERSION_V2, ciphertext[0]),
+        () -> assertEquals(gcm.ciphertextLength(PLAINTEXT.length), ciphertext.length),
+        () -> assertArrayEquals(PLAINTEXT, gcm.decipher(ciphertext, KEY)),
+        () -> assertThrows(AEADBadTagException.class, () -> gcm.decipher(tampered, KEY)));
+  }
+}
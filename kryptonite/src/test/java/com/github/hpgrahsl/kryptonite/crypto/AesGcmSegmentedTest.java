@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class AesGcmSegmentedTest {
+
+  static final SecretKey KEY =
+      new SecretKeySpec(
+          "aaaaaaaaaaaaaaaa".getBytes(StandardCharsets.US_ASCII), AesGcmSegmented.KEY_ALGORITHM);
+  static final int SEGMENT_SIZE = AesGcmSegmented.SEGMENT_SIZE_MIN;
+  static final int CIPHERTEXT_SEGMENT_SIZE = SEGMENT_SIZE + AesGcmNoPadding.AUTH_TAG_LENGTH / 8;
+  // two full segments and a shorter last one
+  static final byte[] PLAINTEXT = randomBytes(2 * SEGMENT_SIZE + 952);
+
+  static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+
+  static IntStream headerPositions() {
+    return IntStream.range(0, AesGcmSegmented.HEADER_LENGTH);
+  }
+
+  final AesGcmSegmented segmented = new AesGcmSegmented(SEGMENT_SIZE, null, null);
+
+  @Test
+  @DisplayName("decipher(cipher(plaintext)) = plaintext sequentially and in parallel")
+  void cipherDecipher() throws Exception {
+    ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+    try {
+      AesGcmSegmented parallel = new AesGcmSegmented(SEGMENT_SIZE, null, forkJoinPool);
+      byte[] ciphertext = segmented.cipher(PLAINTEXT, KEY);
+
+      assertAll(
+          () -> assertEquals(AesGcmSegmented.FORMAT_VERSION, ciphertext[0]),
+          () -> assertEquals(segmented.ciphertextLength(PLAINTEXT.length), ciphertext.length),
+          () -> assertArrayEquals(PLAINTEXT, segmented.decipher(ciphertext, KEY)),
+          () -> assertArrayEquals(PLAINTEXT, parallel.decipher(ciphertext, KEY)),
+          () ->
+              assertArrayEquals(
+                  PLAINTEXT, segmented.decipher(parallel.cipher(PLAINTEXT, KEY), KEY)),
+          () ->
+              assertArrayEquals(
+                  new byte[0], segmented.decipher(segmented.cipher(new byte[0], KEY), KEY)));
+    } finally {
+      forkJoinPool.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("reject ciphertexts truncated at a segment boundary")
+  void rejectTruncationAtSegmentBoundary() throws Exception {
+    byte[] ciphertext = segmented.cipher(PLAINTEXT, KEY);
+
+    assertAll(
+        () ->
+            assertThrows(
+                AEADBadTagException.class,
+                () ->
+                    segmented.decipher(
+                        Arrays.copyOf(
+                            ciphertext,
+                            AesGcmSegmented.HEADER_LENGTH + 2 * CIPHERTEXT_SEGMENT_SIZE),
+                        KEY)),
+        () ->
+            assertThrows(
+                AEADBadTagException.class,
+                () ->
+                    segmented.decipher(
+                        Arrays.copyOf(
+                            ciphertext, AesGcmSegmented.HEADER_LENGTH + CIPHERTEXT_SEGMENT_SIZE),
+                        KEY)),
+        () ->
+            assertThrows(
+                AEADBadTagException.class,
+                () ->
+                    segmented.decipher(
+                        Arrays.copyOf(ciphertext, AesGcmSegmented.HEADER_LENGTH), KEY)));
+  }
+
+  @Test
+  @DisplayName("reject ciphertexts with reordered segments")
+  void rejectSwappedSegments() throws Exception {
+    byte[] ciphertext = segmented.cipher(PLAINTEXT, KEY);
+    byte[] swapped = ciphertext.clone();
+    int first = AesGcmSegmented.HEADER_LENGTH;
+    int second = first + CIPHERTEXT_SEGMENT_SIZE;
+    System.arraycopy(ciphertext, first, swapped, second, CIPHERTEXT_SEGMENT_SIZE);
+    System.arraycopy(ciphertext, second, swapped, first, CIPHERTEXT_SEGMENT_SIZE);
+
+    assertThrows(AEADBadTagException.class, () -> segmented.decipher(swapped, KEY));
+  }
+
+  @ParameterizedTest(name = "header byte {0}")
+  @MethodSource("headerPositions")
+  @DisplayName("reject ciphertexts with a flipped header byte")
+  void rejectFlippedHeaderByte(int position) throws Exception {
+    byte[] ciphertext = segmented.cipher(PLAINTEXT, KEY);
+    ciphertext[position] ^= 1;
+
+    assertThrows(AEADBadTagException.class, () -> segmented.decipher(ciphertext, KEY));
+  }
+
+  @Test
+  @DisplayName("encrypt segments spanning several plaintext buffers like contiguous bytes")
+  void cipherByteBuffers() throws Exception {
+    ByteBuffer direct = ByteBuffer.allocateDirect(1700);
+    direct.put(PLAINTEXT, 500, 1700).flip();
+    // the first and the last segment each span two buffers, one of them empty in between
+    ByteBuffer[] plaintext = {
+      ByteBuffer.wrap(PLAINTEXT, 0, 500).slice(),
+      ByteBuffer.allocate(0),
+      direct,
+      ByteBuffer.wrap(PLAINTEXT, 2200, PLAINTEXT.length - 2200)
+    };
+    int ciphertextLength = segmented.ciphertextLength(PLAINTEXT.length);
+    ByteBuffer ciphertext = ByteBuffer.allocate(3 + ciphertextLength);
+    ciphertext.position(3);
+    segmented.cipher(plaintext, ciphertext, KEY);
+
+    assertAll(
+        () -> assertEquals(3 + ciphertextLength, ciphertext.position()),
+        () -> assertEquals(0, plaintext[0].remaining()),
+        () -> assertEquals(0, plaintext[2].remaining()),
+        () -> assertEquals(0, plaintext[3].remaining()),
+        () ->
+            assertArrayEquals(
+                PLAINTEXT,
+                segmented.decipher(
+                    Arrays.copyOfRange(ciphertext.array(), 3, 3 + ciphertextLength), KEY)));
+  }
+}
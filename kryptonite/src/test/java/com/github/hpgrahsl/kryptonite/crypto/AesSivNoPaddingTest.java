@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AesSivNoPaddingTest {
+
+  private final AesSivNoPadding siv = new AesSivNoPadding();
+
+  @Test
+  @DisplayName("match the deterministic authenticated encryption example of RFC 5297 A.1")
+  void matchRfc5297DeterministicExample() throws Exception {
+    SecretKey key = key("fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0" + "f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff");
+    byte[] associatedData = hex("101112131415161718191a1b1c1d1e1f2021222324252627");
+    byte[] plaintext = hex("112233445566778899aabbccddee");
+    byte[] expected = hex("85632d07c6e8f37f950acd320a2ecc93" + "40c02b9690c4dc04daef7f6afe5c");
+
+    assertAll(
+        () -> assertArrayEquals(expected, siv.cipher(plaintext, key, associatedData)),
+        () -> assertArrayEquals(plaintext, siv.decipher(expected, key, associatedData)));
+  }
+
+  @Test
+  @DisplayName("match the nonce-based authenticated encryption example of RFC 5297 A.2")
+  void matchRfc5297NonceBasedExample() throws Exception {
+    SecretKey key = key("7f7e7d7c7b7a79787776757473727170" + "404142434445464748494a4b4c4d4e4f");
+    byte[][] associatedData = {
+      hex("00112233445566778899aabbccddeeffdeaddadadeaddadaffeeddccbbaa99887766554433221100"),
+      hex("102030405060708090a0"),
+      hex("09f911029d74e35bd84156c5635688c0")
+    };
+    byte[] plaintext =
+        hex(
+            "7468697320697320736f6d6520706c61696e7465787420746f20656e6372797074207573696e67"
+                + "205349562d414553");
+    byte[] expected =
+        hex(
+            "7bdb6e3b432667eb06f4d14bff2fbd0fcb900f2fddbe404326601965c889bf17dba77ceb094fa663"
+                + "b7a3f748ba8af829ea64ad544a272e9c485b62a3fd5c0d");
+
+    assertAll(
+        () -> assertArrayEquals(expected, siv.cipher(plaintext, key, associatedData)),
+        () -> assertArrayEquals(plaintext, siv.decipher(expected, key, associatedData)));
+  }
+
+  @Test
+  @DisplayName("reject a ciphertext whose synthetic IV or payload was tampered with")
+  void rejectTamperedCiphertext() throws Exception {
+    SecretKey key = key("fffefdfcfbfaf9f8f7f6f5f4f3f2f1f0" + "f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff");
+    byte[] ciphertext = siv.cipher(hex("112233445566778899aabbccddee"), key);
+    byte[] tamperedIv = ciphertext.clone();
+    tamperedIv[0] ^= 1;
+    byte[] tamperedPayload = ciphertext.clone();
+    tamperedPayload[ciphertext.length - 1] ^= 1;
+
+    assertAll(
+        () -> assertThrows(AEADBadTagException.class, () -> siv.decipher(tamperedIv, key)),
+        () -> assertThrows(AEADBadTagException.class, () -> siv.decipher(tamperedPayload, key)),
+        () ->
+            assertThrows(
+                AEADBadTagException.class,
+                () -> siv.decipher(new byte[AesSivNoPadding.SIV_LENGTH - 1], key)));
+  }
+
+  private static SecretKey key(String hex) {
+    return new SecretKeySpec(hex(hex), AesSivNoPadding.KEY_ALGORITHM);
+  }
+
+  private static byte[] hex(String hex) {
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ChaCha20Poly1305Test {
+
+  static final SecretKey KEY =
+      new SecretKeySpec(
+          "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb".getBytes(StandardCharsets.US_ASCII),
+          ChaCha20Poly1305.KEY_ALGORITHM);
+  static final byte[] PLAINTEXT = "some foo bla text".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  @DisplayName("prefix the ciphertext with the generated nonce, readable by the plain JDK cipher")
+  void prefixCiphertextWithNonce() throws Exception {
+    AtomicInteger counter = new AtomicInteger();
+    ChaCha20Poly1305 chaCha =
+        new ChaCha20Poly1305((buffer, offset, length) -> buffer[offset] = (byte) counter.get());
+    counter.set(7);
+    byte[] ciphertext = chaCha.cipher(PLAINTEXT, KEY);
+    byte[] nonce = Arrays.copyOf(ciphertext, ChaCha20Poly1305.NONCE_LENGTH);
+    Cipher jdk = Cipher.getInstance(ChaCha20Poly1305.CIPHER_ALGORITHM);
+    jdk.init(Cipher.DECRYPT_MODE, KEY, new IvParameterSpec(nonce));
+
+    assertAll(
+        () -> assertEquals(chaCha.ciphertextLength(PLAINTEXT.length), ciphertext.length),
+        () -> assertEquals(12 + PLAINTEXT.length + 16, ciphertext.length),
+        () -> assertEquals(7, ciphertext[0]),
+        () ->
+            assertArrayEquals(
+                PLAINTEXT,
+                jdk.doFinal(
+                    ciphertext,
+                    ChaCha20Poly1305.NONCE_LENGTH,
+                    ciphertext.length - ChaCha20Poly1305.NONCE_LENGTH)));
+  }
+
+  @Test
+  @DisplayName("use a fresh nonce per ciphertext and decipher the same ciphertext repeatedly")
+  void decipherRepeatedly() throws Exception {
+    ChaCha20Poly1305 chaCha = new ChaCha20Poly1305();
+    byte[] first = chaCha.cipher(PLAINTEXT, KEY);
+    byte[] second = chaCha.cipher(PLAINTEXT, KEY);
+
+    assertAll(
+        () ->
+            assertFalse(
+                Arrays.equals(
+                    first,
+                    0,
+                    ChaCha20Poly1305.NONCE_LENGTH,
+                    second,
+                    0,
+                    ChaCha20Poly1305.NONCE_LENGTH)),
+        // the pooled cipher refuses to be initialized with the previous key and nonce again
+        () -> assertArrayEquals(PLAINTEXT, chaCha.decipher(first, KEY)),
+        () -> assertArrayEquals(PLAINTEXT, chaCha.decipher(first, KEY)),
+        () ->
+            assertEquals(ByteBuffer.wrap(PLAINTEXT), chaCha.decipher(ByteBuffer.wrap(first), KEY)),
+        () -> assertArrayEquals(PLAINTEXT, chaCha.decipher(second, KEY)));
+  }
+
+  @Test
+  @DisplayName("encrypt plaintext spread across several buffers like the same contiguous bytes")
+  void cipherByteBuffers() throws Exception {
+    ChaCha20Poly1305 chaCha = new ChaCha20Poly1305();
+    ByteBuffer[] plaintext = {
+      ByteBuffer.wrap(PLAINTEXT, 0, 5).slice(),
+      ByteBuffer.allocate(0),
+      ByteBuffer.allocateDirect(PLAINTEXT.length - 5).put(PLAINTEXT, 5, PLAINTEXT.length - 5).flip()
+    };
+    ByteBuffer ciphertext = ByteBuffer.allocate(chaCha.ciphertextLength(PLAINTEXT.length));
+    chaCha.cipher(plaintext, ciphertext, KEY);
+
+    assertAll(
+        () -> assertEquals(0, ciphertext.remaining()),
+        () -> assertArrayEquals(PLAINTEXT, chaCha.decipher(ciphertext.array(), KEY)));
+  }
+
+  @Test
+  @DisplayName("reject tampered, truncated and foreign-key ciphertexts")
+  void rejectTamperedCiphertexts() throws Exception {
+    ChaCha20Poly1305 chaCha = new ChaCha20Poly1305();
+    byte[] ciphertext = chaCha.cipher(PLAINTEXT, KEY);
+    byte[] tamperedNonce = ciphertext.clone();
+    tamperedNonce[0] ^= 1;
+    byte[] tamperedTag = ciphertext.clone();
+    tamperedTag[ciphertext.length - 1] ^= 1;
+    SecretKey otherKey =
+        new SecretKeySpec(
+            "cccccccccccccccccccccccccccccccc".getBytes(StandardCharsets.US_ASCII),
+            ChaCha20Poly1305.KEY_ALGORITHM);
+
+    assertAll(
+        () -> assertThrows(AEADBadTagException.class, () -> chaCha.decipher(tamperedNonce, KEY)),
+        () -> assertThrows(AEADBadTagException.class, () -> chaCha.decipher(tamperedTag, KEY)),
+        () -> assertThrows(AEADBadTagException.class, () -> chaCha.decipher(ciphertext, otherKey)),
+        () -> assertThrows(AEADBadTagException.class, () -> chaCha.decipher(new byte[27], KEY)),
+        () ->
+            assertThrows(
+                AEADBadTagException.class, () -> chaCha.decipher(ByteBuffer.allocate(27), KEY)));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CipherProviderRegistryTest {
+
+  static final SecretKey KEY =
+      new SecretKeySpec(
+          "aaaaaaaaaaaaaaaa".getBytes(StandardCharsets.US_ASCII), AesGcmNoPadding.KEY_ALGORITHM);
+
+  @Test
+  @DisplayName("select a provider by name and back AES-GCM ciphers with it")
+  void selectNamedProvider() throws Exception {
+    CipherProviderRegistry.Selection selection = CipherProviderRegistry.select("SunJCE");
+    AesGcmNoPadding aesGcm =
+        new AesGcmNoPadding(new ThreadLocalDrbgNonceGenerator(), selection.getProvider());
+    byte[] plaintext = "some foo bla text".getBytes(StandardCharsets.UTF_8);
+
+    assertAll(
+        () -> assertEquals("SunJCE", selection.getName()),
+        () -> assertSame(Security.getProvider("SunJCE"), selection.getProvider()),
+        () -> assertTrue(Double.isNaN(selection.getThroughput())),
+        () -> assertSame(selection.getProvider(), aesGcm.getProvider()),
+        () ->
+            assertSame(
+                selection.getProvider(),
+                new AesGcmSegmented(4096, selection.getProvider(), null).getProvider()),
+        () -> assertArrayEquals(plaintext, aesGcm.decipher(aesGcm.cipher(plaintext, KEY), KEY)));
+  }
+
+  @Test
+  @DisplayName("select the JCE default without a provider")
+  void selectDefaultProvider() {
+    CipherProviderRegistry.Selection selection =
+        CipherProviderRegistry.select(CipherProviderRegistry.DEFAULT);
+
+    assertAll(
+        () -> assertEquals(CipherProviderRegistry.DEFAULT, selection.getName()),
+        () -> assertNull(selection.getProvider()),
+        () -> assertTrue(Double.isNaN(selection.getThroughput())));
+  }
+
+  @Test
+  @DisplayName("select the fastest provider passing the known-answer test")
+  void selectFastestProvider() {
+    // SUN offers no ciphers at all, so it fails the known-answer test and must be skipped
+    CipherProviderRegistry.register("SUN", () -> Security.getProvider("SUN"));
+    CipherProviderRegistry.Selection selection =
+        CipherProviderRegistry.select(CipherProviderRegistry.AUTO);
+
+    assertAll(
+        () ->
+            assertFalse(CipherProviderRegistry.passesKnownAnswerTest(Security.getProvider("SUN"))),
+        () -> assertTrue(CipherProviderRegistry.names().contains(selection.getName())),
+        () -> assertFalse("SUN".equals(selection.getName())),
+        () -> assertTrue(CipherProviderRegistry.passesKnownAnswerTest(selection.getProvider())),
+        () -> assertTrue(selection.getThroughput() > 0, selection.toString()));
+  }
+
+  @Test
+  @DisplayName("reject unknown providers and providers failing the known-answer test")
+  void rejectUnusableProviders() {
+    CipherProviderRegistry.register("Unavailable", () -> null);
+
+    assertAll(
+        () ->
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> CipherProviderRegistry.select("NoSuchProvider")),
+        () ->
+            assertThrows(
+                IllegalArgumentException.class, () -> CipherProviderRegistry.select("Unavailable")),
+        () ->
+            assertThrows(
+                IllegalArgumentException.class, () -> CipherProviderRegistry.select("SUN")));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021. Hans-Peter Grahsl (grahslhp@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.hpgrahsl.kryptonite.key;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class KeyIdTableTest {
+
+  // two identifiers whose SHA-256 digests share the leading 4 bytes
+  static final String COLLIDING_IDENTIFIER_1 = "key-19767/versions/1";
+  static final String COLLIDING_IDENTIFIER_2 = "key-23217/versions/1";
+
+  @Test
+  @DisplayName("register identifiers under their key ids and ignore repeated registrations")
+  void registerIdentifiers() {
+    KeyIdTable table = new KeyIdTable();
+    table.register("my-key/versions/1");
+    KeyIdTable.Slot slot = table.get(KeyHandle.keyIdOf("my-key/versions/1"));
+    table.register("my-key/versions/1");
+
+    assertAll(
+        () -> assertNotNull(slot),
+        () -> assertEquals("my-key/versions/1", slot.identifier),
+        () -> assertSame(slot, table.get(KeyHandle.keyIdOf("my-key/versions/1"))),
+        () -> assertNull(table.get(KeyHandle.keyIdOf("my-key/versions/2"))));
+  }
+
+  @Test
+  @DisplayName("reject a different identifier with the same key id")
+  void rejectCollidingIdentifier() {
+    KeyIdTable table = new KeyIdTable();
+    table.register(COLLIDING_IDENTIFIER_1);
+
+    assertAll(
+        () ->
+            assertEquals(
+                KeyHandle.keyIdOf(COLLIDING_IDENTIFIER_1),
+                KeyHandle.keyIdOf(COLLIDING_IDENTIFIER_2)),
+        () -> assertThrows(KeyInvalidException.class, () -> table.register(COLLIDING_IDENTIFIER_2)),
+        () ->
+            assertEquals(
+                COLLIDING_IDENTIFIER_1,
+                table.get(KeyHandle.keyIdOf(COLLIDING_IDENTIFIER_1)).identifier));
+  }
+
+  @Test
+  @DisplayName("keep resolving all identifiers and their cached handles while the table grows")
+  void growAndRehash() {
+    KeyIdTable table = new KeyIdTable();
+    int count = 1000;
+    for (int i = 0; i < count; i++) {
+      String identifier = "key-" + i + "/versions/1";
+      table.register(identifier);
+      table.get(KeyHandle.keyIdOf(identifier)).keyHandle = new KeyHandle(identifier, new byte[16]);
+    }
+
+    for (int i = 0; i < count; i++) {
+      String identifier = "key-" + i + "/versions/1";
+      KeyIdTable.Slot slot = table.get(KeyHandle.keyIdOf(identifier));
+      assertEquals(identifier, slot.identifier);
+      assertEquals(identifier, slot.keyHandle.getIdentifier());
+    }
+  }
+
+  @Test
+  @DisplayName("drop the cached handle of an invalidated identifier only")
+  void invalidateCachedHandle() {
+    KeyIdTable table = new KeyIdTable();
+    table.register(COLLIDING_IDENTIFIER_1);
+    table.register("my-key/versions/1");
+    KeyIdTable.Slot colliding = table.get(KeyHandle.keyIdOf(COLLIDING_IDENTIFIER_1));
+    KeyIdTable.Slot other = table.get(KeyHandle.keyIdOf("my-key/versions/1"));
+    colliding.keyHandle = new KeyHandle(COLLIDING_IDENTIFIER_1, new byte[16]);
+    other.keyHandle = new KeyHandle("my-key/versions/1", new byte[16]);
+
+    table.invalidate(COLLIDING_IDENTIFIER_2);
+    table.invalidate("unknown-key/versions/1");
+    assertAll(() -> assertNotNull(colliding.keyHandle), () -> assertNotNull(other.keyHandle));
+
+    table.invalidate(COLLIDING_IDENTIFIER_1);
+    assertAll(
+        () -> assertNull(colliding.keyHandle),
+        () -> assertNotNull(other.keyHandle),
+        () -> assertSame(colliding, table.get(KeyHandle.keyIdOf(COLLIDING_IDENTIFIER_1))));
+  }
+}